@@ -0,0 +1,214 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.benchmark;
+
+import com.google.common.base.Predicate;
+import org.joml.Vector2i;
+import org.joml.Vector3i;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.world.BlockEntityRegistry;
+import org.terasology.engine.world.WorldProvider;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.multiBlock.BlockUriEntityFilter;
+import org.terasology.multiBlock2.DefaultMultiBlockDefinition;
+import org.terasology.multiBlock2.MultiBlockDefinition;
+import org.terasology.multiBlock2.recipe.LayeredMultiBlockRecipe;
+import org.terasology.multiBlock2.recipe.MultiBlockRecipe;
+import org.terasology.multiBlock2.recipe.SurroundMultiBlockRecipe;
+import org.terasology.multiBlock2.recipe.UniformBaseMultiBlockRecipe;
+import org.terasology.multiBlock2.recipe.UniformMultiBlockRecipe;
+import org.terasology.multiBlock2.testUtil.InMemoryWorld;
+import org.terasology.multiBlockCommon.BlockIdFilter;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detection throughput of the multiBlock2 recipes over synthetic structures of several sizes. The failing layouts
+ * differ from the matching ones only in the block furthest from the placed one, so that the recipe does as much work
+ * as possible before rejecting the structure. Blocks are matched either by their URI through the block entities, or
+ * by their ids through the world provider.
+ *
+ * Run with {@link MultiBlockBenchmarks} to also get the allocation rate from the GC profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecipeDetectionBenchmark {
+    private static final String TYPE = "Benchmark:structure";
+
+    @Param({"4", "16", "32"})
+    public int size;
+
+    @Param({"true", "false"})
+    public boolean matching;
+
+    @Param({"uri", "blockId"})
+    public String filter;
+
+    private Vector3i placedLocation;
+
+    private MultiBlockRecipe<?> uniformRecipe;
+    private MultiBlockRecipe<?> uniformBaseRecipe;
+    private MultiBlockRecipe<?> surroundRecipe;
+    private MultiBlockRecipe<?> layeredRecipe;
+
+    private InMemoryWorld uniformWorld;
+    private InMemoryWorld surroundWorld;
+    private InMemoryWorld layeredWorld;
+
+    @Setup
+    public void setup() {
+        BlockRegion structureRegion = new BlockRegion(0, 0, 0).setSize(size, size, size);
+        Vector3i worldOrigin = new Vector3i(-2, -2, -2);
+        int worldSize = size + 4;
+        placedLocation = new Vector3i(0, 0, 0);
+        Vector3i furthestLocation = new Vector3i(size - 1, size - 1, size - 1);
+
+        uniformWorld = new InMemoryWorld(worldOrigin, worldSize, worldSize, worldSize);
+        Block stone = uniformWorld.createBlockType("Benchmark:stone");
+        Block dirt = uniformWorld.createBlockType("Benchmark:dirt");
+        uniformWorld.fill(structureRegion, stone);
+        if (!matching) {
+            uniformWorld.setBlock(furthestLocation.x, furthestLocation.y, furthestLocation.z, dirt);
+        }
+        Predicate<EntityRef> stoneFilter = createFilter(stone);
+        uniformRecipe = new BenchmarkUniformRecipe(getWorldProvider(uniformWorld), uniformWorld.getBlockEntityRegistry(),
+                stoneFilter);
+        uniformBaseRecipe = new BenchmarkUniformBaseRecipe(getWorldProvider(uniformWorld),
+                uniformWorld.getBlockEntityRegistry(), stoneFilter);
+
+        surroundWorld = new InMemoryWorld(worldOrigin, worldSize, worldSize, worldSize);
+        Block glass = surroundWorld.createBlockType("Benchmark:glass");
+        Block water = surroundWorld.createBlockType("Benchmark:water");
+        surroundWorld.fillHollow(structureRegion, glass, water);
+        if (!matching) {
+            // The last interior block is the last one visited
+            surroundWorld.setBlock(size - 2, size - 2, size - 2, glass);
+        }
+        surroundRecipe = new BenchmarkSurroundRecipe(getWorldProvider(surroundWorld), surroundWorld.getBlockEntityRegistry(),
+                createFilter(glass), createFilter(water));
+
+        layeredWorld = new InMemoryWorld(worldOrigin, worldSize, worldSize, worldSize);
+        Block base = layeredWorld.createBlockType("Benchmark:base");
+        Block middle = layeredWorld.createBlockType("Benchmark:middle");
+        Block top = layeredWorld.createBlockType("Benchmark:top");
+        layeredWorld.fill(new BlockRegion(0, 0, 0).setSize(size, 1, size), base);
+        layeredWorld.fill(new BlockRegion(0, 1, 0).setSize(size, size - 2, size), middle);
+        layeredWorld.fill(new BlockRegion(0, size - 1, 0).setSize(size, 1, size), top);
+        if (!matching) {
+            layeredWorld.setBlock(furthestLocation.x, furthestLocation.y, furthestLocation.z, base);
+        }
+        BenchmarkLayeredRecipe layered = new BenchmarkLayeredRecipe(getWorldProvider(layeredWorld),
+                layeredWorld.getBlockEntityRegistry());
+        layered.addLayer(1, 1, createFilter(base));
+        layered.addLayer(1, size, createFilter(middle));
+        layered.addLayer(1, 1, createFilter(top));
+        layeredRecipe = layered;
+    }
+
+    @Benchmark
+    public Object uniform() {
+        return uniformRecipe.detectFormingMultiBlock(placedLocation);
+    }
+
+    @Benchmark
+    public Object uniformBase() {
+        return uniformBaseRecipe.detectFormingMultiBlock(placedLocation);
+    }
+
+    @Benchmark
+    public Object surround() {
+        return surroundRecipe.detectFormingMultiBlock(placedLocation);
+    }
+
+    @Benchmark
+    public Object layered() {
+        return layeredRecipe.detectFormingMultiBlock(placedLocation);
+    }
+
+    private Predicate<EntityRef> createFilter(Block block) {
+        if (filter.equals("blockId")) {
+            BitSet blockIds = new BitSet();
+            blockIds.set(block.getId());
+            return new BlockIdFilter(blockIds);
+        }
+        return new BlockUriEntityFilter(block.getURI());
+    }
+
+    private WorldProvider getWorldProvider(InMemoryWorld world) {
+        // Without the world provider the recipes test block id filters through the block entities as well
+        return filter.equals("blockId") ? world.getWorldProvider() : null;
+    }
+
+    private static MultiBlockDefinition createDefinition(BlockRegionc region) {
+        // Members are left out, the benchmark measures only the detection
+        return new DefaultMultiBlockDefinition(TYPE, new Vector3i(region.minX(), region.minY(), region.minZ()),
+                Collections.emptyList());
+    }
+
+    private static final class BenchmarkUniformRecipe extends UniformMultiBlockRecipe<MultiBlockDefinition> {
+        private BenchmarkUniformRecipe(WorldProvider worldProvider, BlockEntityRegistry blockEntityRegistry,
+                                       Predicate<EntityRef> blockFilter) {
+            super(worldProvider, blockEntityRegistry, blockFilter, size -> true);
+        }
+
+        @Override
+        protected MultiBlockDefinition createMultiBlockDefinition(BlockRegion multiBlockRegion) {
+            return createDefinition(multiBlockRegion);
+        }
+    }
+
+    private static final class BenchmarkUniformBaseRecipe extends UniformBaseMultiBlockRecipe<MultiBlockDefinition> {
+        private BenchmarkUniformBaseRecipe(WorldProvider worldProvider, BlockEntityRegistry blockEntityRegistry,
+                                           Predicate<EntityRef> blockFilter) {
+            super(worldProvider, blockEntityRegistry, blockFilter, (baseEntity, otherEntity) -> blockFilter.apply(otherEntity),
+                    size -> true);
+        }
+
+        @Override
+        protected MultiBlockDefinition createMultiBlockDefinition(BlockRegionc multiBlockRegion) {
+            return createDefinition(multiBlockRegion);
+        }
+    }
+
+    private static final class BenchmarkSurroundRecipe extends SurroundMultiBlockRecipe<MultiBlockDefinition> {
+        private BenchmarkSurroundRecipe(WorldProvider worldProvider, BlockEntityRegistry blockEntityRegistry,
+                                        Predicate<EntityRef> outsideBlock, Predicate<EntityRef> insideBlock) {
+            super(worldProvider, blockEntityRegistry, outsideBlock, insideBlock, size -> true);
+        }
+
+        @Override
+        protected MultiBlockDefinition createMultiBlockDefinition(BlockRegionc region) {
+            return createDefinition(region);
+        }
+    }
+
+    private static final class BenchmarkLayeredRecipe extends LayeredMultiBlockRecipe<MultiBlockDefinition> {
+        private BenchmarkLayeredRecipe(WorldProvider worldProvider, BlockEntityRegistry blockEntityRegistry) {
+            super(worldProvider, blockEntityRegistry, (Vector2i size) -> true);
+        }
+
+        @Override
+        protected MultiBlockDefinition createMultiBlockDefinition(BlockRegionc multiBlockRegion, int[] layerHeights) {
+            return createDefinition(multiBlockRegion);
+        }
+    }
+}
@@ -0,0 +1,360 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.benchmark;
+
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.BeforeRemoveComponent;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.OnActivatedComponent;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.OnAddedComponent;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.world.BlockEntityRegistry;
+import org.terasology.engine.world.WorldProvider;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockComponent;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.engine.world.chunks.Chunks;
+import org.terasology.engine.world.chunks.event.BeforeChunkUnload;
+import org.terasology.module.health.events.BeforeDamagedEvent;
+import org.terasology.multiBlock.BlockUriEntityFilter;
+import org.terasology.multiBlock2.DefaultMultiBlockDefinition;
+import org.terasology.multiBlock2.MultiBlockDefinition;
+import org.terasology.multiBlock2.component.MultiBlockCandidateComponent;
+import org.terasology.multiBlock2.component.MultiBlockMainComponent;
+import org.terasology.multiBlock2.component.MultiBlockMemberComponent;
+import org.terasology.multiBlock2.recipe.UniformMultiBlockRecipe;
+import org.terasology.multiBlock2.system.MultiBlockServerSystem;
+import org.terasology.multiBlock2.testUtil.InMemoryWorld;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Macro benchmark of {@link MultiBlockServerSystem} under chunk load churn. Structures are placed over the corners
+ * of a grid of chunks, so that each of them spans four chunks, and every round runs the same script against them:
+ * forming, unloading of half of the chunks, damage to the parts still loaded, reactivation of the unloaded chunks
+ * and removal of some of the structures, which are formed again in the next round.
+ *
+ * The engine is replaced with {@link InMemoryWorld}, and the event handlers of the system are invoked directly in
+ * the order the engine would send the events, including the block entities being activated before their chunk is
+ * relevant. Structures use lazy entities and batched lifecycle events only, so no entity manager is needed.
+ *
+ * Reports latency percentiles of every scripted operation, the peak size of the queue of loaded parts waiting to be
+ * restored and the peak heap usage. Arguments are the number of rounds and the number of chunks along each axis.
+ *
+ * Runs as a plain main class on the jmh runtime classpath, as the scripted sequence and the percentile report do not
+ * fit the JMH iteration model.
+ */
+public final class ServerSystemChurnHarness {
+    private static final String TYPE = "Benchmark:churn";
+    private static final int STRUCTURE_SIZE = 4;
+    private static final int STRUCTURE_Y = 8;
+    // Updates run while the reactivated chunks are not relevant yet, as it happens in the engine
+    private static final int UPDATES_BEFORE_RELEVANT = 2;
+    private static final int WARMUP_ROUNDS = 5;
+
+    private final int chunkCount;
+    private final InMemoryWorld world;
+    private final Block stone;
+    private final MultiBlockServerSystem system;
+    private final LongSupplier pendingChecks;
+
+    private final List<BlockRegion> structures = new ArrayList<>();
+    private final boolean[] formed;
+
+    private final Map<String, LatencyRecorder> latencies = new LinkedHashMap<>();
+    private long peakPendingChecks;
+
+    private ServerSystemChurnHarness(int chunkCount) throws IllegalAccessException {
+        this.chunkCount = chunkCount;
+        world = new InMemoryWorld(new Vector3i(), chunkCount * Chunks.SIZE_X, Chunks.SIZE_Y, chunkCount * Chunks.SIZE_Z,
+                true);
+        stone = world.createBlockType("Benchmark:stone");
+
+        system = new MultiBlockServerSystem();
+        inject(system, world.getBlockEntityRegistry(), world.getWorldProvider());
+        system.initialise();
+        system.registerMultiBlockType(TYPE,
+                new ChurnRecipe(world.getBlockEntityRegistry(), new BlockUriEntityFilter(stone.getURI())));
+        system.setLazyMultiBlockEntity(TYPE, true);
+        system.setPerMultiBlockLifecycleEvents(TYPE, false);
+        pendingChecks = system.getMetrics().getGauges().get("restore.pending");
+
+        int half = STRUCTURE_SIZE / 2;
+        for (int chunkX = 1; chunkX < chunkCount; chunkX++) {
+            for (int chunkZ = 1; chunkZ < chunkCount; chunkZ++) {
+                structures.add(new BlockRegion(chunkX * Chunks.SIZE_X - half, STRUCTURE_Y, chunkZ * Chunks.SIZE_Z - half)
+                        .setSize(STRUCTURE_SIZE, STRUCTURE_SIZE, STRUCTURE_SIZE));
+            }
+        }
+        formed = new boolean[structures.size()];
+    }
+
+    public static void main(String[] args) throws IllegalAccessException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int chunkCount = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        ServerSystemChurnHarness harness = new ServerSystemChurnHarness(chunkCount);
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            harness.runRound(round);
+        }
+        harness.reset();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        for (int round = 0; round < rounds; round++) {
+            harness.runRound(round);
+        }
+        harness.printReport(rounds);
+    }
+
+    private void runRound(int round) {
+        for (int i = 0; i < structures.size(); i++) {
+            if (!formed[i]) {
+                formStructure(i);
+            }
+        }
+
+        List<Vector3i> unloadedChunks = new ArrayList<>();
+        for (int chunkX = 0; chunkX < chunkCount; chunkX++) {
+            for (int chunkZ = 0; chunkZ < chunkCount; chunkZ++) {
+                // Alternate the unloaded half, so that every chunk churns
+                if ((chunkX + chunkZ + round) % 2 == 0) {
+                    unloadedChunks.add(new Vector3i(chunkX, 0, chunkZ));
+                }
+            }
+        }
+        for (Vector3i chunk : unloadedChunks) {
+            world.setChunkRelevant(chunk, false);
+            long start = System.nanoTime();
+            system.beforeChunkUnloaded(new BeforeChunkUnload(chunk), EntityRef.NULL);
+            record("chunk unload", start);
+        }
+
+        for (BlockRegion structure : structures) {
+            damageLoadedParts(structure);
+        }
+
+        for (Vector3i chunk : unloadedChunks) {
+            activateChunk(chunk);
+        }
+        for (int i = 0; i < UPDATES_BEFORE_RELEVANT; i++) {
+            update();
+        }
+        for (Vector3i chunk : unloadedChunks) {
+            world.setChunkRelevant(chunk, true);
+        }
+        while (pendingChecks.getAsLong() > 0) {
+            update();
+        }
+
+        // Remove every fourth structure, shifting which ones each round
+        for (int i = round % 4; i < structures.size(); i += 4) {
+            removeStructure(i);
+        }
+    }
+
+    private void formStructure(int index) {
+        BlockRegion region = structures.get(index);
+        world.fill(region, stone);
+        EntityRef placedEntity = world.getBlockEntityAt(region.maxX(), region.maxY(), region.maxZ());
+        MultiBlockCandidateComponent candidate = new MultiBlockCandidateComponent();
+        candidate.type = Collections.singleton(TYPE);
+        placedEntity.addComponent(candidate);
+
+        long start = System.nanoTime();
+        system.onMultiBlockCandidatePlaced(OnAddedComponent.newInstance(), placedEntity, candidate,
+                placedEntity.getComponent(BlockComponent.class));
+        record("form", start);
+        formed[index] = true;
+    }
+
+    private void damageLoadedParts(BlockRegionc region) {
+        Vector3i location = new Vector3i();
+        for (Vector3ic corner : new Vector3ic[]{new Vector3i(region.minX(), region.minY(), region.minZ()),
+                new Vector3i(region.maxX(), region.maxY(), region.maxZ())}) {
+            location.set(corner);
+            if (!world.isBlockRelevant(location.x, location.y, location.z)) {
+                continue;
+            }
+            EntityRef entity = world.getBlockEntityAt(location.x, location.y, location.z);
+            BlockComponent block = entity.getComponent(BlockComponent.class);
+            BeforeDamagedEvent event = new BeforeDamagedEvent(1, null, EntityRef.NULL, EntityRef.NULL);
+            long start = System.nanoTime();
+            MultiBlockMainComponent main = entity.getComponent(MultiBlockMainComponent.class);
+            if (main != null) {
+                system.onUnloadedMultiBlockBeingDamaged(event, entity, main, block);
+            }
+            MultiBlockMemberComponent member = entity.getComponent(MultiBlockMemberComponent.class);
+            if (member != null) {
+                system.onUnloadedMultiBlockBeingDamaged(event, entity, member, block);
+            }
+            system.onTransitioningMultiBlockBeingDamaged(event, entity, block);
+            record("damage", start);
+        }
+    }
+
+    private void activateChunk(Vector3ic chunk) {
+        BlockRegion chunkRegion = new BlockRegion(chunk.x() * Chunks.SIZE_X, chunk.y() * Chunks.SIZE_Y,
+                chunk.z() * Chunks.SIZE_Z).setSize(Chunks.SIZE_X, Chunks.SIZE_Y, Chunks.SIZE_Z);
+        for (BlockRegion structure : structures) {
+            if (!structure.intersectsBlockRegion(chunkRegion)) {
+                continue;
+            }
+            for (Vector3ic location : structure) {
+                if (!chunkRegion.contains(location)) {
+                    continue;
+                }
+                EntityRef entity = world.getBlockEntityAt(location.x(), location.y(), location.z());
+                BlockComponent block = entity.getComponent(BlockComponent.class);
+                long start = System.nanoTime();
+                MultiBlockMainComponent main = entity.getComponent(MultiBlockMainComponent.class);
+                if (main != null) {
+                    system.onMultiBlockBeingLoaded(OnActivatedComponent.newInstance(), entity, main, block);
+                }
+                MultiBlockMemberComponent member = entity.getComponent(MultiBlockMemberComponent.class);
+                if (member != null) {
+                    system.onMultiBlockBeingLoaded(OnActivatedComponent.newInstance(), entity, member, block);
+                }
+                record("activate", start);
+            }
+        }
+        peakPendingChecks = Math.max(peakPendingChecks, pendingChecks.getAsLong());
+    }
+
+    private void update() {
+        long start = System.nanoTime();
+        system.update(0.016f);
+        record("update", start);
+    }
+
+    private void removeStructure(int index) {
+        if (!formed[index]) {
+            return;
+        }
+        BlockRegion region = structures.get(index);
+        // Removing a member, as a player breaking a block of the structure would, the main block is the minimum corner
+        Vector3i location = new Vector3i(region.maxX(), region.maxY(), region.maxZ());
+        EntityRef entity = world.getBlockEntityAt(location.x, location.y, location.z);
+        MultiBlockMemberComponent member = entity.getComponent(MultiBlockMemberComponent.class);
+        long start = System.nanoTime();
+        if (member != null) {
+            system.onMultiBlockPartRemoved(BeforeRemoveComponent.newInstance(), entity, member,
+                    entity.getComponent(BlockComponent.class));
+        }
+        record("remove", start);
+        // The other members keep their stale components, as in the engine, only the broken block loses its entity
+        world.setBlock(location.x, location.y, location.z, world.getAir());
+        entity.removeComponent(MultiBlockMemberComponent.class);
+        entity.removeComponent(MultiBlockCandidateComponent.class);
+        formed[index] = false;
+    }
+
+    private void reset() {
+        latencies.clear();
+        peakPendingChecks = 0;
+    }
+
+    private void record(String operation, long start) {
+        long duration = System.nanoTime() - start;
+        latencies.computeIfAbsent(operation, key -> new LatencyRecorder()).record(duration);
+    }
+
+    private void printReport(int rounds) {
+        System.out.printf("%d rounds, %d structures over %dx%d chunks%n", rounds, structures.size(), chunkCount, chunkCount);
+        System.out.printf("%-14s %10s %10s %10s %10s %10s%n", "operation", "count", "p50 us", "p90 us", "p99 us", "max us");
+        for (Map.Entry<String, LatencyRecorder> entry : latencies.entrySet()) {
+            LatencyRecorder recorder = entry.getValue();
+            System.out.printf("%-14s %10d %10.1f %10.1f %10.1f %10.1f%n", entry.getKey(), recorder.getCount(),
+                    recorder.getPercentile(0.5f) / 1000f, recorder.getPercentile(0.9f) / 1000f,
+                    recorder.getPercentile(0.99f) / 1000f, recorder.getPercentile(1f) / 1000f);
+        }
+        System.out.printf("peak pending restore checks: %d%n", peakPendingChecks);
+        System.out.printf("block entities: %d%n", world.getBlockEntityCount());
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.printf("peak heap: %.1f MB%n", peakHeap / (1024f * 1024f));
+    }
+
+    /**
+     * Sets the fields the engine would inject, the entity manager is left out as the structures use lazy entities.
+     */
+    private static void inject(MultiBlockServerSystem system, BlockEntityRegistry blockEntityRegistry,
+                               WorldProvider worldProvider) throws IllegalAccessException {
+        for (Field field : MultiBlockServerSystem.class.getDeclaredFields()) {
+            if (!field.isAnnotationPresent(In.class)) {
+                continue;
+            }
+            field.setAccessible(true);
+            if (field.getType() == BlockEntityRegistry.class) {
+                field.set(system, blockEntityRegistry);
+            } else if (field.getType() == WorldProvider.class) {
+                field.set(system, worldProvider);
+            }
+        }
+    }
+
+    private static final class LatencyRecorder {
+        private long[] samples = new long[1024];
+        private int count;
+        private boolean sorted;
+
+        void record(long nanos) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = nanos;
+            sorted = false;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        long getPercentile(float percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(samples, 0, count);
+                sorted = true;
+            }
+            return samples[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+        }
+    }
+
+    private static final class ChurnRecipe extends UniformMultiBlockRecipe<MultiBlockDefinition> {
+        private ChurnRecipe(BlockEntityRegistry blockEntityRegistry, BlockUriEntityFilter blockFilter) {
+            super(blockEntityRegistry, blockFilter,
+                    size -> size.x == STRUCTURE_SIZE && size.y == STRUCTURE_SIZE && size.z == STRUCTURE_SIZE);
+        }
+
+        @Override
+        protected MultiBlockDefinition createMultiBlockDefinition(BlockRegion multiBlockRegion) {
+            Vector3i mainBlock = new Vector3i(multiBlockRegion.minX(), multiBlockRegion.minY(), multiBlockRegion.minZ());
+            List<Vector3i> members = new ArrayList<>();
+            for (Vector3ic location : multiBlockRegion) {
+                if (!mainBlock.equals(location)) {
+                    members.add(new Vector3i(location));
+                }
+            }
+            return new DefaultMultiBlockDefinition(TYPE, mainBlock, members);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock;
+
+import org.joml.Vector3i;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockRegionc;
+
+import java.util.Map;
+
+/**
+ * Blocks replacing the region of a formed multi-block, described without listing every location. The recipes turn it
+ * into a lazy map view of the region only when placing the blocks, so a uniform fill of a large region does not
+ * allocate an entry per block up front.
+ */
+@FunctionalInterface
+public interface BlockReplacement {
+    /**
+     * @return block to place at the location, or <code>null</code> to leave the block there as it is
+     */
+    Block getBlock(int x, int y, int z);
+
+    /**
+     * @return map of the replaced blocks in the region, computed as it is iterated
+     */
+    default Map<Vector3i, Block> asMap(BlockRegionc region) {
+        return new RegionReplacementMap(region, this);
+    }
+
+    /**
+     * Replaces the whole region with the block.
+     */
+    static BlockReplacement uniform(Block block) {
+        return (x, y, z) -> block;
+    }
+
+    /**
+     * Replaces horizontal layers with the blocks, going up from <code>minY</code>. A <code>null</code> block leaves the
+     * layer as it is, as are all the blocks above the last layer.
+     */
+    static BlockReplacement layered(int minY, int[] layerHeights, Block[] layerBlocks) {
+        if (layerHeights.length != layerBlocks.length) {
+            throw new IllegalArgumentException("Each layer needs a height and a block");
+        }
+        int[] layerMaxY = new int[layerHeights.length];
+        int y = minY;
+        for (int i = 0; i < layerHeights.length; i++) {
+            y += layerHeights[i];
+            layerMaxY[i] = y - 1;
+        }
+        return (x, blockY, z) -> {
+            if (blockY < minY) {
+                return null;
+            }
+            for (int i = 0; i < layerMaxY.length; i++) {
+                if (blockY <= layerMaxY[i]) {
+                    return layerBlocks[i];
+                }
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Replaces the blocks listed in the map, for callbacks which still build the full replacement map.
+     */
+    static BlockReplacement of(Map<Vector3i, Block> blocks) {
+        return new BlockReplacement() {
+            @Override
+            public Block getBlock(int x, int y, int z) {
+                return blocks.get(new Vector3i(x, y, z));
+            }
+
+            @Override
+            public Map<Vector3i, Block> asMap(BlockRegionc region) {
+                return blocks;
+            }
+        };
+    }
+}
@@ -0,0 +1,29 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock;
+
+import org.terasology.gestalt.entitysystem.component.Component;
+
+/**
+ * Marks the entities of multi-blocks formed by the form item recipes, so that their regions are indexed by
+ * {@link MultiBlockRegionRegistry}. The type is the prefab the recipe created the entity from.
+ */
+public class FormedMultiBlockComponent implements Component<FormedMultiBlockComponent> {
+    public String type;
+
+    public FormedMultiBlockComponent() {
+    }
+
+    public FormedMultiBlockComponent(String type) {
+        this.type = type;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public void copyFrom(FormedMultiBlockComponent other) {
+        this.type = other.type;
+    }
+}
@@ -0,0 +1,36 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock;
+
+import com.google.common.base.Predicate;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.prefab.Prefab;
+import org.terasology.gestalt.assets.ResourceUrn;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Accepts items created from any of the prefabs. Recipes using it as the activator filter are indexed by the prefabs
+ * in {@link MultiBlockFormRecipeRegistry}, so they are asked only about the items of these prefabs.
+ */
+public class ItemPrefabFilter implements Predicate<EntityRef> {
+    private Set<ResourceUrn> prefabs = new HashSet<>();
+
+    public ItemPrefabFilter(String... prefabs) {
+        for (String prefab : prefabs) {
+            this.prefabs.add(new ResourceUrn(prefab));
+        }
+    }
+
+    public Set<ResourceUrn> getPrefabs() {
+        return Collections.unmodifiableSet(prefabs);
+    }
+
+    @Override
+    public boolean apply(EntityRef item) {
+        Prefab prefab = item.getParentPrefab();
+        return prefab != null && prefabs.contains(prefab.getUrn());
+    }
+}
@@ -0,0 +1,37 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock;
+
+import org.joml.Vector3i;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockRegion;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replaces each layer of a multi-block formed with {@link org.terasology.multiBlock.recipe.LayeredMultiBlockFormItemRecipe}
+ * with the block of the layer, or leaves it as it is, if the block is <code>null</code>.
+ */
+public class LayeredBlockReplacementCallback implements MultiBlockCallback<int[]> {
+    private Block[] layerBlocks;
+
+    public LayeredBlockReplacementCallback(Block... layerBlocks) {
+        this.layerBlocks = layerBlocks;
+    }
+
+    @Override
+    public Map<Vector3i, Block> getReplacementMap(BlockRegion region, int[] layerHeights) {
+        return new HashMap<>(getReplacement(region, layerHeights).asMap(region));
+    }
+
+    @Override
+    public BlockReplacement getReplacement(BlockRegion region, int[] layerHeights) {
+        return BlockReplacement.layered(region.minY(), layerHeights, layerBlocks);
+    }
+
+    @Override
+    public void multiBlockFormed(BlockRegion region, EntityRef entity, int[] layerHeights) {
+    }
+}
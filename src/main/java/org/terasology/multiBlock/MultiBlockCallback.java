@@ -27,5 +27,15 @@ import java.util.Map;
 public interface MultiBlockCallback<T> {
     Map<org.joml.Vector3i, Block> getReplacementMap(BlockRegion region, T designDetails);
 
+    /**
+     * @return blocks replacing the region when the multi-block is formed, or <code>null</code> to leave the world as it
+     * is. Defaults to the replacement map, callbacks can override it to describe the replacement without building the
+     * map.
+     */
+    default BlockReplacement getReplacement(BlockRegion region, T designDetails) {
+        Map<org.joml.Vector3i, Block> replacementMap = getReplacementMap(region, designDetails);
+        return replacementMap != null ? BlockReplacement.of(replacementMap) : null;
+    }
+
     void multiBlockFormed(BlockRegion region, EntityRef entity, T designDetails);
 }
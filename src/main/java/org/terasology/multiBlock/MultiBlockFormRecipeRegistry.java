@@ -15,9 +15,11 @@
  */
 package org.terasology.multiBlock;
 
+import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.multiBlock.recipe.MultiBlockFormItemRecipe;
 
 import java.util.Collection;
+import java.util.List;
 
 /**
  * @author Marcin Sciesinski <marcins78@gmail.com>
@@ -25,5 +27,20 @@ import java.util.Collection;
 public interface MultiBlockFormRecipeRegistry {
     void addMultiBlockFormItemRecipe(MultiBlockFormItemRecipe recipe);
 
+    /**
+     * Recipes with a higher priority are tried first, recipes with the same priority in the order they were added.
+     * Recipes added without a priority have priority 0.
+     */
+    void addMultiBlockFormItemRecipe(MultiBlockFormItemRecipe recipe, int priority);
+
+    /**
+     * @return all the recipes, in priority order
+     */
     Collection<MultiBlockFormItemRecipe> getMultiBlockFormItemRecipes();
+
+    /**
+     * @return recipes which can be activated with the item, in priority order - the ones declaring the prefab of the
+     * item as activator, and the ones not declaring any activator prefabs, which still have to be asked
+     */
+    List<MultiBlockFormItemRecipe> getMultiBlockFormItemRecipes(EntityRef item);
 }
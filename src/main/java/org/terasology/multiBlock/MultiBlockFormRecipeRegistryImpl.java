@@ -15,31 +15,88 @@
  */
 package org.terasology.multiBlock;
 
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.prefab.Prefab;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
 import org.terasology.engine.registry.Share;
+import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.multiBlock.recipe.MultiBlockFormItemRecipe;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
+ * Keeps the recipes in priority order, and an index of them by the activator prefab, built lazily for each prefab
+ * of the activated items, so that activating an item asks only the recipes which might accept it.
+ *
  * @author Marcin Sciesinski <marcins78@gmail.com>
  */
 @RegisterSystem
 @Share(value = MultiBlockFormRecipeRegistry.class)
 public class MultiBlockFormRecipeRegistryImpl extends BaseComponentSystem implements MultiBlockFormRecipeRegistry {
-    private Set<MultiBlockFormItemRecipe> itemRecipes = new HashSet<>();
+    private Set<MultiBlockFormItemRecipe> registeredRecipes = new HashSet<>();
+    private List<MultiBlockFormItemRecipe> itemRecipes = new ArrayList<>();
+    private List<Integer> itemRecipePriorities = new ArrayList<>();
+
+    // Recipes accepting any item, and the recipes for each prefab, both in priority order
+    private List<MultiBlockFormItemRecipe> anyActivatorRecipes;
+    private Map<ResourceUrn, List<MultiBlockFormItemRecipe>> recipesByActivatorPrefab = new HashMap<>();
 
     @Override
     public void addMultiBlockFormItemRecipe(MultiBlockFormItemRecipe recipe) {
-        itemRecipes.add(recipe);
+        addMultiBlockFormItemRecipe(recipe, 0);
+    }
+
+    @Override
+    public void addMultiBlockFormItemRecipe(MultiBlockFormItemRecipe recipe, int priority) {
+        if (!registeredRecipes.add(recipe)) {
+            return;
+        }
+        // After all the recipes with the same or higher priority
+        int index = 0;
+        while (index < itemRecipes.size() && itemRecipePriorities.get(index) >= priority) {
+            index++;
+        }
+        itemRecipes.add(index, recipe);
+        itemRecipePriorities.add(index, priority);
+
+        anyActivatorRecipes = null;
+        recipesByActivatorPrefab.clear();
     }
 
     @Override
     public Collection<MultiBlockFormItemRecipe> getMultiBlockFormItemRecipes() {
-        return Collections.unmodifiableCollection(itemRecipes);
+        return Collections.unmodifiableList(itemRecipes);
+    }
+
+    @Override
+    public List<MultiBlockFormItemRecipe> getMultiBlockFormItemRecipes(EntityRef item) {
+        Prefab prefab = item.getParentPrefab();
+        if (prefab == null) {
+            if (anyActivatorRecipes == null) {
+                anyActivatorRecipes = Collections.unmodifiableList(findRecipes(null));
+            }
+            return anyActivatorRecipes;
+        }
+        return recipesByActivatorPrefab.computeIfAbsent(prefab.getUrn(),
+                prefabUrn -> Collections.unmodifiableList(findRecipes(prefabUrn)));
+    }
+
+    private List<MultiBlockFormItemRecipe> findRecipes(ResourceUrn prefabUrn) {
+        List<MultiBlockFormItemRecipe> result = new ArrayList<>();
+        for (MultiBlockFormItemRecipe recipe : itemRecipes) {
+            Collection<ResourceUrn> activatorPrefabs = recipe.getActivatorPrefabs();
+            if (activatorPrefabs.isEmpty() || (prefabUrn != null && activatorPrefabs.contains(prefabUrn))) {
+                result.add(recipe);
+            }
+        }
+        return result;
     }
 }
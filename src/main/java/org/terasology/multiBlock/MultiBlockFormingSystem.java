@@ -24,6 +24,9 @@ import org.terasology.engine.logic.inventory.ItemComponent;
 import org.terasology.engine.registry.In;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
 import org.terasology.multiBlock.recipe.MultiBlockFormItemRecipe;
+import org.terasology.multiBlock2.metrics.FlightEvent;
+import org.terasology.multiBlock2.metrics.FlightEventType;
+import org.terasology.multiBlock2.metrics.MultiBlockFlightRecorder;
 
 /**
  * @author Marcin Sciesinski <marcins78@gmail.com>
@@ -36,9 +39,14 @@ public class MultiBlockFormingSystem extends BaseComponentSystem {
     @ReceiveEvent
     public void formMultiBlockWithItem(ActivateEvent event, EntityRef item,
                                        ItemComponent itemComponent) {
-        for (MultiBlockFormItemRecipe multiBlockFormItemRecipe : recipeRegistry.getMultiBlockFormItemRecipes()) {
+        for (MultiBlockFormItemRecipe multiBlockFormItemRecipe : recipeRegistry.getMultiBlockFormItemRecipes(item)) {
             if (multiBlockFormItemRecipe.isActivator(item)) {
-                if (multiBlockFormItemRecipe.processActivation(event)) {
+                FlightEvent detectionFlightEvent = MultiBlockFlightRecorder.create(FlightEventType.DETECTION);
+                detectionFlightEvent.begin();
+                boolean formed = multiBlockFormItemRecipe.processActivation(event);
+                detectionFlightEvent.commitIfEnabled(multiBlockFormItemRecipe.getClass().getSimpleName(), 0, -1,
+                        formed ? "detected" : "rejected");
+                if (formed) {
                     break;
                 }
             }
@@ -0,0 +1,82 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock;
+
+import org.joml.Vector3ic;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.BeforeDeactivateComponent;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.OnActivatedComponent;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.OnChangedComponent;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.registry.Share;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.engine.world.block.regions.BlockRegionComponent;
+import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
+import org.terasology.multiBlock2.index.SpatialRegionIndex;
+
+import java.util.List;
+
+/**
+ * Keeps the regions of the loaded multi-blocks formed by the form item recipes in a spatial index. Entities are added
+ * when they are activated, which happens both when they are formed and when they are loaded, and removed when they
+ * are deactivated, which happens both when they are destroyed and when they are unloaded.
+ */
+@RegisterSystem
+@Share(value = MultiBlockRegionRegistry.class)
+public class MultiBlockRegionIndexSystem extends BaseComponentSystem implements MultiBlockRegionRegistry {
+    private SpatialRegionIndex<EntityRef> index = new SpatialRegionIndex<>(null);
+
+    @Override
+    public void shutdown() {
+        index.clear();
+    }
+
+    @ReceiveEvent
+    public void onMultiBlockActivated(OnActivatedComponent event, EntityRef entity, FormedMultiBlockComponent formedMultiBlock,
+                                      BlockRegionComponent blockRegion) {
+        index.add(blockRegion.region, formedMultiBlock.getType(), entity);
+    }
+
+    @ReceiveEvent
+    public void onMultiBlockRegionChanged(OnChangedComponent event, EntityRef entity, FormedMultiBlockComponent formedMultiBlock,
+                                          BlockRegionComponent blockRegion) {
+        index.add(blockRegion.region, formedMultiBlock.getType(), entity);
+    }
+
+    @ReceiveEvent
+    public void onMultiBlockDeactivated(BeforeDeactivateComponent event, EntityRef entity, FormedMultiBlockComponent formedMultiBlock,
+                                        BlockRegionComponent blockRegion) {
+        index.remove(entity);
+    }
+
+    @Override
+    public EntityRef getMultiBlockAtLocation(Vector3ic location, String type) {
+        return index.getAt(location, type);
+    }
+
+    @Override
+    public List<EntityRef> getMultiBlocksWithinRadius(Vector3ic location, float radius, String type, List<EntityRef> result) {
+        int count = index.findWithinRadius(location, radius, type);
+        return appendFound(count, result);
+    }
+
+    @Override
+    public List<EntityRef> getMultiBlocksInRegion(BlockRegionc region, String type, List<EntityRef> result) {
+        int count = index.findIntersecting(region, type);
+        return appendFound(count, result);
+    }
+
+    @Override
+    public List<EntityRef> getNearestMultiBlocks(Vector3ic location, int count, float maxRadius, String type, List<EntityRef> result) {
+        int found = index.findNearest(location, count, maxRadius, type);
+        return appendFound(found, result);
+    }
+
+    private List<EntityRef> appendFound(int count, List<EntityRef> result) {
+        for (int i = 0; i < count; i++) {
+            result.add(index.getFound(i));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,53 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock;
+
+import org.joml.Vector3ic;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.world.block.BlockRegionc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spatial queries over the loaded multi-blocks formed by the form item recipes, by the region in their
+ * BlockRegionComponent. The type of a multi-block is the prefab its entity was created from, as passed to the recipe.
+ */
+public interface MultiBlockRegionRegistry {
+    /**
+     * @return the loaded multi-block of the type (or any type if <code>null</code>) whose region contains the location,
+     * or <code>null</code> if there is none
+     */
+    EntityRef getMultiBlockAtLocation(Vector3ic location, String type);
+
+    /**
+     * Appends to the result all loaded multi-blocks of the type (or any type if <code>null</code>) that have any block
+     * within the radius of the location, closest first.
+     */
+    List<EntityRef> getMultiBlocksWithinRadius(Vector3ic location, float radius, String type, List<EntityRef> result);
+
+    /**
+     * Appends to the result all loaded multi-blocks of the type (or any type if <code>null</code>) that intersect the
+     * region, ordered by distance from the center of the region.
+     */
+    List<EntityRef> getMultiBlocksInRegion(BlockRegionc region, String type, List<EntityRef> result);
+
+    /**
+     * Appends to the result up to <code>count</code> loaded multi-blocks of the type (or any type if <code>null</code>)
+     * closest to the location, closest first. Negative <code>maxRadius</code> means the search is not bounded.
+     */
+    List<EntityRef> getNearestMultiBlocks(Vector3ic location, int count, float maxRadius, String type, List<EntityRef> result);
+
+    default List<EntityRef> getMultiBlocksWithinRadius(Vector3ic location, float radius, String type) {
+        return getMultiBlocksWithinRadius(location, radius, type, new ArrayList<>());
+    }
+
+    default List<EntityRef> getMultiBlocksInRegion(BlockRegionc region, String type) {
+        return getMultiBlocksInRegion(region, type, new ArrayList<>());
+    }
+
+    default EntityRef getNearestMultiBlock(Vector3ic location, float maxRadius, String type) {
+        List<EntityRef> result = getNearestMultiBlocks(location, 1, maxRadius, type, new ArrayList<>(1));
+        return result.isEmpty() ? null : result.get(0);
+    }
+}
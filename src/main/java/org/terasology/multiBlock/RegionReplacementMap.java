@@ -0,0 +1,125 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock;
+
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockRegionc;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only map view of a {@link BlockReplacement} over a region. Entries are created as the map is iterated, the
+ * size is counted on first use.
+ */
+class RegionReplacementMap extends AbstractMap<Vector3i, Block> {
+    private final BlockRegionc region;
+    private final BlockReplacement replacement;
+    private int size = -1;
+
+    RegionReplacementMap(BlockRegionc region, BlockReplacement replacement) {
+        this.region = region;
+        this.replacement = replacement;
+    }
+
+    @Override
+    public Block get(Object key) {
+        if (!(key instanceof Vector3ic)) {
+            return null;
+        }
+        Vector3ic location = (Vector3ic) key;
+        if (!region.contains(location)) {
+            return null;
+        }
+        return replacement.getBlock(location.x(), location.y(), location.z());
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        if (size < 0) {
+            int count = 0;
+            for (int y = region.minY(); y <= region.maxY(); y++) {
+                for (int z = region.minZ(); z <= region.maxZ(); z++) {
+                    for (int x = region.minX(); x <= region.maxX(); x++) {
+                        if (replacement.getBlock(x, y, z) != null) {
+                            count++;
+                        }
+                    }
+                }
+            }
+            size = count;
+        }
+        return size;
+    }
+
+    @Override
+    public Set<Entry<Vector3i, Block>> entrySet() {
+        return new AbstractSet<Entry<Vector3i, Block>>() {
+            @Override
+            public Iterator<Entry<Vector3i, Block>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return RegionReplacementMap.this.size();
+            }
+        };
+    }
+
+    private final class EntryIterator implements Iterator<Entry<Vector3i, Block>> {
+        private int x = region.minX();
+        private int y = region.minY();
+        private int z = region.minZ();
+        private Entry<Vector3i, Block> next;
+
+        private EntryIterator() {
+            findNext();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<Vector3i, Block> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<Vector3i, Block> result = next;
+            findNext();
+            return result;
+        }
+
+        private void findNext() {
+            next = null;
+            while (next == null && y <= region.maxY()) {
+                Block block = replacement.getBlock(x, y, z);
+                if (block != null) {
+                    // Each entry gets its own key, the world may keep them
+                    next = new SimpleImmutableEntry<>(new Vector3i(x, y, z), block);
+                }
+                x++;
+                if (x > region.maxX()) {
+                    x = region.minX();
+                    z++;
+                    if (z > region.maxZ()) {
+                        z = region.minZ();
+                        y++;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -31,6 +31,11 @@ public class UniformBlockReplacementCallback<T> implements MultiBlockCallback<T>
         return result;
     }
 
+    @Override
+    public BlockReplacement getReplacement(BlockRegion region, T designDetails) {
+        return BlockReplacement.uniform(block);
+    }
+
     @Override
     public void multiBlockFormed(BlockRegion region, EntityRef entity, T designDetails) {
     }
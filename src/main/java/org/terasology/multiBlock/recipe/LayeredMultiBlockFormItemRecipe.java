@@ -15,17 +15,23 @@ import org.terasology.engine.math.Direction;
 import org.terasology.engine.registry.CoreRegistry;
 import org.terasology.engine.world.BlockEntityRegistry;
 import org.terasology.engine.world.WorldProvider;
-import org.terasology.engine.world.block.Block;
 import org.terasology.engine.world.block.BlockComponent;
 import org.terasology.engine.world.block.BlockRegion;
 import org.terasology.engine.world.block.entity.placement.PlaceBlocks;
 import org.terasology.engine.world.block.regions.BlockRegionComponent;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.multiBlock.BlockReplacement;
+import org.terasology.multiBlock.FormedMultiBlockComponent;
+import org.terasology.multiBlock.ItemPrefabFilter;
 import org.terasology.multiBlock.MultiBlockCallback;
 import org.terasology.multiBlock.MultiBlockFormed;
+import org.terasology.multiBlockCommon.BlockIdFilter;
+import org.terasology.multiBlockCommon.LayerColumnProfile;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @author Marcin Sciesinski <marcins78@gmail.com>
@@ -38,8 +44,10 @@ public class LayeredMultiBlockFormItemRecipe implements MultiBlockFormItemRecipe
     private MultiBlockCallback<int[]> callback;
 
     private List<LayerDefinition> layerDefinitions = new ArrayList<>();
+    private LayerColumnProfile columnProfile;
 
     private BlockEntityRegistry blockEntityRegistry;
+    private WorldProvider worldProvider;
 
     public LayeredMultiBlockFormItemRecipe(Predicate<EntityRef> itemFilter, Predicate<Vector2i> sizeFilter,
                                            Predicate<ActivateEvent> activateEventFilter, String prefab, MultiBlockCallback<int[]> callback) {
@@ -49,6 +57,7 @@ public class LayeredMultiBlockFormItemRecipe implements MultiBlockFormItemRecipe
         this.prefab = prefab;
         this.callback = callback;
         this.blockEntityRegistry = CoreRegistry.get(BlockEntityRegistry.class);
+        this.worldProvider = CoreRegistry.get(WorldProvider.class);
     }
 
     @Override
@@ -56,11 +65,23 @@ public class LayeredMultiBlockFormItemRecipe implements MultiBlockFormItemRecipe
         return itemFilter.apply(item);
     }
 
+    @Override
+    public Collection<ResourceUrn> getActivatorPrefabs() {
+        if (itemFilter instanceof ItemPrefabFilter) {
+            return ((ItemPrefabFilter) itemFilter).getPrefabs();
+        }
+        return Collections.emptySet();
+    }
+
     public void addLayer(int minHeight, int maxHeight, Predicate<EntityRef> entityFilter) {
         if (minHeight > maxHeight || minHeight < 0) {
             throw new IllegalArgumentException("Invalid values for minHeight and maxHeight");
         }
+        if (layerDefinitions.size() == LayerColumnProfile.MAX_LAYER_COUNT) {
+            throw new IllegalStateException("At most " + LayerColumnProfile.MAX_LAYER_COUNT + " layers are supported");
+        }
         layerDefinitions.add(new LayerDefinition(minHeight, maxHeight, entityFilter));
+        columnProfile = null;
     }
 
     @Override
@@ -75,10 +96,16 @@ public class LayeredMultiBlockFormItemRecipe implements MultiBlockFormItemRecipe
             return false;
         }
 
+        Vector3i basePosition = targetBlock.getPosition(new Vector3i());
+        LayerColumnProfile profile = getColumnProfile();
+        // The column is classified once, and shared by all the layers the activated block could belong to
+        Vector3i scanLocation = new Vector3i();
+        long baseMask = profile.scan(basePosition.x, basePosition.y, basePosition.z, (layer, x, y, z) -> BlockIdFilter.matchesAt(
+                layerDefinitions.get(layer).entityFilter, scanLocation.set(x, y, z), worldProvider, blockEntityRegistry));
+        int[] layerHeights = new int[layerDefinitions.size()];
         for (int i = 0; i < layerDefinitions.size(); i++) {
-            LayerDefinition layerDefinition = layerDefinitions.get(i);
-            if (layerDefinition.entityFilter.apply(target)) {
-                if (processDetectionForLayer(event, i, targetBlock.getPosition(new Vector3i()))) {
+            if ((baseMask & (1L << i)) != 0 && profile.assignLayers(i, layerHeights)) {
+                if (processDetectionForLayer(event, i, basePosition, profile, layerHeights)) {
                     return true;
                 }
             }
@@ -87,70 +114,29 @@ public class LayeredMultiBlockFormItemRecipe implements MultiBlockFormItemRecipe
         return false;
     }
 
-    private boolean processDetectionForLayer(ActivateEvent event, int layerIndex, Vector3i basePosition) {
-        LayerDefinition layerDefinition = layerDefinitions.get(layerIndex);
-        Predicate<EntityRef> entityFilter = layerDefinition.entityFilter;
-        int minX = getLastMatchingInDirection( entityFilter, basePosition, Direction.RIGHT.asVector3i()).x;
-        int maxX = getLastMatchingInDirection( entityFilter, basePosition, Direction.LEFT.asVector3i()).x;
-        int minZ = getLastMatchingInDirection( entityFilter, basePosition, Direction.BACKWARD.asVector3i()).z;
-        int maxZ = getLastMatchingInDirection( entityFilter, basePosition, Direction.FORWARD.asVector3i()).z;
+    private boolean processDetectionForLayer(ActivateEvent event, int layerIndex, Vector3i basePosition, LayerColumnProfile profile,
+                                             int[] layerHeights) {
+        Predicate<EntityRef> entityFilter = layerDefinitions.get(layerIndex).entityFilter;
+        int minX = getLastMatchingInDirection(entityFilter, basePosition, Direction.RIGHT.asVector3i()).x;
+        int maxX = getLastMatchingInDirection(entityFilter, basePosition, Direction.LEFT.asVector3i()).x;
+        int minZ = getLastMatchingInDirection(entityFilter, basePosition, Direction.BACKWARD.asVector3i()).z;
+        int maxZ = getLastMatchingInDirection(entityFilter, basePosition, Direction.FORWARD.asVector3i()).z;
 
-        // First check if the size is accepted at all
         Vector2i multiBlockHorizontalSize = new Vector2i(maxX - minX + 1, maxZ - minZ + 1);
         if (!sizeFilter.apply(multiBlockHorizontalSize)) {
             return false;
         }
 
-        int minY = getLastMatchingInDirection( entityFilter, basePosition, Direction.DOWN.asVector3i()).y;
-        int maxY = getLastMatchingInDirection( entityFilter, basePosition,  Direction.UP.asVector3i()).y;
-
-        // Then check if this layer height is accepted
-        int layerHeight = maxY - minY + 1;
-        if (layerDefinition.minHeight > layerHeight || layerDefinition.maxHeight < layerHeight) {
-            return false;
-        }
-
-        int[] layerHeights = new int[layerDefinitions.size()];
-        layerHeights[layerIndex] = layerHeight;
-
-        // Go up the stack and match layers
-        int lastLayerYUp = maxY;
-        for (int i = layerIndex + 1; i < layerDefinitions.size(); i++) {
-            LayerDefinition upLayerDefinition = layerDefinitions.get(i);
-            int lastMatchingY = getLastMatchingInDirection(upLayerDefinition.entityFilter,
-                    new Vector3i(basePosition.x, lastLayerYUp, basePosition.z), Direction.UP.asVector3i()).y;
-            // Layer height
-            int upLayerHeight = lastMatchingY - lastLayerYUp;
-            if (upLayerDefinition.minHeight > upLayerHeight || upLayerDefinition.maxHeight < upLayerHeight) {
-                return false;
-            }
-            layerHeights[i] = upLayerHeight;
-            lastLayerYUp += upLayerHeight;
-        }
-
-        // Go down the stack and match layers
-        int lastLayerYDown = minY;
-        for (int i = layerIndex - 1; i >= 0; i--) {
-            LayerDefinition downLayerDefinition = layerDefinitions.get(i);
-            int lastMatchingY = getLastMatchingInDirection(downLayerDefinition.entityFilter,
-                    new Vector3i(basePosition.x, lastLayerYUp, basePosition.z), Direction.DOWN.asVector3i()).y;
-            // Layer height
-            int downLayerHeight = lastLayerYDown - lastMatchingY;
-            if (downLayerDefinition.minHeight > downLayerHeight || downLayerDefinition.maxHeight < downLayerHeight) {
-                return false;
-            }
-            layerHeights[i] = downLayerHeight;
-            lastLayerYDown -= downLayerHeight;
-        }
-
         // We detected the boundaries of the possible multi-block, now we need to validate that all blocks in the region (for each layer) match
+        int lastLayerYDown = profile.getAssignedMinY();
+        int lastLayerYUp = profile.getAssignedMaxY();
         int validationY = lastLayerYDown;
         for (int i = 0; i < layerHeights.length; i++) {
             if (layerHeights[i] > 0) {
                 BlockRegion layerRegion = new BlockRegion(minX, validationY, minZ).union(maxX, validationY + layerHeights[i] - 1, maxZ);
                 LayerDefinition validateLayerDefinition = layerDefinitions.get(i);
                 for (Vector3ic position : layerRegion) {
-                    if (!validateLayerDefinition.entityFilter.apply(blockEntityRegistry.getBlockEntityAt(position))) {
+                    if (!BlockIdFilter.matchesAt(validateLayerDefinition.entityFilter, position, worldProvider, blockEntityRegistry)) {
                         return false;
                     }
                 }
@@ -161,13 +147,12 @@ public class LayeredMultiBlockFormItemRecipe implements MultiBlockFormItemRecipe
         BlockRegion multiBlockRegion = new BlockRegion(minX, lastLayerYDown, minZ).union(maxX, lastLayerYUp, maxZ);
 
         if (callback != null) {
-            Map<org.joml.Vector3i, Block> replacementMap = callback.getReplacementMap(multiBlockRegion, layerHeights);
+            BlockReplacement replacement = callback.getReplacement(multiBlockRegion, layerHeights);
 
-            if (replacementMap != null) {
+            if (replacement != null) {
                 // Ok, now we can replace the blocks
-                WorldProvider worldProvider = CoreRegistry.get(WorldProvider.class);
                 EntityRef worldEntity = worldProvider.getWorldEntity();
-                PlaceBlocks placeBlocksEvent = new PlaceBlocks(replacementMap, event.getInstigator());
+                PlaceBlocks placeBlocksEvent = new PlaceBlocks(replacement.asMap(multiBlockRegion), event.getInstigator());
                 worldEntity.send(placeBlocksEvent);
 
                 if (placeBlocksEvent.isConsumed()) {
@@ -179,6 +164,7 @@ public class LayeredMultiBlockFormItemRecipe implements MultiBlockFormItemRecipe
         // Create the block region entity
         EntityManager entityManager = CoreRegistry.get(EntityManager.class);
         EntityRef multiBlockEntity = entityManager.create(prefab);
+        multiBlockEntity.addComponent(new FormedMultiBlockComponent(prefab));
         multiBlockEntity.addComponent(new BlockRegionComponent(multiBlockRegion));
         multiBlockEntity.addComponent(new LocationComponent(multiBlockRegion.center(new Vector3f())));
 
@@ -191,13 +177,25 @@ public class LayeredMultiBlockFormItemRecipe implements MultiBlockFormItemRecipe
         return true;
     }
 
+    private LayerColumnProfile getColumnProfile() {
+        if (columnProfile == null) {
+            int[] minHeights = new int[layerDefinitions.size()];
+            int[] maxHeights = new int[layerDefinitions.size()];
+            for (int i = 0; i < layerDefinitions.size(); i++) {
+                minHeights[i] = layerDefinitions.get(i).minHeight;
+                maxHeights[i] = layerDefinitions.get(i).maxHeight;
+            }
+            columnProfile = new LayerColumnProfile(minHeights, maxHeights);
+        }
+        return columnProfile;
+    }
+
     private Vector3i getLastMatchingInDirection( Predicate<EntityRef> entityFilter, Vector3ic location, Vector3ic direction) {
         Vector3i result = new Vector3i(location);
         Vector3i testedLocation = new Vector3i();
         while (true) {
             result.add(direction, testedLocation);
-            EntityRef blockEntityAt = blockEntityRegistry.getBlockEntityAt(testedLocation);
-            if (!entityFilter.apply(blockEntityAt)) {
+            if (!BlockIdFilter.matchesAt(entityFilter, testedLocation, worldProvider, blockEntityRegistry)) {
                 return result;
             }
             result.set(testedLocation);
@@ -17,6 +17,10 @@ package org.terasology.multiBlock.recipe;
 
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.logic.common.ActivateEvent;
+import org.terasology.gestalt.assets.ResourceUrn;
+
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * @author Marcin Sciesinski <marcins78@gmail.com>
@@ -24,5 +28,13 @@ import org.terasology.engine.logic.common.ActivateEvent;
 public interface MultiBlockFormItemRecipe {
     boolean isActivator(EntityRef item);
 
+    /**
+     * @return prefabs of the items which can activate the recipe, or an empty collection if any item can, in which
+     * case the recipe is asked about every activated item
+     */
+    default Collection<ResourceUrn> getActivatorPrefabs() {
+        return Collections.emptySet();
+    }
+
     boolean processActivation(ActivateEvent event);
 }
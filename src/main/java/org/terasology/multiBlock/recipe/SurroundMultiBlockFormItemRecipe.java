@@ -3,6 +3,7 @@
 package org.terasology.multiBlock.recipe;
 
 import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import org.joml.Vector3f;
 import org.joml.Vector3i;
 import org.joml.Vector3ic;
@@ -14,34 +15,53 @@ import org.terasology.engine.math.Direction;
 import org.terasology.engine.registry.CoreRegistry;
 import org.terasology.engine.world.BlockEntityRegistry;
 import org.terasology.engine.world.WorldProvider;
-import org.terasology.engine.world.block.Block;
 import org.terasology.engine.world.block.BlockComponent;
 import org.terasology.engine.world.block.BlockRegion;
 import org.terasology.engine.world.block.entity.placement.PlaceBlocks;
 import org.terasology.engine.world.block.regions.BlockRegionComponent;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.multiBlock.BlockReplacement;
+import org.terasology.multiBlock.FormedMultiBlockComponent;
+import org.terasology.multiBlock.ItemPrefabFilter;
 import org.terasology.multiBlock.MultiBlockCallback;
 import org.terasology.multiBlock.MultiBlockFormed;
+import org.terasology.multiBlockCommon.BlockIdFilter;
+import org.terasology.multiBlockCommon.CuboidMatcher;
 
-import java.util.Map;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
+ * Forms cuboid multi-blocks with a shell of the outside blocks, filled with the inside blocks. Recipes created
+ * without the inside block filter, or with <code>Predicates.alwaysTrue()</code>, do not check the interior at all, and
+ * the detection visits only the shell.
+ *
  * @author Marcin Sciesinski <marcins78@gmail.com>
  */
 public class SurroundMultiBlockFormItemRecipe implements MultiBlockFormItemRecipe {
     private Predicate<EntityRef> activator;
     private Predicate<EntityRef> outsideBlock;
     private Predicate<EntityRef> insideBlock;
+    private boolean checkInterior;
     private Predicate<org.joml.Vector3i> sizeFilter;
     private Predicate<ActivateEvent> activateEventFilter;
     private MultiBlockCallback<Void> callback;
     private String prefab;
 
+    public SurroundMultiBlockFormItemRecipe(Predicate<EntityRef> activator, Predicate<EntityRef> outsideBlock,
+                                            Predicate<org.joml.Vector3i> sizeFilter, Predicate<ActivateEvent> activateEventFilter,
+                                            String prefab, MultiBlockCallback<Void> callback) {
+        this(activator, outsideBlock, null, sizeFilter, activateEventFilter, prefab, callback);
+    }
+
     public SurroundMultiBlockFormItemRecipe(Predicate<EntityRef> activator, Predicate<EntityRef> outsideBlock, Predicate<EntityRef> insideBlock,
                                             Predicate<org.joml.Vector3i> sizeFilter, Predicate<ActivateEvent> activateEventFilter,
                                             String prefab, MultiBlockCallback<Void> callback) {
         this.activator = activator;
         this.outsideBlock = outsideBlock;
         this.insideBlock = insideBlock;
+        // An interior accepting any block does not need to be scanned
+        this.checkInterior = insideBlock != null && !Predicates.alwaysTrue().equals(insideBlock);
         this.sizeFilter = sizeFilter;
         this.activateEventFilter = activateEventFilter;
         this.callback = callback;
@@ -53,6 +73,14 @@ public class SurroundMultiBlockFormItemRecipe implements MultiBlockFormItemRecip
         return activator.apply(item);
     }
 
+    @Override
+    public Collection<ResourceUrn> getActivatorPrefabs() {
+        if (activator instanceof ItemPrefabFilter) {
+            return ((ItemPrefabFilter) activator).getPrefabs();
+        }
+        return Collections.emptySet();
+    }
+
     @Override
     public boolean processActivation(ActivateEvent event) {
         if (!activateEventFilter.apply(event)) {
@@ -71,19 +99,22 @@ public class SurroundMultiBlockFormItemRecipe implements MultiBlockFormItemRecip
 
         Vector3i blockPosition = targetBlock.getPosition(new Vector3i());
         BlockEntityRegistry blockEntityRegistry = CoreRegistry.get(BlockEntityRegistry.class);
+        WorldProvider worldProvider = CoreRegistry.get(WorldProvider.class);
 
         // Go to minX, minY, minZ
-        int minX = getLastMatchingInDirection(blockEntityRegistry, blockPosition, Direction.RIGHT.asVector3i()).x();
-        int minY = getLastMatchingInDirection(blockEntityRegistry, new Vector3i(minX, blockPosition.y, blockPosition.z), Direction.DOWN.asVector3i()).y();
-        int minZ = getLastMatchingInDirection(blockEntityRegistry, new Vector3i(minX, minY, blockPosition.z), Direction.BACKWARD.asVector3i()).z();
+        int minX = getLastMatchingInDirection(worldProvider, blockEntityRegistry, blockPosition, Direction.RIGHT.asVector3i()).x();
+        int minY = getLastMatchingInDirection(worldProvider, blockEntityRegistry, new Vector3i(minX, blockPosition.y, blockPosition.z),
+                Direction.DOWN.asVector3i()).y();
+        int minZ = getLastMatchingInDirection(worldProvider, blockEntityRegistry, new Vector3i(minX, minY, blockPosition.z),
+                Direction.BACKWARD.asVector3i()).z();
 
         // Since we might have been in the mid of X wall, we need to find another minX:
-        minX = getLastMatchingInDirection(blockEntityRegistry, new Vector3i(minX, minY, minZ), Direction.RIGHT.asVector3i()).x();
+        minX = getLastMatchingInDirection(worldProvider, blockEntityRegistry, new Vector3i(minX, minY, minZ), Direction.RIGHT.asVector3i()).x();
 
         // Now lets find maxX, maxY and maxZ
-        int maxX = getLastMatchingInDirection(blockEntityRegistry, new Vector3i(minX, minY, minZ), Direction.LEFT.asVector3i()).x();
-        int maxY = getLastMatchingInDirection(blockEntityRegistry, new Vector3i(maxX, minY, minZ), Direction.UP.asVector3i()).y();
-        int maxZ = getLastMatchingInDirection(blockEntityRegistry, new Vector3i(maxX, maxY, minZ), Direction.FORWARD.asVector3i()).z();
+        int maxX = getLastMatchingInDirection(worldProvider, blockEntityRegistry, new Vector3i(minX, minY, minZ), Direction.LEFT.asVector3i()).x();
+        int maxY = getLastMatchingInDirection(worldProvider, blockEntityRegistry, new Vector3i(maxX, minY, minZ), Direction.UP.asVector3i()).y();
+        int maxZ = getLastMatchingInDirection(worldProvider, blockEntityRegistry, new Vector3i(maxX, maxY, minZ), Direction.FORWARD.asVector3i()).z();
 
         // Now check that all the blocks in the region defined by these boundaries match the criteria
         BlockRegion outsideBlockRegion = new BlockRegion(minX, minY, minZ).union(maxX, maxY, maxZ);
@@ -92,27 +123,22 @@ public class SurroundMultiBlockFormItemRecipe implements MultiBlockFormItemRecip
             return false;
         }
 
-        BlockRegion insideBlockRegion =
-            new BlockRegion(minX + 1, minY + 1, minZ + 1).union(maxX - 1, maxY - 1, maxZ - 1);
-        for (org.joml.Vector3ic blockLocation : outsideBlockRegion) {
-            EntityRef blockEntity = blockEntityRegistry.getBlockEntityAt(blockLocation);
-            if (insideBlockRegion.contains(blockLocation)) {
-                if (!insideBlock.apply(blockEntity)) {
-                    return false;
-                }
-            } else if (!outsideBlock.apply(blockEntity)) {
-                return false;
-            }
+        Vector3i testedLocation = new Vector3i();
+        if (!CuboidMatcher.matchesShell(minX, minY, minZ, maxX, maxY, maxZ,
+                (x, y, z) -> BlockIdFilter.matchesAt(outsideBlock, testedLocation.set(x, y, z), worldProvider, blockEntityRegistry))) {
+            return false;
+        }
+        if (checkInterior && !CuboidMatcher.matchesInterior(minX, minY, minZ, maxX, maxY, maxZ,
+                (x, y, z) -> BlockIdFilter.matchesAt(insideBlock, testedLocation.set(x, y, z), worldProvider, blockEntityRegistry))) {
+            return false;
         }
 
         // Ok, we got matching blocks now we can form the multi-block
-        Map<org.joml.Vector3i, Block> replacementBlockMap = callback.getReplacementMap(outsideBlockRegion, null);
-
-        if (replacementBlockMap != null) {
-            WorldProvider worldProvider = CoreRegistry.get(WorldProvider.class);
+        BlockReplacement replacement = callback.getReplacement(outsideBlockRegion, null);
 
+        if (replacement != null) {
             // First, replace the blocks in world
-            PlaceBlocks placeBlocksEvent = new PlaceBlocks(replacementBlockMap, event.getInstigator());
+            PlaceBlocks placeBlocksEvent = new PlaceBlocks(replacement.asMap(outsideBlockRegion), event.getInstigator());
             worldProvider.getWorldEntity().send(placeBlocksEvent);
 
             if (placeBlocksEvent.isConsumed()) {
@@ -123,6 +149,7 @@ public class SurroundMultiBlockFormItemRecipe implements MultiBlockFormItemRecip
         // Create the block region entity
         EntityManager entityManager = CoreRegistry.get(EntityManager.class);
         EntityRef multiBlockEntity = entityManager.create(prefab);
+        multiBlockEntity.addComponent(new FormedMultiBlockComponent(prefab));
         multiBlockEntity.addComponent(new BlockRegionComponent(outsideBlockRegion));
         multiBlockEntity.addComponent(new LocationComponent(outsideBlockRegion.center(new Vector3f())));
 
@@ -133,13 +160,12 @@ public class SurroundMultiBlockFormItemRecipe implements MultiBlockFormItemRecip
         return true;
     }
 
-
-    private Vector3ic getLastMatchingInDirection(BlockEntityRegistry blockEntityRegistry, Vector3ic location, Vector3ic direction) {
+    private Vector3ic getLastMatchingInDirection(WorldProvider worldProvider, BlockEntityRegistry blockEntityRegistry,
+                                                 Vector3ic location, Vector3ic direction) {
         Vector3ic result = location;
         while (true) {
             Vector3i testedLocation = new Vector3i(result.x() + direction.x(), result.y() + direction.y(), result.z() + direction.z());
-            EntityRef blockEntityAt = blockEntityRegistry.getBlockEntityAt(testedLocation);
-            if (!outsideBlock.apply(blockEntityAt)) {
+            if (!BlockIdFilter.matchesAt(outsideBlock, testedLocation, worldProvider, blockEntityRegistry)) {
                 return result;
             }
             result = testedLocation;
@@ -14,15 +14,20 @@ import org.terasology.engine.math.Direction;
 import org.terasology.engine.registry.CoreRegistry;
 import org.terasology.engine.world.BlockEntityRegistry;
 import org.terasology.engine.world.WorldProvider;
-import org.terasology.engine.world.block.Block;
 import org.terasology.engine.world.block.BlockComponent;
 import org.terasology.engine.world.block.BlockRegion;
 import org.terasology.engine.world.block.entity.placement.PlaceBlocks;
 import org.terasology.engine.world.block.regions.BlockRegionComponent;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.multiBlock.BlockReplacement;
+import org.terasology.multiBlock.FormedMultiBlockComponent;
+import org.terasology.multiBlock.ItemPrefabFilter;
 import org.terasology.multiBlock.MultiBlockCallback;
 import org.terasology.multiBlock.MultiBlockFormed;
+import org.terasology.multiBlockCommon.BlockIdFilter;
 
-import java.util.Map;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * @author Marcin Sciesinski <marcins78@gmail.com>
@@ -51,6 +56,14 @@ public class UniformMultiBlockFormItemRecipe implements MultiBlockFormItemRecipe
         return activatorFilter.apply(item);
     }
 
+    @Override
+    public Collection<ResourceUrn> getActivatorPrefabs() {
+        if (activatorFilter instanceof ItemPrefabFilter) {
+            return ((ItemPrefabFilter) activatorFilter).getPrefabs();
+        }
+        return Collections.emptySet();
+    }
+
     @Override
     public boolean processActivation(ActivateEvent event) {
         if (!activateEventFilter.apply(event)) {
@@ -68,14 +81,15 @@ public class UniformMultiBlockFormItemRecipe implements MultiBlockFormItemRecipe
         }
 
         BlockEntityRegistry blockEntityRegistry = CoreRegistry.get(BlockEntityRegistry.class);
+        WorldProvider worldProvider = CoreRegistry.get(WorldProvider.class);
 
         Vector3i blockPosition = targetBlock.getPosition(new Vector3i());
-        int minX = getLastMatchingInDirection(blockEntityRegistry, blockPosition, Direction.RIGHT.asVector3i()).x;
-        int maxX = getLastMatchingInDirection(blockEntityRegistry, blockPosition, Direction.LEFT.asVector3i()).x;
-        int minY = getLastMatchingInDirection(blockEntityRegistry, blockPosition, Direction.DOWN.asVector3i()).y;
-        int maxY = getLastMatchingInDirection(blockEntityRegistry, blockPosition, Direction.UP.asVector3i()).y;
-        int minZ = getLastMatchingInDirection(blockEntityRegistry, blockPosition, Direction.BACKWARD.asVector3i()).z;
-        int maxZ = getLastMatchingInDirection(blockEntityRegistry, blockPosition, Direction.FORWARD.asVector3i()).z;
+        int minX = getLastMatchingInDirection(worldProvider, blockEntityRegistry, blockPosition, Direction.RIGHT.asVector3i()).x;
+        int maxX = getLastMatchingInDirection(worldProvider, blockEntityRegistry, blockPosition, Direction.LEFT.asVector3i()).x;
+        int minY = getLastMatchingInDirection(worldProvider, blockEntityRegistry, blockPosition, Direction.DOWN.asVector3i()).y;
+        int maxY = getLastMatchingInDirection(worldProvider, blockEntityRegistry, blockPosition, Direction.UP.asVector3i()).y;
+        int minZ = getLastMatchingInDirection(worldProvider, blockEntityRegistry, blockPosition, Direction.BACKWARD.asVector3i()).z;
+        int maxZ = getLastMatchingInDirection(worldProvider, blockEntityRegistry, blockPosition, Direction.FORWARD.asVector3i()).z;
 
         BlockRegion multiBlockRegion =
                 new BlockRegion(minX, minY, minZ).union(maxX, maxY, maxZ);
@@ -87,19 +101,17 @@ public class UniformMultiBlockFormItemRecipe implements MultiBlockFormItemRecipe
 
         // Now check that all the blocks in the region defined by these boundaries match the criteria
         for (org.joml.Vector3ic blockLocation : multiBlockRegion) {
-            if (!blockFilter.apply(blockEntityRegistry.getBlockEntityAt(blockLocation))) {
+            if (!BlockIdFilter.matchesAt(blockFilter, blockLocation, worldProvider, blockEntityRegistry)) {
                 return false;
             }
         }
 
         // Ok, we got matching blocks now we can form the multi-block
-        WorldProvider worldProvider = CoreRegistry.get(WorldProvider.class);
-
-        Map<org.joml.Vector3i, Block> replacementMap = callback.getReplacementMap(multiBlockRegion, null);
+        BlockReplacement replacement = callback.getReplacement(multiBlockRegion, null);
 
-        if (replacementMap != null) {
+        if (replacement != null) {
             // First, replace the blocks in world
-            PlaceBlocks placeBlocksEvent = new PlaceBlocks(replacementMap, event.getInstigator());
+            PlaceBlocks placeBlocksEvent = new PlaceBlocks(replacement.asMap(multiBlockRegion), event.getInstigator());
             worldProvider.getWorldEntity().send(placeBlocksEvent);
 
             if (placeBlocksEvent.isConsumed()) {
@@ -110,6 +122,7 @@ public class UniformMultiBlockFormItemRecipe implements MultiBlockFormItemRecipe
         // Create the block region entity
         EntityManager entityManager = CoreRegistry.get(EntityManager.class);
         EntityRef multiBlockEntity = entityManager.create(prefab);
+        multiBlockEntity.addComponent(new FormedMultiBlockComponent(prefab));
         multiBlockEntity.addComponent(new BlockRegionComponent(multiBlockRegion));
         multiBlockEntity.addComponent(new LocationComponent(multiBlockRegion.center(new Vector3f())));
 
@@ -120,13 +133,13 @@ public class UniformMultiBlockFormItemRecipe implements MultiBlockFormItemRecipe
         return true;
     }
 
-    private Vector3i getLastMatchingInDirection(BlockEntityRegistry blockEntityRegistry, Vector3ic location, Vector3ic direction) {
+    private Vector3i getLastMatchingInDirection(WorldProvider worldProvider, BlockEntityRegistry blockEntityRegistry,
+                                                Vector3ic location, Vector3ic direction) {
         Vector3i result = new Vector3i(location);
         Vector3i testLocation = new Vector3i();
         while (true) {
             result.add(direction, testLocation);
-            EntityRef blockEntityAt = blockEntityRegistry.getBlockEntityAt(testLocation);
-            if (!blockFilter.apply(blockEntityAt)) {
+            if (!BlockIdFilter.matchesAt(blockFilter, testLocation, worldProvider, blockEntityRegistry)) {
                 return result;
             }
             result.set(testLocation);
@@ -0,0 +1,115 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2;
+
+import org.joml.Vector3ic;
+import org.terasology.engine.world.WorldProvider;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.multiBlockCommon.BlockIdFilter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Number of blocks of each kind inside of a multi-block, excluding its outer shell, as built by
+ * {@link org.terasology.multiBlock2.recipe.SurroundMultiBlockRecipe}. The interior is counted once, and then kept up
+ * to date from the block changes within the region, so querying it does not depend on the size of the interior.
+ *
+ * Enabled per multi-block type with {@link MultiBlockRegistry#setInteriorContentSummary(String, boolean)}.
+ */
+public final class InteriorContentSummary implements MultiBlockBlockChangeListener {
+    private final BlockRegion interior;
+    private final int volume;
+    private final Map<Block, Count> counts = new HashMap<>();
+
+    /**
+     * Counts the interior of the region, which has to be loaded.
+     */
+    public InteriorContentSummary(BlockRegionc region, WorldProvider worldProvider) {
+        int sizeX = region.maxX() - region.minX() - 1;
+        int sizeY = region.maxY() - region.minY() - 1;
+        int sizeZ = region.maxZ() - region.minZ() - 1;
+        if (sizeX > 0 && sizeY > 0 && sizeZ > 0) {
+            interior = new BlockRegion(region.minX() + 1, region.minY() + 1, region.minZ() + 1)
+                    .union(region.maxX() - 1, region.maxY() - 1, region.maxZ() - 1);
+            volume = sizeX * sizeY * sizeZ;
+            for (int y = interior.minY(); y <= interior.maxY(); y++) {
+                for (int z = interior.minZ(); z <= interior.maxZ(); z++) {
+                    for (int x = interior.minX(); x <= interior.maxX(); x++) {
+                        add(worldProvider.getBlock(x, y, z), 1);
+                    }
+                }
+            }
+        } else {
+            interior = null;
+            volume = 0;
+        }
+    }
+
+    /**
+     * @return interior region, or <code>null</code> if the multi-block has no interior
+     */
+    public BlockRegionc getInterior() {
+        return interior;
+    }
+
+    public int getVolume() {
+        return volume;
+    }
+
+    public int getCount(Block block) {
+        Count count = counts.get(block);
+        return count != null ? count.value : 0;
+    }
+
+    /**
+     * @return number of interior blocks matching the filter, counted over the distinct blocks in the interior only
+     */
+    public int getCount(BlockIdFilter filter) {
+        int result = 0;
+        for (Map.Entry<Block, Count> entry : counts.entrySet()) {
+            if (filter.matches(entry.getKey())) {
+                result += entry.getValue().value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return distinct blocks currently in the interior
+     */
+    public Set<Block> getBlocks() {
+        return Collections.unmodifiableSet(counts.keySet());
+    }
+
+    @Override
+    public void onBlockChanged(MultiBlockHandle multiBlock, Vector3ic location, Block oldBlock, Block newBlock) {
+        if (interior != null && oldBlock != newBlock && interior.contains(location)) {
+            add(oldBlock, -1);
+            add(newBlock, 1);
+        }
+    }
+
+    private void add(Block block, int delta) {
+        Count count = counts.get(block);
+        if (count == null) {
+            if (delta <= 0) {
+                return;
+            }
+            count = new Count();
+            counts.put(block, count);
+        }
+        count.value += delta;
+        if (count.value <= 0) {
+            counts.remove(block);
+        }
+    }
+
+    private static final class Count {
+        private int value;
+    }
+}
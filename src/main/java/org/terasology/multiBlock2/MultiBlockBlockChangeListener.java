@@ -0,0 +1,15 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2;
+
+import org.joml.Vector3ic;
+import org.terasology.engine.world.block.Block;
+
+/**
+ * Notified about the blocks changing within the region of a multi-block it was subscribed to with
+ * {@link MultiBlockRegistry#subscribeToBlockChanges(MultiBlockHandle, MultiBlockBlockChangeListener)}.
+ */
+@FunctionalInterface
+public interface MultiBlockBlockChangeListener {
+    void onBlockChanged(MultiBlockHandle multiBlock, Vector3ic location, Block oldBlock, Block newBlock);
+}
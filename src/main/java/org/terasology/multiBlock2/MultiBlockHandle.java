@@ -0,0 +1,42 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2;
+
+import org.joml.Vector3ic;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.world.block.BlockRegionc;
+
+/**
+ * Reference to a loaded multi-block, that can be obtained once from {@link MultiBlockRegistry} and kept by the caller.
+ * All the values are cached, so accessing them does not require any entity or component lookups.
+ *
+ * The handle stays valid until the multi-block is unformed or unloaded. The corresponding
+ * {@link org.terasology.multiBlock2.event.BeforeMultiBlockUnformed} or
+ * {@link org.terasology.multiBlock2.event.BeforeMultiBlockUnloaded} event is still sent while the handle is valid,
+ * after that it reports itself as invalid and should be discarded.
+ */
+public interface MultiBlockHandle {
+    boolean isValid();
+
+    /**
+     * @return <code>false</code> if the multi-block has been unloaded with the chunks it is in.
+     */
+    boolean isLoaded();
+
+    /**
+     * @return <code>false</code> if the multi-block has been unformed.
+     */
+    boolean isFormed();
+
+    String getType();
+
+    EntityRef getMultiBlockEntity();
+
+    EntityRef getMainBlockEntity();
+
+    Vector3ic getMainBlockLocation();
+
+    BlockRegionc getRegion();
+
+    boolean containsBlock(Vector3ic location);
+}
@@ -16,11 +16,165 @@
 package org.terasology.multiBlock2;
 
 import org.joml.Vector3i;
+import org.joml.Vector3ic;
 import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.multiBlock2.metrics.MultiBlockMetrics;
 import org.terasology.multiBlock2.recipe.MultiBlockRecipe;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 public interface MultiBlockRegistry {
     void registerMultiBlockType(String multiBlockCandidate, MultiBlockRecipe<?> multiBlockRecipe);
 
+    /**
+     * @return metrics of detection, forming, unforming and restoring of the multi-blocks, disabled by default.
+     */
+    MultiBlockMetrics getMetrics();
+
+    /**
+     * Enables lazy creation of the multi-block entities for the type. Should be used for types that have no
+     * MultiBlockFormed or MultiBlockLoaded subscribers, as these events are not sent for lazy multi-blocks. The
+     * registry then only keeps a lightweight record of each multi-block, and creates its entity when it is
+     * requested from the registry or a {@link MultiBlockHandle}.
+     */
+    void setLazyMultiBlockEntity(String type, boolean lazy);
+
+    /**
+     * Enables or disables sending MultiBlockLoaded and BeforeMultiBlockUnloaded to each multi-block of the type
+     * (enabled by default). The batched MultiBlocksLoaded and BeforeMultiBlocksUnloaded events sent to the world
+     * entity include multi-blocks of all types regardless of this setting.
+     */
+    void setPerMultiBlockLifecycleEvents(String type, boolean enabled);
+
+    /**
+     * Enables an {@link InteriorContentSummary} for each multi-block of the type (disabled by default), meant for the
+     * types detected by {@link org.terasology.multiBlock2.recipe.SurroundMultiBlockRecipe}. The interior is counted
+     * when the multi-block is formed or loaded, before MultiBlockFormed or MultiBlockLoaded is sent.
+     */
+    void setInteriorContentSummary(String type, boolean enabled);
+
+    /**
+     * Routes the damage of any block of a multi-block of the type to a single pool of <code>maxHealth</code> health
+     * held by the multi-block entity, instead of the health of each block. When the pool is depleted, the main block is
+     * destroyed, which unforms the multi-block. The pool is restored when the multi-block is loaded again, just like
+     * the damage of regular blocks is not kept. A <code>maxHealth</code> of 0 or less disables the pool for the type.
+     */
+    void setSharedHealthPool(String type, int maxHealth);
+
+    /**
+     * Multi-blocks with at least <code>minimumBlockCount</code> member blocks are formed and unformed over several
+     * updates, spending at most <code>timeBudgetMs</code> milliseconds per update on them. Until that is finished,
+     * the multi-block is not returned by the queries of this registry, and its blocks cannot be damaged or replaced.
+     */
+    void setAmortizedForming(int minimumBlockCount, float timeBudgetMs);
+
+    /**
+     * Places the blocks of a structure and registers it as the already formed multi-block of the definition, without
+     * running the detection on any of the placed blocks. Meant for pasting templates and for world generation. All
+     * the blocks are written with a single bulk world edit, the main and member blocks switched to their invisible
+     * variants right away, and a single MultiBlockFormed is sent, regardless of the amortized forming settings.
+     * Loaded multi-blocks in the way are unformed first.
+     *
+     * @param blocks blocks to place, may include blocks other than the main and member blocks of the definition,
+     *               main and member blocks missing from it are left as they are in the world
+     * @return <code>false</code> if the structure could not be placed, because some of its blocks are not loaded, or
+     * are still being formed or unformed
+     */
+    boolean placeFormedMultiBlock(MultiBlockDefinition definition, Map<? extends Vector3ic, Block> blocks);
+
+    /**
+     * @return <code>true</code> if the block at the location belongs to a multi-block that is still being formed or
+     * unformed over several updates.
+     */
+    boolean isFormingOrUnforming(Vector3ic location);
+
     EntityRef getMultiBlockAtLocation(Vector3i location, String type);
+
+    /**
+     * Looks up the loaded multi-blocks of the type (or any type if <code>null</code>) at many locations at once, which
+     * is cheaper than calling {@link #getMultiBlockAtLocation(Vector3i, String)} for each of them, as the locations are
+     * grouped by chunk and each part of the index is visited once per batch.
+     *
+     * @param locations x, y and z of each location, one after another
+     * @param count     number of locations, at most {@link org.terasology.multiBlock2.index.SpatialRegionIndex#MAX_BATCH_SIZE}
+     * @param result    filled with the multi-block at each location, or <code>null</code> where there is none
+     */
+    void getMultiBlocksAt(int[] locations, int count, String type, EntityRef[] result);
+
+    default EntityRef[] getMultiBlocksAt(Collection<? extends Vector3ic> locations, String type) {
+        int[] packedLocations = new int[3 * locations.size()];
+        int index = 0;
+        for (Vector3ic location : locations) {
+            packedLocations[index++] = location.x();
+            packedLocations[index++] = location.y();
+            packedLocations[index++] = location.z();
+        }
+        EntityRef[] result = new EntityRef[locations.size()];
+        getMultiBlocksAt(packedLocations, locations.size(), type, result);
+        return result;
+    }
+
+    /**
+     * Returns a handle to the loaded multi-block of the type at the location, that can be kept by the caller
+     * until it reports itself as invalid, or <code>null</code> if there is no such multi-block.
+     */
+    MultiBlockHandle getMultiBlockHandle(Vector3ic location, String type);
+
+    /**
+     * @return summary of the interior of the multi-block, or <code>null</code> if it is not enabled for its type or the
+     * multi-block is no longer valid
+     */
+    InteriorContentSummary getInteriorContentSummary(MultiBlockHandle multiBlock);
+
+    /**
+     * Returns an immutable snapshot of the loaded multi-blocks, that can be queried from any thread. It is published at
+     * the end of each update in which the multi-blocks have changed, so changes made since then are not visible in it
+     * yet. This is the only method of the registry that is safe to call from other threads than the main one.
+     */
+    MultiBlockSnapshot getSnapshot();
+
+    /**
+     * Subscribes the listener to the changes of the blocks within the region of the multi-block, which is notified
+     * only about the changes inside of that region. The subscription is cancelled when the multi-block is unformed or
+     * unloaded, and has to be made again when it is loaded back.
+     *
+     * @throws IllegalArgumentException if the handle is no longer valid
+     */
+    MultiBlockSubscription subscribeToBlockChanges(MultiBlockHandle multiBlock, MultiBlockBlockChangeListener listener);
+
+    /**
+     * Appends to the result all loaded multi-blocks of the type (or any type if <code>null</code>) that have any block
+     * within the radius of the location, closest first.
+     */
+    List<EntityRef> getMultiBlocksWithinRadius(Vector3ic location, float radius, String type, List<EntityRef> result);
+
+    /**
+     * Appends to the result all loaded multi-blocks of the type (or any type if <code>null</code>) that intersect the
+     * region, ordered by distance from the center of the region.
+     */
+    List<EntityRef> getMultiBlocksInRegion(BlockRegionc region, String type, List<EntityRef> result);
+
+    /**
+     * Appends to the result up to <code>count</code> loaded multi-blocks of the type (or any type if <code>null</code>)
+     * closest to the location, closest first. Negative <code>maxRadius</code> means the search is not bounded.
+     */
+    List<EntityRef> getNearestMultiBlocks(Vector3ic location, int count, float maxRadius, String type, List<EntityRef> result);
+
+    default List<EntityRef> getMultiBlocksWithinRadius(Vector3ic location, float radius, String type) {
+        return getMultiBlocksWithinRadius(location, radius, type, new ArrayList<>());
+    }
+
+    default List<EntityRef> getMultiBlocksInRegion(BlockRegionc region, String type) {
+        return getMultiBlocksInRegion(region, type, new ArrayList<>());
+    }
+
+    default EntityRef getNearestMultiBlock(Vector3ic location, float maxRadius, String type) {
+        List<EntityRef> result = getNearestMultiBlocks(location, 1, maxRadius, type, new ArrayList<>(1));
+        return result.isEmpty() ? null : result.get(0);
+    }
 }
@@ -0,0 +1,46 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2;
+
+import org.joml.Vector3ic;
+import org.terasology.engine.world.block.BlockRegionc;
+
+/**
+ * Immutable view of the loaded multi-blocks, which can be queried from any thread without locking, for example by
+ * pathfinding running on worker threads. The snapshot reflects the multi-blocks at the time it was published by
+ * {@link MultiBlockRegistry#getSnapshot()}, a newer one has to be requested to see the later changes.
+ */
+public interface MultiBlockSnapshot {
+    /**
+     * @param type type of the multi-block to look for, or <code>null</code> to accept any type
+     * @return multi-block containing the block at the location, or <code>null</code> if there is none
+     */
+    Structure getAt(int x, int y, int z, String type);
+
+    default Structure getAt(Vector3ic location, String type) {
+        return getAt(location.x(), location.y(), location.z(), type);
+    }
+
+    default boolean isPartOfMultiBlock(Vector3ic location) {
+        return getAt(location, null) != null;
+    }
+
+    /**
+     * @return number of the multi-blocks in the snapshot
+     */
+    int size();
+
+    /**
+     * Immutable description of a multi-block, without access to its entities, which are only safe to use on the main
+     * thread.
+     */
+    interface Structure {
+        String getType();
+
+        Vector3ic getMainBlockLocation();
+
+        BlockRegionc getRegion();
+
+        boolean containsBlock(int x, int y, int z);
+    }
+}
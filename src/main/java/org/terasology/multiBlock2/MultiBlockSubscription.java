@@ -0,0 +1,13 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2;
+
+/**
+ * Subscription to the block changes within the region of a multi-block. It is cancelled automatically when the
+ * multi-block is unformed or unloaded, and can be cancelled earlier by the subscriber.
+ */
+public interface MultiBlockSubscription {
+    boolean isActive();
+
+    void cancel();
+}
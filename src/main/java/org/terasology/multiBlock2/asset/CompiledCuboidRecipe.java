@@ -0,0 +1,117 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.asset;
+
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.terasology.engine.world.WorldProvider;
+import org.terasology.multiBlock2.DefaultMultiBlockDefinition;
+import org.terasology.multiBlock2.recipe.DetectionStats;
+import org.terasology.multiBlock2.recipe.MultiBlockRecipe;
+import org.terasology.multiBlockCommon.BlockIdFilter;
+import org.terasology.multiBlockCommon.CuboidMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Uniform or surround recipe compiled from an asset. Reads block ids straight from the world instead of loading the
+ * block entities, and never scans further than the maximum size allows.
+ */
+class CompiledCuboidRecipe implements MultiBlockRecipe<DefaultMultiBlockDefinition> {
+    private WorldProvider worldProvider;
+    private String multiBlockType;
+    private BlockIdFilter outsideFilter;
+    // null means the interior is not checked
+    private BlockIdFilter insideFilter;
+    // Uniform recipes check the whole volume with the shell
+    private boolean uniform;
+    private Vector3i minSize;
+    private Vector3i maxSize;
+
+    CompiledCuboidRecipe(WorldProvider worldProvider, String multiBlockType, BlockIdFilter outsideFilter,
+                         BlockIdFilter insideFilter, Vector3ic minSize, Vector3ic maxSize) {
+        this.worldProvider = worldProvider;
+        this.multiBlockType = multiBlockType;
+        this.outsideFilter = outsideFilter;
+        this.insideFilter = insideFilter;
+        this.uniform = insideFilter == outsideFilter;
+        this.minSize = new Vector3i(minSize);
+        this.maxSize = new Vector3i(maxSize);
+    }
+
+    @Override
+    public DefaultMultiBlockDefinition detectFormingMultiBlock(Vector3ic location) {
+        return detectFormingMultiBlock(location, new DetectionStats());
+    }
+
+    @Override
+    public DefaultMultiBlockDefinition detectFormingMultiBlock(Vector3ic location, DetectionStats stats) {
+        if (!matches(outsideFilter, location.x(), location.y(), location.z(), stats)) {
+            return null;
+        }
+
+        // Walks along the edges of the shell to the min corner, and then to the max corner, same as the surround recipe
+        int minX = location.x() - countMatching(location.x(), location.y(), location.z(), -1, 0, 0, maxSize.x, stats);
+        int minY = location.y() - countMatching(minX, location.y(), location.z(), 0, -1, 0, maxSize.y, stats);
+        int minZ = location.z() - countMatching(minX, minY, location.z(), 0, 0, -1, maxSize.z, stats);
+        minX -= countMatching(minX, minY, minZ, -1, 0, 0, maxSize.x, stats);
+        int maxX = minX + countMatching(minX, minY, minZ, 1, 0, 0, maxSize.x, stats);
+        int maxY = minY + countMatching(maxX, minY, minZ, 0, 1, 0, maxSize.y, stats);
+        int maxZ = minZ + countMatching(maxX, maxY, minZ, 0, 0, 1, maxSize.z, stats);
+
+        int sizeX = maxX - minX + 1;
+        int sizeY = maxY - minY + 1;
+        int sizeZ = maxZ - minZ + 1;
+        if (sizeX < minSize.x || sizeY < minSize.y || sizeZ < minSize.z
+                || sizeX > maxSize.x || sizeY > maxSize.y || sizeZ > maxSize.z) {
+            return null;
+        }
+
+        CuboidMatcher.BlockTest outsideTest = (x, y, z) -> matches(outsideFilter, x, y, z, stats);
+        if (uniform) {
+            if (!CuboidMatcher.matchesAll(minX, minY, minZ, maxX, maxY, maxZ, outsideTest)) {
+                return null;
+            }
+        } else {
+            if (!CuboidMatcher.matchesShell(minX, minY, minZ, maxX, maxY, maxZ, outsideTest)) {
+                return null;
+            }
+            if (insideFilter != null && !CuboidMatcher.matchesInterior(minX, minY, minZ, maxX, maxY, maxZ,
+                    (x, y, z) -> matches(insideFilter, x, y, z, stats))) {
+                return null;
+            }
+        }
+
+        Vector3i mainBlock = new Vector3i(minX, minY, minZ);
+        List<Vector3i> memberBlocks = new ArrayList<>(sizeX * sizeY * sizeZ - 1);
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    if (x != minX || y != minY || z != minZ) {
+                        memberBlocks.add(new Vector3i(x, y, z));
+                    }
+                }
+            }
+        }
+        return new DefaultMultiBlockDefinition(multiBlockType, mainBlock, memberBlocks);
+    }
+
+    /**
+     * @return number of matching blocks in the direction, not counting the start, up to <code>maxSize</code>, which
+     * is already more than the structure can span
+     */
+    private int countMatching(int x, int y, int z, int stepX, int stepY, int stepZ, int maxSize, DetectionStats stats) {
+        int count = 0;
+        while (count < maxSize
+                && matches(outsideFilter, x + stepX * (count + 1), y + stepY * (count + 1), z + stepZ * (count + 1), stats)) {
+            count++;
+        }
+        return count;
+    }
+
+    private boolean matches(BlockIdFilter filter, int x, int y, int z, DetectionStats stats) {
+        stats.blockVisited();
+        return filter.matches(worldProvider.getBlock(x, y, z));
+    }
+}
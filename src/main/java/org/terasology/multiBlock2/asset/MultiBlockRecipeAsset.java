@@ -0,0 +1,49 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.asset;
+
+import org.terasology.gestalt.assets.Asset;
+import org.terasology.gestalt.assets.AssetFactory;
+import org.terasology.gestalt.assets.AssetType;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.assets.module.annotations.RegisterAssetType;
+
+/**
+ * Multi-block recipe defined in a <code>.multiblock</code> asset, see {@link MultiBlockRecipeData} for the format.
+ * The recipes are compiled and registered by {@link MultiBlockRecipeAssetSystem}.
+ */
+@RegisterAssetType(folderName = "multiBlockRecipes", factoryClass = MultiBlockRecipeAsset.Factory.class)
+public class MultiBlockRecipeAsset extends Asset<MultiBlockRecipeData> {
+    private MultiBlockRecipeData data;
+    private int version;
+
+    public MultiBlockRecipeAsset(ResourceUrn urn, AssetType<?, MultiBlockRecipeData> assetType, MultiBlockRecipeData data) {
+        super(urn, assetType);
+        reload(data);
+    }
+
+    public MultiBlockRecipeData getData() {
+        return data;
+    }
+
+    /**
+     * @return number incremented every time the asset is reloaded, to tell if a recipe compiled from it is outdated.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    protected void doReload(MultiBlockRecipeData newData) {
+        this.data = newData;
+        version++;
+    }
+
+    public static class Factory implements AssetFactory<MultiBlockRecipeAsset, MultiBlockRecipeData> {
+        @Override
+        public MultiBlockRecipeAsset build(ResourceUrn urn, AssetType<MultiBlockRecipeAsset, MultiBlockRecipeData> type,
+                                           MultiBlockRecipeData data) {
+            return new MultiBlockRecipeAsset(urn, type, data);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.asset;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterMode;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.world.WorldProvider;
+import org.terasology.engine.world.block.BlockManager;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.assets.management.AssetManager;
+import org.terasology.multiBlock2.MultiBlockRegistry;
+
+import java.util.Optional;
+
+/**
+ * Compiles the multi-block recipe assets of all the active modules and registers them in the
+ * {@link MultiBlockRegistry}, for the multi-block candidate type declared by each recipe.
+ */
+@RegisterSystem(RegisterMode.AUTHORITY)
+public class MultiBlockRecipeAssetSystem extends BaseComponentSystem {
+    private static final Logger logger = LoggerFactory.getLogger(MultiBlockRecipeAssetSystem.class);
+
+    @In
+    private AssetManager assetManager;
+    @In
+    private BlockManager blockManager;
+    @In
+    private WorldProvider worldProvider;
+    @In
+    private MultiBlockRegistry multiBlockRegistry;
+
+    private MultiBlockRecipeCompiler compiler;
+
+    @Override
+    public void postBegin() {
+        // Blocks are registered by now, so the filters resolve to their ids
+        compiler = new MultiBlockRecipeCompiler(blockManager, worldProvider);
+        registerRecipes();
+    }
+
+    /**
+     * Registers the recipes again, recompiling only the assets that have been reloaded since.
+     */
+    public void registerRecipes() {
+        for (ResourceUrn urn : assetManager.getAvailableAssets(MultiBlockRecipeAsset.class)) {
+            Optional<MultiBlockRecipeAsset> asset = assetManager.getAsset(urn, MultiBlockRecipeAsset.class);
+            if (!asset.isPresent()) {
+                continue;
+            }
+            try {
+                multiBlockRegistry.registerMultiBlockType(asset.get().getData().type, compiler.compile(asset.get()));
+            } catch (IllegalArgumentException e) {
+                logger.error("Invalid multi-block recipe {}: {}", urn, e.getMessage());
+            }
+        }
+    }
+}
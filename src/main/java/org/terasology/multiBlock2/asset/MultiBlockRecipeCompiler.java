@@ -0,0 +1,122 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.asset;
+
+import org.joml.Vector3i;
+import org.terasology.engine.world.WorldProvider;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockManager;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.multiBlock2.DefaultMultiBlockDefinition;
+import org.terasology.multiBlock2.recipe.MultiBlockRecipe;
+import org.terasology.multiBlock2.recipe.ShapedMultiBlockRecipe;
+import org.terasology.multiBlockCommon.BlockIdFilter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles recipe assets into recipes matching block ids. Compiled recipes are cached by the asset and its version,
+ * so registering the recipes again (after a reload of some other assets, for example) does not recompile the ones
+ * that did not change.
+ */
+public class MultiBlockRecipeCompiler {
+    private BlockManager blockManager;
+    private WorldProvider worldProvider;
+    private Map<ResourceUrn, CompiledRecipe> compiledRecipes = new HashMap<>();
+
+    public MultiBlockRecipeCompiler(BlockManager blockManager, WorldProvider worldProvider) {
+        this.blockManager = blockManager;
+        this.worldProvider = worldProvider;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the recipe is not valid
+     */
+    public MultiBlockRecipe<?> compile(MultiBlockRecipeAsset asset) {
+        CompiledRecipe compiled = compiledRecipes.get(asset.getUrn());
+        if (compiled == null || compiled.version != asset.getVersion()) {
+            compiled = new CompiledRecipe(asset.getVersion(), compile(asset.getData()));
+            compiledRecipes.put(asset.getUrn(), compiled);
+        }
+        return compiled.recipe;
+    }
+
+    public void clearCache() {
+        compiledRecipes.clear();
+    }
+
+    private MultiBlockRecipe<?> compile(MultiBlockRecipeData data) {
+        switch (data.shape) {
+            case "uniform": {
+                BlockIdFilter filter = compileFilter(data.blocks, "blocks");
+                return new CompiledCuboidRecipe(worldProvider, data.type, filter, filter, toSize(data.minSize), toSize(data.maxSize));
+            }
+            case "surround": {
+                BlockIdFilter outsideFilter = compileFilter(data.outside, "outside");
+                BlockIdFilter insideFilter = data.inside != null ? compileFilter(data.inside, "inside") : null;
+                return new CompiledCuboidRecipe(worldProvider, data.type, outsideFilter, insideFilter, toSize(data.minSize),
+                        toSize(data.maxSize));
+            }
+            case "pattern":
+                return compilePattern(data);
+            default:
+                throw new IllegalArgumentException("Unknown multi-block recipe shape: " + data.shape);
+        }
+    }
+
+    private MultiBlockRecipe<?> compilePattern(MultiBlockRecipeData data) {
+        if (data.pattern == null) {
+            throw new IllegalArgumentException("Pattern recipe has to define the pattern");
+        }
+        Map<Character, Block> key = new HashMap<>();
+        for (Map.Entry<String, String> entry : data.key.entrySet()) {
+            if (entry.getKey().length() != 1) {
+                throw new IllegalArgumentException("Pattern key has to be a single character: " + entry.getKey());
+            }
+            Block block = blockManager.getBlock(entry.getValue());
+            if (block == null) {
+                throw new IllegalArgumentException("Unknown block in the pattern key: " + entry.getValue());
+            }
+            key.put(entry.getKey().charAt(0), block);
+        }
+        String multiBlockType = data.type;
+        return new ShapedMultiBlockRecipe<DefaultMultiBlockDefinition>(worldProvider, data.pattern, key) {
+            @Override
+            protected DefaultMultiBlockDefinition createMultiBlockDefinition(BlockRegionc region, int rotation, Vector3i mainBlock,
+                                                                             List<Vector3i> memberBlocks) {
+                return new DefaultMultiBlockDefinition(multiBlockType, mainBlock, memberBlocks);
+            }
+        };
+    }
+
+    private BlockIdFilter compileFilter(MultiBlockRecipeData.BlockFilterData filterData, String name) {
+        if (filterData == null) {
+            throw new IllegalArgumentException("Recipe has to define the " + name + " block filter");
+        }
+        BlockIdFilter filter = BlockIdFilter.resolve(blockManager, filterData.blocks, filterData.families, filterData.categories);
+        if (filter.isEmpty()) {
+            throw new IllegalArgumentException("The " + name + " block filter does not match any block");
+        }
+        return filter;
+    }
+
+    private static Vector3i toSize(int[] size) {
+        if (size == null || size.length != 3 || size[0] < 1 || size[1] < 1 || size[2] < 1) {
+            throw new IllegalArgumentException("Size has to be three positive numbers");
+        }
+        return new Vector3i(size[0], size[1], size[2]);
+    }
+
+    private static final class CompiledRecipe {
+        private final int version;
+        private final MultiBlockRecipe<?> recipe;
+
+        private CompiledRecipe(int version, MultiBlockRecipe<?> recipe) {
+            this.version = version;
+            this.recipe = recipe;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.asset;
+
+import org.terasology.gestalt.assets.AssetData;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contents of a <code>.multiblock</code> recipe asset, placed in the <code>multiBlockRecipes</code> asset folder.
+ * For example a tank of any size from 3x3x3 to 10x10x10, with a glass shell filled with water:
+ * <pre>
+ * {
+ *   "type": "MyModule:tank",
+ *   "shape": "surround",
+ *   "outside": {"blocks": ["MyModule:tankGlass"]},
+ *   "inside": {"families": ["CoreAssets:Water"]},
+ *   "minSize": [3, 3, 3],
+ *   "maxSize": [10, 10, 10]
+ * }
+ * </pre>
+ *
+ * Supported shapes:
+ * <ul>
+ *     <li><code>uniform</code> - cuboid made only of the <code>blocks</code> filter</li>
+ *     <li><code>surround</code> - cuboid with a shell of the <code>outside</code> filter, filled with the
+ *     <code>inside</code> filter, or with anything if <code>inside</code> is left out</li>
+ *     <li><code>pattern</code> - fixed pattern in any horizontal rotation, given as layers of rows, with the
+ *     <code>key</code> mapping each character to a block URI, see
+ *     {@link org.terasology.multiBlock2.recipe.ShapedMultiBlockRecipe}</li>
+ * </ul>
+ * The type is the multi-block candidate type the recipe is registered for, as well as the type of the multi-blocks
+ * it forms. Sizes are ignored by the pattern shape.
+ */
+public class MultiBlockRecipeData implements AssetData {
+    public String type;
+    public String shape;
+    public BlockFilterData blocks;
+    public BlockFilterData outside;
+    public BlockFilterData inside;
+    public String[][] pattern;
+    public Map<String, String> key = new LinkedHashMap<>();
+    public int[] minSize = {1, 1, 1};
+    public int[] maxSize = {32, 32, 32};
+
+    /**
+     * Blocks accepted by a filter of the recipe - block URIs, block family URIs and block family categories.
+     */
+    public static class BlockFilterData {
+        public List<String> blocks = new ArrayList<>();
+        public List<String> families = new ArrayList<>();
+        public List<String> categories = new ArrayList<>();
+    }
+}
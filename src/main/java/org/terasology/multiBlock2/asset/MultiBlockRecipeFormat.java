@@ -0,0 +1,38 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.asset;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.assets.format.AbstractAssetFileFormat;
+import org.terasology.gestalt.assets.format.AssetDataFile;
+import org.terasology.gestalt.assets.module.annotations.RegisterAssetFileFormat;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@RegisterAssetFileFormat
+public class MultiBlockRecipeFormat extends AbstractAssetFileFormat<MultiBlockRecipeData> {
+    private Gson gson = new Gson();
+
+    public MultiBlockRecipeFormat() {
+        super("multiblock");
+    }
+
+    @Override
+    public MultiBlockRecipeData load(ResourceUrn urn, List<AssetDataFile> inputs) throws IOException {
+        try (Reader reader = new InputStreamReader(inputs.get(0).openStream(), StandardCharsets.UTF_8)) {
+            MultiBlockRecipeData data = gson.fromJson(reader, MultiBlockRecipeData.class);
+            if (data == null || data.type == null || data.shape == null) {
+                throw new IOException("Multi-block recipe " + urn + " has to define type and shape");
+            }
+            return data;
+        } catch (JsonParseException e) {
+            throw new IOException("Failed to parse multi-block recipe " + urn, e);
+        }
+    }
+}
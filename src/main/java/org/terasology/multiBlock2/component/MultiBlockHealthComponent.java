@@ -0,0 +1,36 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.component;
+
+import org.terasology.gestalt.entitysystem.component.Component;
+
+/**
+ * Health shared by all the blocks of a multi-block, held by the multi-block entity of the types registered with
+ * {@link org.terasology.multiBlock2.MultiBlockRegistry#setSharedHealthPool(String, int)}.
+ */
+public class MultiBlockHealthComponent implements Component<MultiBlockHealthComponent> {
+    public int maxHealth;
+    public int currentHealth;
+
+    public MultiBlockHealthComponent() {
+    }
+
+    public MultiBlockHealthComponent(int maxHealth) {
+        this.maxHealth = maxHealth;
+        this.currentHealth = maxHealth;
+    }
+
+    public int getMaxHealth() {
+        return maxHealth;
+    }
+
+    public int getCurrentHealth() {
+        return currentHealth;
+    }
+
+    @Override
+    public void copyFrom(MultiBlockHealthComponent other) {
+        this.maxHealth = other.maxHealth;
+        this.currentHealth = other.currentHealth;
+    }
+}
@@ -23,15 +23,18 @@ public class MultiBlockMainComponent implements Component<MultiBlockMainComponen
     public BlockRegion aabb;
     public EntityRef multiBlockEntity;
     public String multiBlockType;
+    public long formationId;
 
     public MultiBlockMainComponent() {
     }
 
-    public MultiBlockMainComponent(List<Vector3i> multiBlockMembers, BlockRegionc aabb, EntityRef multiBlockEntity, String multiBlockType) {
+    public MultiBlockMainComponent(List<Vector3i> multiBlockMembers, BlockRegionc aabb, EntityRef multiBlockEntity,
+                                   String multiBlockType, long formationId) {
         this.multiBlockMembers = multiBlockMembers;
         this.aabb = new BlockRegion(aabb);
         this.multiBlockEntity = multiBlockEntity;
         this.multiBlockType = multiBlockType;
+        this.formationId = formationId;
     }
 
     public Collection<Vector3i> getMultiBlockMembers() {
@@ -50,6 +53,10 @@ public class MultiBlockMainComponent implements Component<MultiBlockMainComponen
         return multiBlockType;
     }
 
+    public long getFormationId() {
+        return formationId;
+    }
+
     public void setMultiBlockEntity(EntityRef multiBlockEntity) {
         this.multiBlockEntity = multiBlockEntity;
     }
@@ -62,5 +69,6 @@ public class MultiBlockMainComponent implements Component<MultiBlockMainComponen
                 .map(Vector3i::new)
                 .collect(Collectors.toList());
         this.multiBlockType = other.multiBlockType;
+        this.formationId = other.formationId;
     }
 }
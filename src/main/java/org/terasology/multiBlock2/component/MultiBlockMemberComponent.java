@@ -12,20 +12,32 @@ import org.terasology.gestalt.entitysystem.component.Component;
 @ForceBlockActive
 public class MultiBlockMemberComponent implements Component<MultiBlockMemberComponent> {
     public Vector3i mainBlockLocation;
+    public long formationId;
 
     public MultiBlockMemberComponent() {
     }
 
-    public MultiBlockMemberComponent(Vector3i mainBlockLocation) {
+    public MultiBlockMemberComponent(Vector3i mainBlockLocation, long formationId) {
         this.mainBlockLocation = mainBlockLocation;
+        this.formationId = formationId;
     }
 
     public Vector3i getMainBlockLocation() {
         return mainBlockLocation;
     }
 
+    /**
+     * Members are not cleared when the multi-block is unformed, a member belongs to the multi-block only if its
+     * formation id matches the one of the main block. Main and member blocks saved before formation ids existed both
+     * have it set to 0, so they still match each other.
+     */
+    public boolean isMemberOf(MultiBlockMainComponent multiBlockMain) {
+        return multiBlockMain != null && formationId == multiBlockMain.formationId;
+    }
+
     @Override
     public void copyFrom(MultiBlockMemberComponent other) {
         this.mainBlockLocation = new Vector3i(other.mainBlockLocation);
+        this.formationId = other.formationId;
     }
 }
@@ -0,0 +1,25 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.event;
+
+import org.terasology.gestalt.entitysystem.event.Event;
+import org.terasology.multiBlock2.MultiBlockHandle;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sent to the world entity with all the multi-blocks that are about to be unloaded with a chunk. The handles are
+ * still valid while this event is being processed.
+ */
+public class BeforeMultiBlocksUnloaded implements Event {
+    private List<MultiBlockHandle> multiBlocks;
+
+    public BeforeMultiBlocksUnloaded(List<MultiBlockHandle> multiBlocks) {
+        this.multiBlocks = multiBlocks;
+    }
+
+    public List<MultiBlockHandle> getMultiBlocks() {
+        return Collections.unmodifiableList(multiBlocks);
+    }
+}
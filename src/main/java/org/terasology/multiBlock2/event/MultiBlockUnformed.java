@@ -0,0 +1,38 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.event;
+
+import org.joml.Vector3i;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.gestalt.entitysystem.event.Event;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Sent to the main block entity once the multi-block has been torn down. This is the only event sent for the whole
+ * structure, the member blocks do not receive any component lifecycle events.
+ */
+public class MultiBlockUnformed implements Event {
+    private String type;
+    private BlockRegionc region;
+    private Collection<Vector3i> memberBlocks;
+
+    public MultiBlockUnformed(String type, BlockRegionc region, Collection<Vector3i> memberBlocks) {
+        this.type = type;
+        this.region = region;
+        this.memberBlocks = memberBlocks;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public BlockRegionc getRegion() {
+        return region;
+    }
+
+    public Collection<Vector3i> getMemberBlocks() {
+        return Collections.unmodifiableCollection(memberBlocks);
+    }
+}
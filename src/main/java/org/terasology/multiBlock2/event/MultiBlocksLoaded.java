@@ -0,0 +1,24 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.event;
+
+import org.terasology.gestalt.entitysystem.event.Event;
+import org.terasology.multiBlock2.MultiBlockHandle;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sent to the world entity once per update with all the multi-blocks that got loaded during it.
+ */
+public class MultiBlocksLoaded implements Event {
+    private List<MultiBlockHandle> multiBlocks;
+
+    public MultiBlocksLoaded(List<MultiBlockHandle> multiBlocks) {
+        this.multiBlocks = multiBlocks;
+    }
+
+    public List<MultiBlockHandle> getMultiBlocks() {
+        return Collections.unmodifiableList(multiBlocks);
+    }
+}
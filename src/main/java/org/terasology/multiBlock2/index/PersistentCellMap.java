@@ -0,0 +1,181 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.index;
+
+/**
+ * Immutable map from the coordinates of chunk cells to values, stored as a hash trie. A new version of the map is made
+ * with a {@link Builder}, which copies only the nodes on the paths to the changed cells and shares all the others with
+ * the previous version, so the cost of a version depends on the number of changes rather than on the size of the map.
+ *
+ * A builder modifies the nodes it has created itself in place, so a batch of changes copies each node at most once.
+ * Once built, the nodes of a version are never modified again, so it can be read from any thread.
+ *
+ * @param <V> type of the values
+ */
+final class PersistentCellMap<V> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentCellMap<?> EMPTY = new PersistentCellMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentCellMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> PersistentCellMap<V> empty() {
+        return (PersistentCellMap<V>) EMPTY;
+    }
+
+    /**
+     * @return number of cells in the map
+     */
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int x, int y, int z) {
+        long hash = hash(x, y, z);
+        Object current = root;
+        for (int shift = 0; current instanceof Node; shift += BITS) {
+            current = ((Node) current).slots[(int) (hash >>> shift) & MASK];
+        }
+        for (Leaf leaf = (Leaf) current; leaf != null; leaf = leaf.next) {
+            if (leaf.x == x && leaf.y == y && leaf.z == z) {
+                return (V) leaf.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return builder of a new version of the map, starting with the contents of this one
+     */
+    Builder<V> toBuilder() {
+        return new Builder<>(root, size);
+    }
+
+    private static long hash(int x, int y, int z) {
+        long hash = x * 0x9E3779B97F4A7C15L + y * 0xC2B2AE3D27D4EB4FL + z * 0x165667B19E3779F9L;
+        return hash ^ (hash >>> 31);
+    }
+
+    /**
+     * Single use builder of a version of the map.
+     *
+     * @param <V> type of the values
+     */
+    static final class Builder<V> {
+        // Marks the nodes created by this builder, which are not shared with any other version yet
+        private final Object edit = new Object();
+        private Node root;
+        private int size;
+        private boolean built;
+
+        private Builder(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        /**
+         * @param value new value of the cell, or <code>null</code> to remove the cell from the map
+         */
+        void put(int x, int y, int z, V value) {
+            if (built) {
+                throw new IllegalStateException("The map has already been built");
+            }
+            root = put(root, 0, hash(x, y, z), x, y, z, value);
+        }
+
+        PersistentCellMap<V> build() {
+            built = true;
+            return root != null ? new PersistentCellMap<>(root, size) : empty();
+        }
+
+        private Node put(Node node, int shift, long hash, int x, int y, int z, Object value) {
+            if (node == null && value == null) {
+                return null;
+            }
+            Node result = node != null && node.edit == edit ? node : new Node(edit, node);
+            int index = (int) (hash >>> shift) & MASK;
+            Object slot = result.slots[index];
+            if (slot instanceof Node) {
+                result.slots[index] = put((Node) slot, shift + BITS, hash, x, y, z, value);
+            } else {
+                Leaf leaf = (Leaf) slot;
+                if (leaf == null || leaf.hash == hash || shift + BITS >= Long.SIZE) {
+                    result.slots[index] = putInChain(leaf, hash, x, y, z, value);
+                } else if (value != null) {
+                    // Cells of different hashes in the same slot, moved a level down until their hashes diverge
+                    Node child = new Node(edit, null);
+                    child.slots[(int) (leaf.hash >>> (shift + BITS)) & MASK] = leaf;
+                    result.slots[index] = put(child, shift + BITS, hash, x, y, z, value);
+                }
+            }
+            return value == null && result.isEmpty() ? null : result;
+        }
+
+        /**
+         * Cells with the same hash are kept in a chain, which is copied on every change, as it is almost always a
+         * single cell.
+         */
+        private Leaf putInChain(Leaf chain, long hash, int x, int y, int z, Object value) {
+            Leaf result = null;
+            for (Leaf leaf = chain; leaf != null; leaf = leaf.next) {
+                if (leaf.x == x && leaf.y == y && leaf.z == z) {
+                    size--;
+                } else {
+                    result = new Leaf(leaf.hash, leaf.x, leaf.y, leaf.z, leaf.value, result);
+                }
+            }
+            if (value != null) {
+                size++;
+                result = new Leaf(hash, x, y, z, value, result);
+            }
+            return result;
+        }
+    }
+
+    private static final class Node {
+        private final Object edit;
+        private final Object[] slots;
+
+        private Node(Object edit, Node copied) {
+            this.edit = edit;
+            this.slots = copied != null ? copied.slots.clone() : new Object[WIDTH];
+        }
+
+        private boolean isEmpty() {
+            for (Object slot : slots) {
+                if (slot != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Leaf {
+        private final long hash;
+        private final int x;
+        private final int y;
+        private final int z;
+        private final Object value;
+        private final Leaf next;
+
+        private Leaf(long hash, int x, int y, int z, Object value, Leaf next) {
+            this.hash = hash;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.value = value;
+            this.next = next;
+        }
+    }
+}
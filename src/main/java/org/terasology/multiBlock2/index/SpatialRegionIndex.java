@@ -0,0 +1,562 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.index;
+
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.engine.world.chunks.Chunks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Chunk-grid index over the bounding boxes of multi-block structures. Every structure is registered in each chunk
+ * cell its region overlaps, so point, box, radius and nearest-neighbour queries only visit the cells around the
+ * queried area.
+ *
+ * Queries write their results into a scratch buffer owned by the index and return the number of results, which then
+ * can be read with {@link #getFound(int)}. Results are sorted by distance and the buffer is only valid until the next
+ * query. This keeps queries allocation-free, but also means the index must only be used from a single thread. Other
+ * threads can query immutable snapshots of the index instead, see {@link #snapshot(MembershipTest)}.
+ *
+ * @param <T> type of the values registered in the index
+ */
+public class SpatialRegionIndex<T> {
+    /**
+     * Maximum number of locations in a single batch lookup, the location index is packed in the low bits of its sort key.
+     */
+    public static final int MAX_BATCH_SIZE = 1 << 21;
+    private static final int BATCH_INDEX_BITS = 21;
+    private static final int BATCH_CELL_BITS = 14;
+    private static final long BATCH_CELL_MASK = (1L << BATCH_CELL_BITS) - 1;
+
+    private final MembershipTest<T> membershipTest;
+
+    private final Map<Vector3i, List<Entry<T>>> cells = new HashMap<>();
+    private final Map<T, Entry<T>> entries = new HashMap<>();
+
+    private final Vector3i cellKey = new Vector3i();
+    private int queryStamp;
+
+    private long[] batchKeys = new long[0];
+
+    // Cells changed since the last snapshot, tracked only once a snapshot has been taken
+    private Snapshot<T> lastSnapshot;
+    private final Set<Vector3i> changedCells = new HashSet<>();
+
+    private Object[] found = new Object[16];
+    private long[] foundDistances = new long[16];
+    private int foundCount;
+
+    /**
+     * @param membershipTest used by point queries to check whether a block inside the region of a value is actually
+     *                       part of it, <code>null</code> if every block of the region belongs to the value
+     */
+    public SpatialRegionIndex(MembershipTest<T> membershipTest) {
+        this.membershipTest = membershipTest;
+    }
+
+    public void add(BlockRegionc region, String type, T value) {
+        remove(value);
+        Entry<T> entry = new Entry<>(region, type, value);
+        entries.put(value, entry);
+        for (int x = entry.minX >> Chunks.POWER_X; x <= entry.maxX >> Chunks.POWER_X; x++) {
+            for (int y = entry.minY >> Chunks.POWER_Y; y <= entry.maxY >> Chunks.POWER_Y; y++) {
+                for (int z = entry.minZ >> Chunks.POWER_Z; z <= entry.maxZ >> Chunks.POWER_Z; z++) {
+                    cells.computeIfAbsent(new Vector3i(x, y, z), key -> new ArrayList<>(2)).add(entry);
+                    if (lastSnapshot != null) {
+                        changedCells.add(new Vector3i(x, y, z));
+                    }
+                }
+            }
+        }
+    }
+
+    public boolean remove(T value) {
+        Entry<T> entry = entries.remove(value);
+        if (entry == null) {
+            return false;
+        }
+        for (int x = entry.minX >> Chunks.POWER_X; x <= entry.maxX >> Chunks.POWER_X; x++) {
+            for (int y = entry.minY >> Chunks.POWER_Y; y <= entry.maxY >> Chunks.POWER_Y; y++) {
+                for (int z = entry.minZ >> Chunks.POWER_Z; z <= entry.maxZ >> Chunks.POWER_Z; z++) {
+                    cellKey.set(x, y, z);
+                    List<Entry<T>> cell = cells.get(cellKey);
+                    if (cell != null) {
+                        cell.remove(entry);
+                        if (cell.isEmpty()) {
+                            cells.remove(cellKey);
+                        }
+                        if (lastSnapshot != null) {
+                            changedCells.add(new Vector3i(cellKey));
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    public boolean contains(T value) {
+        return entries.containsKey(value);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        cells.clear();
+        entries.clear();
+        foundCount = 0;
+        lastSnapshot = null;
+        changedCells.clear();
+    }
+
+    /**
+     * Returns an immutable snapshot of the index, that can be queried from any thread. If nothing has changed since the
+     * previous snapshot, it is returned as is. Otherwise only the cells changed since the previous snapshot are copied,
+     * the cells of a snapshot are kept in a {@link PersistentCellMap}, which shares all the other cells with the
+     * previous snapshot. The first snapshot copies all the cells.
+     *
+     * @param membershipTest used by the point queries of the snapshot, has to be safe to call from any thread
+     */
+    public Snapshot<T> snapshot(MembershipTest<T> membershipTest) {
+        if (lastSnapshot != null && changedCells.isEmpty()) {
+            if (lastSnapshot.membershipTest != membershipTest) {
+                lastSnapshot = new Snapshot<>(lastSnapshot.cells, lastSnapshot.size, membershipTest);
+            }
+            return lastSnapshot;
+        }
+        PersistentCellMap.Builder<Object[]> snapshotCells;
+        Iterable<Vector3i> copiedCells;
+        if (lastSnapshot == null) {
+            snapshotCells = PersistentCellMap.<Object[]>empty().toBuilder();
+            copiedCells = cells.keySet();
+        } else {
+            snapshotCells = lastSnapshot.cells.toBuilder();
+            copiedCells = changedCells;
+        }
+        for (Vector3i copiedCell : copiedCells) {
+            List<Entry<T>> cell = cells.get(copiedCell);
+            snapshotCells.put(copiedCell.x, copiedCell.y, copiedCell.z, cell != null ? cell.toArray() : null);
+        }
+        changedCells.clear();
+        lastSnapshot = new Snapshot<>(snapshotCells.build(), entries.size(), membershipTest);
+        return lastSnapshot;
+    }
+
+    /**
+     * Returns the value of the given type containing the block at the specified location.
+     *
+     * @param type type of the value to look for, or <code>null</code> to accept any type
+     */
+    public T getAt(Vector3ic location, String type) {
+        return getAt(location.x(), location.y(), location.z(), type);
+    }
+
+    public T getAt(int x, int y, int z, String type) {
+        cellKey.set(x >> Chunks.POWER_X, y >> Chunks.POWER_Y, z >> Chunks.POWER_Z);
+        List<Entry<T>> cell = cells.get(cellKey);
+        if (cell == null) {
+            return null;
+        }
+        return findInCell(cell, x, y, z, type);
+    }
+
+    /**
+     * Looks up the values of the given type containing the blocks at many locations at once. The locations are grouped
+     * by chunk cell, so that each cell is looked up once per batch however many of the locations fall into it.
+     *
+     * @param locations x, y and z of each location, one after another
+     * @param count     number of locations, at most {@link #MAX_BATCH_SIZE}
+     * @param type      type of the values to look for, or <code>null</code> to accept any type
+     * @param result    filled with the value at each location, or <code>null</code> where there is none
+     */
+    public void getAllAt(int[] locations, int count, String type, T[] result) {
+        if (count > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " locations can be looked up at once");
+        }
+        if (batchKeys.length < count) {
+            batchKeys = new long[Math.max(count, batchKeys.length * 2)];
+        }
+        for (int i = 0; i < count; i++) {
+            // Cell coordinates are truncated, so distant cells may share a group, which only costs an extra cell lookup
+            long cellX = (locations[3 * i] >> Chunks.POWER_X) & BATCH_CELL_MASK;
+            long cellY = (locations[3 * i + 1] >> Chunks.POWER_Y) & BATCH_CELL_MASK;
+            long cellZ = (locations[3 * i + 2] >> Chunks.POWER_Z) & BATCH_CELL_MASK;
+            batchKeys[i] = (((cellX << BATCH_CELL_BITS | cellY) << BATCH_CELL_BITS | cellZ) << BATCH_INDEX_BITS) | i;
+        }
+        Arrays.sort(batchKeys, 0, count);
+
+        List<Entry<T>> cell = null;
+        boolean cellLoaded = false;
+        for (int i = 0; i < count; i++) {
+            int index = (int) (batchKeys[i] & (MAX_BATCH_SIZE - 1));
+            int x = locations[3 * index];
+            int y = locations[3 * index + 1];
+            int z = locations[3 * index + 2];
+            int cellX = x >> Chunks.POWER_X;
+            int cellY = y >> Chunks.POWER_Y;
+            int cellZ = z >> Chunks.POWER_Z;
+            if (!cellLoaded || cellKey.x != cellX || cellKey.y != cellY || cellKey.z != cellZ) {
+                cellKey.set(cellX, cellY, cellZ);
+                cell = cells.get(cellKey);
+                cellLoaded = true;
+            }
+            result[index] = cell != null ? findInCell(cell, x, y, z, type) : null;
+        }
+    }
+
+    /**
+     * Finds all values of the given type whose region is within the radius of the location, closest first.
+     *
+     * @return number of values found, use {@link #getFound(int)} to read them
+     */
+    public int findWithinRadius(Vector3ic location, float radius, String type) {
+        startQuery();
+        int blockRadius = (int) Math.ceil(radius);
+        // All distances are computed on doubled coordinates, so that box centers stay integer
+        long maxDistance = (long) Math.floor(4.0 * radius * radius);
+        long centerX = 2L * location.x();
+        long centerY = 2L * location.y();
+        long centerZ = 2L * location.z();
+        for (int x = (location.x() - blockRadius) >> Chunks.POWER_X; x <= (location.x() + blockRadius) >> Chunks.POWER_X; x++) {
+            for (int y = (location.y() - blockRadius) >> Chunks.POWER_Y; y <= (location.y() + blockRadius) >> Chunks.POWER_Y; y++) {
+                for (int z = (location.z() - blockRadius) >> Chunks.POWER_Z; z <= (location.z() + blockRadius) >> Chunks.POWER_Z; z++) {
+                    collectFromCell(x, y, z, type, centerX, centerY, centerZ, maxDistance);
+                }
+            }
+        }
+        sortFound();
+        return foundCount;
+    }
+
+    /**
+     * Finds all values of the given type whose region intersects the specified box, ordered by distance from the center
+     * of the box.
+     *
+     * @return number of values found, use {@link #getFound(int)} to read them
+     */
+    public int findIntersecting(BlockRegionc box, String type) {
+        startQuery();
+        long centerX = (long) box.minX() + box.maxX();
+        long centerY = (long) box.minY() + box.maxY();
+        long centerZ = (long) box.minZ() + box.maxZ();
+        for (int x = box.minX() >> Chunks.POWER_X; x <= box.maxX() >> Chunks.POWER_X; x++) {
+            for (int y = box.minY() >> Chunks.POWER_Y; y <= box.maxY() >> Chunks.POWER_Y; y++) {
+                for (int z = box.minZ() >> Chunks.POWER_Z; z <= box.maxZ() >> Chunks.POWER_Z; z++) {
+                    cellKey.set(x, y, z);
+                    List<Entry<T>> cell = cells.get(cellKey);
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < cell.size(); i++) {
+                        Entry<T> entry = cell.get(i);
+                        if (entry.queryStamp != queryStamp && entry.isOfType(type) && entry.intersects(box)) {
+                            entry.queryStamp = queryStamp;
+                            addFound(entry.value, entry.distanceSquared(centerX, centerY, centerZ));
+                        }
+                    }
+                }
+            }
+        }
+        sortFound();
+        return foundCount;
+    }
+
+    /**
+     * Finds up to <code>count</code> values of the given type closest to the location. The search visits rings of
+     * chunk cells around the location, and stops as soon as no cell further out can contain a closer value.
+     *
+     * @param maxRadius maximum distance of the values to find, or a negative value for unbounded search
+     * @return number of values found, use {@link #getFound(int)} to read them
+     */
+    public int findNearest(Vector3ic location, int count, float maxRadius, String type) {
+        startQuery();
+        if (count <= 0 || entries.isEmpty()) {
+            return 0;
+        }
+        long maxDistance = maxRadius < 0 ? Long.MAX_VALUE : (long) Math.floor(4.0 * maxRadius * maxRadius);
+        long centerX = 2L * location.x();
+        long centerY = 2L * location.y();
+        long centerZ = 2L * location.z();
+        int cellX = location.x() >> Chunks.POWER_X;
+        int cellY = location.y() >> Chunks.POWER_Y;
+        int cellZ = location.z() >> Chunks.POWER_Z;
+        int minCellSize = Math.min(Chunks.SIZE_X, Math.min(Chunks.SIZE_Y, Chunks.SIZE_Z));
+
+        int visitedCells = 0;
+        for (int ring = 0; ; ring++) {
+            long ringCellCount = ring == 0 ? 1 : (long) (2 * ring + 1) * (2 * ring + 1) * (2 * ring + 1)
+                    - (long) (2 * ring - 1) * (2 * ring - 1) * (2 * ring - 1);
+            if (visitedCells + ringCellCount >= cells.size()) {
+                // Walking the ring would cost more than looking at every remaining cell
+                collectFromAllCells(type, centerX, centerY, centerZ, maxDistance);
+                break;
+            }
+            for (int dx = -ring; dx <= ring; dx++) {
+                for (int dy = -ring; dy <= ring; dy++) {
+                    boolean onShell = Math.abs(dx) == ring || Math.abs(dy) == ring;
+                    int dzStep = onShell ? 1 : Math.max(1, 2 * ring);
+                    for (int dz = -ring; dz <= ring; dz += dzStep) {
+                        if (collectFromCell(cellX + dx, cellY + dy, cellZ + dz, type, centerX, centerY, centerZ, maxDistance)) {
+                            visitedCells++;
+                        }
+                    }
+                }
+            }
+            // Every block in cells outside of this ring is at least this far away (in doubled coordinates)
+            long ringDistance = 2L * ring * minCellSize;
+            long ringDistanceSquared = ringDistance * ringDistance;
+            if (ringDistanceSquared > maxDistance) {
+                break;
+            }
+            if (foundCount >= count) {
+                sortFound();
+                if (foundDistances[count - 1] <= ringDistanceSquared) {
+                    break;
+                }
+            }
+        }
+        sortFound();
+        foundCount = Math.min(foundCount, count);
+        return foundCount;
+    }
+
+    /**
+     * Returns a result of the last query. Index 0 is the closest value.
+     */
+    @SuppressWarnings("unchecked")
+    public T getFound(int index) {
+        if (index < 0 || index >= foundCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", found: " + foundCount);
+        }
+        return (T) found[index];
+    }
+
+    private T findInCell(List<Entry<T>> cell, int x, int y, int z, String type) {
+        for (int i = 0; i < cell.size(); i++) {
+            Entry<T> entry = cell.get(i);
+            if (entry.contains(x, y, z) && entry.isOfType(type)
+                    && (membershipTest == null || membershipTest.contains(entry.value, x, y, z))) {
+                return entry.value;
+            }
+        }
+        return null;
+    }
+
+    private void startQuery() {
+        queryStamp++;
+        for (int i = 0; i < foundCount; i++) {
+            found[i] = null;
+        }
+        foundCount = 0;
+    }
+
+    private boolean collectFromCell(int x, int y, int z, String type, long centerX, long centerY, long centerZ, long maxDistance) {
+        cellKey.set(x, y, z);
+        List<Entry<T>> cell = cells.get(cellKey);
+        if (cell == null) {
+            return false;
+        }
+        collectFromList(cell, type, centerX, centerY, centerZ, maxDistance);
+        return true;
+    }
+
+    private void collectFromAllCells(String type, long centerX, long centerY, long centerZ, long maxDistance) {
+        for (List<Entry<T>> cell : cells.values()) {
+            collectFromList(cell, type, centerX, centerY, centerZ, maxDistance);
+        }
+    }
+
+    private void collectFromList(List<Entry<T>> cell, String type, long centerX, long centerY, long centerZ, long maxDistance) {
+        for (int i = 0; i < cell.size(); i++) {
+            Entry<T> entry = cell.get(i);
+            if (entry.queryStamp != queryStamp && entry.isOfType(type)) {
+                entry.queryStamp = queryStamp;
+                long distance = entry.distanceSquared(centerX, centerY, centerZ);
+                if (distance <= maxDistance) {
+                    addFound(entry.value, distance);
+                }
+            }
+        }
+    }
+
+    private void addFound(T value, long distance) {
+        if (foundCount == found.length) {
+            int newLength = found.length * 2;
+            Object[] newFound = new Object[newLength];
+            long[] newDistances = new long[newLength];
+            System.arraycopy(found, 0, newFound, 0, foundCount);
+            System.arraycopy(foundDistances, 0, newDistances, 0, foundCount);
+            found = newFound;
+            foundDistances = newDistances;
+        }
+        found[foundCount] = value;
+        foundDistances[foundCount] = distance;
+        foundCount++;
+    }
+
+    private void sortFound() {
+        sortFound(0, foundCount - 1);
+    }
+
+    private void sortFound(int from, int to) {
+        while (to - from > 16) {
+            long pivot = foundDistances[(from + to) >>> 1];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (foundDistances[i] < pivot) {
+                    i++;
+                }
+                while (foundDistances[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swapFound(i++, j--);
+                }
+            }
+            // Recurse into the smaller part, loop on the bigger one
+            if (j - from < to - i) {
+                sortFound(from, j);
+                from = i;
+            } else {
+                sortFound(i, to);
+                to = j;
+            }
+        }
+        for (int i = from + 1; i <= to; i++) {
+            for (int j = i; j > from && foundDistances[j - 1] > foundDistances[j]; j--) {
+                swapFound(j - 1, j);
+            }
+        }
+    }
+
+    private void swapFound(int i, int j) {
+        Object value = found[i];
+        found[i] = found[j];
+        found[j] = value;
+        long distance = foundDistances[i];
+        foundDistances[i] = foundDistances[j];
+        foundDistances[j] = distance;
+    }
+
+    /**
+     * Checks if a block within the region of a value belongs to that value.
+     */
+    @FunctionalInterface
+    public interface MembershipTest<T> {
+        boolean contains(T value, int x, int y, int z);
+    }
+
+    /**
+     * Immutable copy of the index, supporting the point queries only. Safe to share between threads.
+     *
+     * @param <T> type of the values registered in the index
+     */
+    public static final class Snapshot<T> {
+        private final PersistentCellMap<Object[]> cells;
+        private final int size;
+        private final MembershipTest<T> membershipTest;
+
+        private Snapshot(PersistentCellMap<Object[]> cells, int size, MembershipTest<T> membershipTest) {
+            this.cells = cells;
+            this.size = size;
+            this.membershipTest = membershipTest;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public T getAt(Vector3ic location, String type) {
+            return getAt(location.x(), location.y(), location.z(), type);
+        }
+
+        /**
+         * Returns the value of the given type containing the block at the specified location, as of the time the
+         * snapshot was taken.
+         *
+         * @param type type of the value to look for, or <code>null</code> to accept any type
+         */
+        @SuppressWarnings("unchecked")
+        public T getAt(int x, int y, int z, String type) {
+            Object[] cell = cells.get(x >> Chunks.POWER_X, y >> Chunks.POWER_Y, z >> Chunks.POWER_Z);
+            if (cell == null) {
+                return null;
+            }
+            for (Object cellEntry : cell) {
+                Entry<T> entry = (Entry<T>) cellEntry;
+                if (entry.contains(x, y, z) && entry.isOfType(type)
+                        && (membershipTest == null || membershipTest.contains(entry.value, x, y, z))) {
+                    return entry.value;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Entry<T> {
+        private final int minX;
+        private final int minY;
+        private final int minZ;
+        private final int maxX;
+        private final int maxY;
+        private final int maxZ;
+        private final String type;
+        private final T value;
+        private int queryStamp;
+
+        private Entry(BlockRegionc region, String type, T value) {
+            this.minX = region.minX();
+            this.minY = region.minY();
+            this.minZ = region.minZ();
+            this.maxX = region.maxX();
+            this.maxY = region.maxY();
+            this.maxZ = region.maxZ();
+            this.type = type;
+            this.value = value;
+        }
+
+        private boolean isOfType(String requestedType) {
+            return requestedType == null || requestedType.equals(type);
+        }
+
+        private boolean contains(int x, int y, int z) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        }
+
+        private boolean intersects(BlockRegionc box) {
+            return box.minX() <= maxX && box.maxX() >= minX
+                    && box.minY() <= maxY && box.maxY() >= minY
+                    && box.minZ() <= maxZ && box.maxZ() >= minZ;
+        }
+
+        /**
+         * Squared distance between the point and the closest block of the region, all in doubled coordinates.
+         */
+        private long distanceSquared(long doubledX, long doubledY, long doubledZ) {
+            long dx = axisDistance(doubledX, 2L * minX, 2L * maxX);
+            long dy = axisDistance(doubledY, 2L * minY, 2L * maxY);
+            long dz = axisDistance(doubledZ, 2L * minZ, 2L * maxZ);
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        private static long axisDistance(long value, long min, long max) {
+            if (value < min) {
+                return min - value;
+            } else if (value > max) {
+                return value - max;
+            }
+            return 0;
+        }
+    }
+}
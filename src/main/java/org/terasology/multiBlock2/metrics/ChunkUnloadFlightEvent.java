@@ -0,0 +1,13 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.terasology.multiBlock2.ChunkUnload")
+@Label("Multi-block Chunk Unload")
+@Description("Cleanup of the multi-blocks of a chunk being unloaded")
+class ChunkUnloadFlightEvent extends MultiBlockFlightEvent {
+}
@@ -0,0 +1,26 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.metrics;
+
+/**
+ * Monotonic counter of the {@link MultiBlockMetrics}.
+ */
+public class Counter {
+    private long value;
+
+    public void increment() {
+        value++;
+    }
+
+    public void add(long amount) {
+        value += amount;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    void reset() {
+        value = 0;
+    }
+}
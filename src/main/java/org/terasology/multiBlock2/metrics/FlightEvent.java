@@ -0,0 +1,33 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.metrics;
+
+/**
+ * Event of the multi-block systems, recorded by the Java Flight Recorder if it is available, see
+ * {@link MultiBlockFlightRecorder}. The event is begun before the measured operation, and committed with
+ * {@link #commitIfEnabled(String, long, int, String)} after it.
+ */
+public interface FlightEvent {
+    void begin();
+
+    /**
+     * @return <code>true</code> if the event is recorded, so the values that are costly to compute are worth it
+     */
+    boolean isEnabled();
+
+    /**
+     * Ends the event and commits it with the values, if it is recorded.
+     *
+     * @param volume        number of blocks in the region of the multi-block, 0 if there is none
+     * @param blocksVisited number of blocks looked at or modified, -1 if unknown
+     */
+    void commitIfEnabled(String type, long volume, int blocksVisited, String outcome);
+
+    /**
+     * Only recorded by the restore events.
+     *
+     * @param sinceActivation nanoseconds since the first block of the multi-block was activated
+     */
+    default void setSinceActivation(long sinceActivation) {
+    }
+}
@@ -0,0 +1,11 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.metrics;
+
+public enum FlightEventType {
+    DETECTION,
+    FORM,
+    UNFORM,
+    RESTORE,
+    CHUNK_UNLOAD
+}
@@ -0,0 +1,13 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.terasology.multiBlock2.Form")
+@Label("Multi-block Form")
+@Description("Forming of a multi-block, or the start of its amortized forming")
+class FormFlightEvent extends MultiBlockFlightEvent {
+}
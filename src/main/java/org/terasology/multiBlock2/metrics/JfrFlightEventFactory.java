@@ -0,0 +1,34 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.metrics;
+
+import java.util.function.Function;
+
+/**
+ * Not for external use! Only ever loaded through reflection by {@link MultiBlockFlightRecorder}, as the events it
+ * creates depend on the Java Flight Recorder.
+ */
+public final class JfrFlightEventFactory implements Function<FlightEventType, FlightEvent> {
+    public JfrFlightEventFactory() {
+        // Fails right away if the events cannot be loaded
+        new DetectionFlightEvent();
+    }
+
+    @Override
+    public FlightEvent apply(FlightEventType type) {
+        switch (type) {
+            case DETECTION:
+                return new DetectionFlightEvent();
+            case FORM:
+                return new FormFlightEvent();
+            case UNFORM:
+                return new UnformFlightEvent();
+            case RESTORE:
+                return new RestoreFlightEvent();
+            case CHUNK_UNLOAD:
+                return new ChunkUnloadFlightEvent();
+            default:
+                throw new IllegalArgumentException("Unknown flight event type: " + type);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the metrics to the log, in the same format as the multiBlockMetrics console command.
+ */
+public class LoggingMetricsExporter implements MetricsExporter {
+    private static final Logger logger = LoggerFactory.getLogger(LoggingMetricsExporter.class);
+
+    @Override
+    public void export(MultiBlockMetrics metrics) {
+        logger.info("Multi-block metrics:\n{}", metrics.describe());
+    }
+}
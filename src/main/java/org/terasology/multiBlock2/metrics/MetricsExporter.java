@@ -0,0 +1,11 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.metrics;
+
+/**
+ * Receives the {@link MultiBlockMetrics} periodically while they are enabled, to publish them to a monitoring
+ * system. Called on the main thread, so implementations should hand the values over instead of blocking on I/O.
+ */
+public interface MetricsExporter {
+    void export(MultiBlockMetrics metrics);
+}
@@ -0,0 +1,43 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base of the Java Flight Recorder events of the multi-block systems. The events are disabled by default, and need to
+ * be enabled in the recording settings, so that they cost nothing unless they are recorded. Only created through
+ * {@link MultiBlockFlightRecorder}, which makes sure they are never loaded where JFR is not available.
+ */
+@Category({"Terasology", "Multi-block"})
+@Enabled(false)
+@StackTrace(false)
+abstract class MultiBlockFlightEvent extends Event implements FlightEvent {
+    @Label("Type")
+    String type;
+
+    @Label("Volume")
+    long volume;
+
+    @Label("Blocks Visited")
+    int blocksVisited;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Override
+    public void commitIfEnabled(String type, long volume, int blocksVisited, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.type = type;
+            this.volume = volume;
+            this.blocksVisited = blocksVisited;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
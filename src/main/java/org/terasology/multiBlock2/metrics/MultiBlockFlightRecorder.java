@@ -0,0 +1,61 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.engine.world.block.BlockRegionc;
+
+import java.util.function.Function;
+
+/**
+ * Creates the flight events of the multi-block systems. The Java Flight Recorder is not part of the API modules are
+ * allowed to use, so the classes referencing it are only loaded through reflection, once, when this class is first
+ * used. If that fails, all the events are a shared no-op, and nothing is recorded.
+ */
+public final class MultiBlockFlightRecorder {
+    private static final Logger logger = LoggerFactory.getLogger(MultiBlockFlightRecorder.class);
+    private static final String JFR_FACTORY_CLASS = "org.terasology.multiBlock2.metrics.JfrFlightEventFactory";
+
+    private static final FlightEvent DISABLED = new FlightEvent() {
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void commitIfEnabled(String type, long volume, int blocksVisited, String outcome) {
+        }
+    };
+
+    private static final Function<FlightEventType, FlightEvent> FACTORY = loadFactory();
+
+    private MultiBlockFlightRecorder() {
+    }
+
+    public static boolean isAvailable() {
+        return FACTORY != null;
+    }
+
+    public static FlightEvent create(FlightEventType type) {
+        return FACTORY != null ? FACTORY.apply(type) : DISABLED;
+    }
+
+    public static long getVolume(BlockRegionc region) {
+        return (long) region.getSizeX() * region.getSizeY() * region.getSizeZ();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<FlightEventType, FlightEvent> loadFactory() {
+        try {
+            return (Function<FlightEventType, FlightEvent>) Class.forName(JFR_FACTORY_CLASS).getConstructor().newInstance();
+        } catch (Exception | LinkageError e) {
+            logger.info("Java Flight Recorder is not available, multi-block flight events are disabled");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the counters, gauges and histograms collected by the multi-block systems. Disabled by default, in which
+ * case the instrumented code skips taking timestamps and recording values altogether, so callers should check
+ * {@link #isEnabled()} before measuring anything. Durations are measured with {@link #startTimer()} and
+ * {@link #recordTime(String, String, long)}, which do the check themselves.
+ *
+ * Metrics of a multi-block type are registered under <code>name.type</code>. Not thread safe, it is meant to be used
+ * only from the main thread, like the systems it instruments.
+ */
+public class MultiBlockMetrics {
+    private static final long DEFAULT_EXPORT_INTERVAL_MS = 60000;
+
+    private boolean enabled;
+
+    private final Map<String, Counter> counters = new TreeMap<>();
+    private final Map<String, LongSupplier> gauges = new TreeMap<>();
+    private final Map<String, Histogram> histograms = new TreeMap<>();
+    // Avoids building the metric name on every record of a per-type metric
+    private final Map<String, Map<String, Counter>> typeCounters = new HashMap<>();
+    private final Map<String, Map<String, Histogram>> typeHistograms = new HashMap<>();
+
+    private final List<MetricsExporter> exporters = new ArrayList<>();
+    private long exportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_EXPORT_INTERVAL_MS);
+    private long lastExportTime;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        if (enabled && !this.enabled) {
+            lastExportTime = System.nanoTime();
+        }
+        this.enabled = enabled;
+    }
+
+    public Counter getCounter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public Counter getCounter(String name, String type) {
+        return typeCounters.computeIfAbsent(name, key -> new HashMap<>())
+                .computeIfAbsent(type, key -> getCounter(name + "." + type));
+    }
+
+    public Histogram getHistogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    public Histogram getHistogram(String name, String type) {
+        return typeHistograms.computeIfAbsent(name, key -> new HashMap<>())
+                .computeIfAbsent(type, key -> getHistogram(name + "." + type));
+    }
+
+    /**
+     * @return start of a duration to pass to {@link #recordTime(String, long)}, or 0 if the metrics are disabled, in
+     * which case no timestamp is taken.
+     */
+    public long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time elapsed since the start returned by {@link #startTimer()}. Does nothing if the metrics were
+     * disabled when the timer was started, or are disabled now.
+     */
+    public void recordTime(String name, long start) {
+        if (enabled && start != 0) {
+            getHistogram(name).record(System.nanoTime() - start);
+        }
+    }
+
+    public void recordTime(String name, String type, long start) {
+        if (enabled && start != 0) {
+            getHistogram(name, type).record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Registers a gauge, which value is read only when the metrics are described or exported.
+     */
+    public void registerGauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public Map<String, Counter> getCounters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    public Map<String, LongSupplier> getGauges() {
+        return Collections.unmodifiableMap(gauges);
+    }
+
+    public Map<String, Histogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Resets all the counters and histograms, gauges are left as they are, as they reflect the current state.
+     */
+    public void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    public void addExporter(MetricsExporter exporter) {
+        exporters.add(exporter);
+    }
+
+    public void removeExporter(MetricsExporter exporter) {
+        exporters.remove(exporter);
+    }
+
+    public void setExportInterval(long intervalMs) {
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("Export interval has to be positive");
+        }
+        exportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+    }
+
+    /**
+     * Passes the metrics to all the exporters, if they are enabled and the export interval elapsed since the last
+     * export.
+     */
+    public void exportIfDue() {
+        if (!enabled || exporters.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastExportTime >= exportIntervalNanos) {
+            lastExportTime = now;
+            for (MetricsExporter exporter : exporters) {
+                exporter.export(this);
+            }
+        }
+    }
+
+    /**
+     * @return human readable listing of all the metrics, durations are in microseconds.
+     */
+    public String describe() {
+        StringBuilder result = new StringBuilder();
+        if (!enabled) {
+            result.append("Metrics are disabled\n");
+        }
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            result.append(gauge.getKey()).append(" = ").append(gauge.getValue().getAsLong()).append('\n');
+        }
+        for (Map.Entry<String, Counter> counter : counters.entrySet()) {
+            result.append(counter.getKey()).append(" = ").append(counter.getValue().getValue()).append('\n');
+        }
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            String name = entry.getKey();
+            Histogram histogram = entry.getValue();
+            // Histograms of durations are named *.time and kept in nanoseconds
+            double scale = name.endsWith(".time") || name.contains(".time.") ? 1000 : 1;
+            result.append(String.format("%s count=%d mean=%.1f p50=%.1f p99=%.1f max=%.1f%n", name,
+                    histogram.getCount(), histogram.getMean() / scale, histogram.getPercentile(0.5f) / scale,
+                    histogram.getPercentile(0.99f) / scale, histogram.getMax() / scale));
+        }
+        return result.toString();
+    }
+}
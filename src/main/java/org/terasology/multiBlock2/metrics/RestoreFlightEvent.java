@@ -0,0 +1,23 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("org.terasology.multiBlock2.Restore")
+@Label("Multi-block Restore")
+@Description("Restoring of a multi-block, after all of its chunks got loaded")
+class RestoreFlightEvent extends MultiBlockFlightEvent {
+    @Label("Since Activation")
+    @Description("Time since the first block of the multi-block was activated, 0 if the multi-block metrics are disabled")
+    @Timespan(Timespan.NANOSECONDS)
+    long sinceActivation;
+
+    @Override
+    public void setSinceActivation(long sinceActivation) {
+        this.sinceActivation = sinceActivation;
+    }
+}
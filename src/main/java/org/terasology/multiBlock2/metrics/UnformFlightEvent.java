@@ -0,0 +1,13 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.terasology.multiBlock2.Unform")
+@Label("Multi-block Unform")
+@Description("Unforming of a multi-block, or the start of its amortized unforming")
+class UnformFlightEvent extends MultiBlockFlightEvent {
+}
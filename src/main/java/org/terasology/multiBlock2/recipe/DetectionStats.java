@@ -0,0 +1,22 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.recipe;
+
+/**
+ * Statistics of a single detection, filled in by the recipe while it looks for a multi-block. A new instance is passed
+ * to every detection, so recipes shared between callers keep no state of their own.
+ */
+public final class DetectionStats {
+    private int blocksVisited;
+
+    public void blockVisited() {
+        blocksVisited++;
+    }
+
+    /**
+     * @return number of blocks the recipe looked at, 0 if it does not keep track of it.
+     */
+    public int getBlocksVisited() {
+        return blocksVisited;
+    }
+}
@@ -0,0 +1,247 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.recipe;
+
+import com.google.common.base.Predicate;
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.world.BlockEntityRegistry;
+import org.terasology.engine.world.WorldProvider;
+import org.terasology.multiBlock2.DefaultMultiBlockDefinition;
+import org.terasology.multiBlockCommon.BlockIdFilter;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Detects multi-blocks of any shape, made of the blocks matching the filter connected by their faces to the placed
+ * one - pipelines, walls or irregular tanks.
+ *
+ * The flood fill is bounded: it never accepts more than <code>maxBlockCount</code> blocks, and never goes further
+ * from the placed block than the structure could extend within <code>maxSize</code>. Structures exceeding either are
+ * rejected, as are the ones which bounding box size is not accepted by the size filter.
+ *
+ * The main block of the detected multi-block is its lowest block (by y, then z, then x), so it does not depend on
+ * which block was placed last.
+ */
+public class FloodFillMultiBlockRecipe implements MultiBlockRecipe<DefaultMultiBlockDefinition> {
+    private String multiBlockType;
+    private WorldProvider worldProvider;
+    private BlockEntityRegistry blockEntityRegistry;
+    private Predicate<EntityRef> blockFilter;
+    private Predicate<Vector3i> sizeFilter;
+    private int maxBlockCount;
+    private Vector3i maxSize;
+
+    // The search box is centered on the placed block, so that it contains any structure within maxSize
+    private int boxSizeX;
+    private int boxSizeY;
+    private int boxSizeZ;
+    private BitSet visited;
+    private int[] queue;
+
+    public FloodFillMultiBlockRecipe(String multiBlockType, BlockEntityRegistry blockEntityRegistry, Predicate<EntityRef> blockFilter,
+                                     Predicate<Vector3i> sizeFilter, int maxBlockCount, Vector3ic maxSize) {
+        this(multiBlockType, null, blockEntityRegistry, blockFilter, sizeFilter, maxBlockCount, maxSize);
+    }
+
+    public FloodFillMultiBlockRecipe(String multiBlockType, WorldProvider worldProvider, BlockEntityRegistry blockEntityRegistry,
+                                     Predicate<EntityRef> blockFilter, Predicate<Vector3i> sizeFilter, int maxBlockCount,
+                                     Vector3ic maxSize) {
+        if (maxBlockCount < 1 || maxSize.x() < 1 || maxSize.y() < 1 || maxSize.z() < 1) {
+            throw new IllegalArgumentException("Invalid values for maxBlockCount or maxSize");
+        }
+        this.multiBlockType = multiBlockType;
+        this.worldProvider = worldProvider;
+        this.blockEntityRegistry = blockEntityRegistry;
+        this.blockFilter = blockFilter;
+        this.sizeFilter = sizeFilter;
+        this.maxBlockCount = maxBlockCount;
+        this.maxSize = new Vector3i(maxSize);
+
+        boxSizeX = 2 * maxSize.x() - 1;
+        boxSizeY = 2 * maxSize.y() - 1;
+        boxSizeZ = 2 * maxSize.z() - 1;
+        visited = new BitSet(boxSizeX * boxSizeY * boxSizeZ);
+        queue = new int[maxBlockCount];
+    }
+
+    @Override
+    public DefaultMultiBlockDefinition detectFormingMultiBlock(Vector3ic location) {
+        return detectFormingMultiBlock(location, new DetectionStats());
+    }
+
+    @Override
+    public DefaultMultiBlockDefinition detectFormingMultiBlock(Vector3ic location, DetectionStats stats) {
+        stats.blockVisited();
+        if (!BlockIdFilter.matchesAt(blockFilter, location, worldProvider, blockEntityRegistry)) {
+            return null;
+        }
+
+        int originX = location.x() - maxSize.x + 1;
+        int originY = location.y() - maxSize.y + 1;
+        int originZ = location.z() - maxSize.z + 1;
+
+        int start = getIndex(maxSize.x - 1, maxSize.y - 1, maxSize.z - 1);
+        visited.set(start);
+        queue[0] = start;
+        int head = 0;
+        int tail = 1;
+        int minX = maxSize.x - 1;
+        int minY = maxSize.y - 1;
+        int minZ = maxSize.z - 1;
+        int maxX = minX;
+        int maxY = minY;
+        int maxZ = minZ;
+        boolean accepted = true;
+        Vector3i testedLocation = new Vector3i();
+
+        search:
+        while (head < tail) {
+            int index = queue[head++];
+            int x = index % boxSizeX;
+            int y = index / (boxSizeX * boxSizeZ);
+            int z = (index / boxSizeX) % boxSizeZ;
+            for (int side = 0; side < 6; side++) {
+                int neighborX = x + (side == 0 ? 1 : side == 1 ? -1 : 0);
+                int neighborY = y + (side == 2 ? 1 : side == 3 ? -1 : 0);
+                int neighborZ = z + (side == 4 ? 1 : side == 5 ? -1 : 0);
+                testedLocation.set(originX + neighborX, originY + neighborY, originZ + neighborZ);
+                if (neighborX < 0 || neighborY < 0 || neighborZ < 0
+                        || neighborX >= boxSizeX || neighborY >= boxSizeY || neighborZ >= boxSizeZ) {
+                    // A matching block outside of the box means the structure is too big
+                    stats.blockVisited();
+                    if (BlockIdFilter.matchesAt(blockFilter, testedLocation, worldProvider, blockEntityRegistry)) {
+                        accepted = false;
+                        break search;
+                    }
+                    continue;
+                }
+                int neighbor = getIndex(neighborX, neighborY, neighborZ);
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                stats.blockVisited();
+                if (!BlockIdFilter.matchesAt(blockFilter, testedLocation, worldProvider, blockEntityRegistry)) {
+                    continue;
+                }
+                if (tail == maxBlockCount) {
+                    accepted = false;
+                    break search;
+                }
+                queue[tail++] = neighbor;
+                minX = Math.min(minX, neighborX);
+                minY = Math.min(minY, neighborY);
+                minZ = Math.min(minZ, neighborZ);
+                maxX = Math.max(maxX, neighborX);
+                maxY = Math.max(maxY, neighborY);
+                maxZ = Math.max(maxZ, neighborZ);
+                if (maxX - minX >= maxSize.x || maxY - minY >= maxSize.y || maxZ - minZ >= maxSize.z) {
+                    accepted = false;
+                    break search;
+                }
+            }
+        }
+
+        clearVisited(tail);
+        if (!accepted || !sizeFilter.apply(new Vector3i(maxX - minX + 1, maxY - minY + 1, maxZ - minZ + 1))) {
+            return null;
+        }
+
+        int[] blockIndices = Arrays.copyOf(queue, tail);
+        // Box indices grow with y, then z, then x, so the first one sorted is the lowest block
+        Arrays.sort(blockIndices);
+        Vector3i mainBlock = getLocation(blockIndices[0], originX, originY, originZ, new Vector3i());
+        return new DefaultMultiBlockDefinition(multiBlockType, mainBlock,
+                new PackedLocations(blockIndices, 1, originX, originY, originZ));
+    }
+
+    /**
+     * Clears the bits of the accepted blocks and of all their neighbors, which covers every bit set by the search.
+     */
+    private void clearVisited(int acceptedCount) {
+        for (int i = 0; i < acceptedCount; i++) {
+            int index = queue[i];
+            visited.clear(index);
+            int x = index % boxSizeX;
+            int y = index / (boxSizeX * boxSizeZ);
+            int z = (index / boxSizeX) % boxSizeZ;
+            if (x > 0) {
+                visited.clear(index - 1);
+            }
+            if (x < boxSizeX - 1) {
+                visited.clear(index + 1);
+            }
+            if (z > 0) {
+                visited.clear(index - boxSizeX);
+            }
+            if (z < boxSizeZ - 1) {
+                visited.clear(index + boxSizeX);
+            }
+            if (y > 0) {
+                visited.clear(index - boxSizeX * boxSizeZ);
+            }
+            if (y < boxSizeY - 1) {
+                visited.clear(index + boxSizeX * boxSizeZ);
+            }
+        }
+    }
+
+    private int getIndex(int x, int y, int z) {
+        return (y * boxSizeZ + z) * boxSizeX + x;
+    }
+
+    private Vector3i getLocation(int index, int originX, int originY, int originZ, Vector3i result) {
+        return result.set(originX + index % boxSizeX, originY + index / (boxSizeX * boxSizeZ),
+                originZ + (index / boxSizeX) % boxSizeZ);
+    }
+
+    /**
+     * Member locations kept as box indices, creating the vectors only when iterated.
+     */
+    private final class PackedLocations extends AbstractCollection<Vector3i> {
+        private final int[] indices;
+        private final int from;
+        private final int originX;
+        private final int originY;
+        private final int originZ;
+
+        private PackedLocations(int[] indices, int from, int originX, int originY, int originZ) {
+            this.indices = indices;
+            this.from = from;
+            this.originX = originX;
+            this.originY = originY;
+            this.originZ = originZ;
+        }
+
+        @Override
+        public Iterator<Vector3i> iterator() {
+            return new Iterator<Vector3i>() {
+                private int next = from;
+
+                @Override
+                public boolean hasNext() {
+                    return next < indices.length;
+                }
+
+                @Override
+                public Vector3i next() {
+                    if (next >= indices.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return getLocation(indices[next++], originX, originY, originZ, new Vector3i());
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return indices.length - from;
+        }
+    }
+}
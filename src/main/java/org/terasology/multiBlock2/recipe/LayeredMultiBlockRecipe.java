@@ -21,25 +21,35 @@ import org.joml.Vector3i;
 import org.joml.Vector3ic;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.math.Direction;
-import org.terasology.engine.registry.CoreRegistry;
 import org.terasology.engine.world.BlockEntityRegistry;
+import org.terasology.engine.world.WorldProvider;
 import org.terasology.engine.world.block.BlockRegion;
 import org.terasology.engine.world.block.BlockRegionc;
 import org.terasology.multiBlock2.MultiBlockDefinition;
+import org.terasology.multiBlockCommon.BlockIdFilter;
+import org.terasology.multiBlockCommon.LayerColumnProfile;
 
 import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * Detects cuboid multi-blocks made of horizontal layers, each of the blocks matching the filter of the layer.
+ *
  * @author Marcin Sciesinski <marcins78@gmail.com>
  */
 public abstract class LayeredMultiBlockRecipe<T extends MultiBlockDefinition> implements MultiBlockRecipe<T> {
+    private WorldProvider worldProvider;
     private BlockEntityRegistry blockEntityRegistry;
     private Predicate<Vector2i> sizeFilter;
 
     private List<LayerDefinition> layerDefinitions = new ArrayList<>();
 
     public LayeredMultiBlockRecipe(BlockEntityRegistry blockEntityRegistry, Predicate<Vector2i> sizeFilter) {
+        this(null, blockEntityRegistry, sizeFilter);
+    }
+
+    public LayeredMultiBlockRecipe(WorldProvider worldProvider, BlockEntityRegistry blockEntityRegistry, Predicate<Vector2i> sizeFilter) {
+        this.worldProvider = worldProvider;
         this.blockEntityRegistry = blockEntityRegistry;
         this.sizeFilter = sizeFilter;
     }
@@ -48,17 +58,32 @@ public abstract class LayeredMultiBlockRecipe<T extends MultiBlockDefinition> im
         if (minHeight > maxHeight || minHeight < 0) {
             throw new IllegalArgumentException("Invalid values for minHeight and maxHeight");
         }
+        if (layerDefinitions.size() == LayerColumnProfile.MAX_LAYER_COUNT) {
+            throw new IllegalStateException("At most " + LayerColumnProfile.MAX_LAYER_COUNT + " layers are supported");
+        }
         layerDefinitions.add(new LayerDefinition(minHeight, maxHeight, entityFilter));
     }
 
     @Override
     public T detectFormingMultiBlock(Vector3ic location) {
-        EntityRef target = blockEntityRegistry.getBlockEntityAt(location);
+        return detectFormingMultiBlock(location, new DetectionStats());
+    }
 
+    @Override
+    public T detectFormingMultiBlock(Vector3ic location, DetectionStats stats) {
+        LayerColumnProfile profile = createColumnProfile();
+        Vector3i scanLocation = new Vector3i();
+        // The column is classified once, and shared by all the layers the placed block could belong to
+        long baseMask = profile.scan(location.x(), location.y(), location.z(),
+                (layer, x, y, z) -> {
+                    stats.blockVisited();
+                    return BlockIdFilter.matchesAt(layerDefinitions.get(layer).entityFilter, scanLocation.set(x, y, z),
+                            worldProvider, blockEntityRegistry);
+                });
+        int[] layerHeights = new int[layerDefinitions.size()];
         for (int i = 0; i < layerDefinitions.size(); i++) {
-            LayerDefinition layerDefinition = layerDefinitions.get(i);
-            if (layerDefinition.entityFilter.apply(target)) {
-                T definition = processDetectionForLayer(i, location);
+            if ((baseMask & (1L << i)) != 0 && profile.assignLayers(i, layerHeights)) {
+                T definition = processDetectionForLayer(i, location, profile, layerHeights, stats);
                 if (definition != null) {
                     return definition;
                 }
@@ -68,71 +93,28 @@ public abstract class LayeredMultiBlockRecipe<T extends MultiBlockDefinition> im
         return null;
     }
 
-    private T processDetectionForLayer(int layerIndex, Vector3ic basePosition) {
-        BlockEntityRegistry blockEntityRegistry = CoreRegistry.get(BlockEntityRegistry.class);
-        LayerDefinition layerDefinition = layerDefinitions.get(layerIndex);
-        Predicate<EntityRef> entityFilter = layerDefinition.entityFilter;
-        int minX = getLastMatchingInDirection(entityFilter, basePosition, Direction.RIGHT.asVector3i()).x;
-        int maxX = getLastMatchingInDirection(entityFilter, basePosition, Direction.LEFT.asVector3i()).x;
-        int minZ = getLastMatchingInDirection(entityFilter, basePosition, Direction.BACKWARD.asVector3i()).z;
-        int maxZ = getLastMatchingInDirection(entityFilter, basePosition, Direction.FORWARD.asVector3i()).z;
+    private T processDetectionForLayer(int layerIndex, Vector3ic basePosition, LayerColumnProfile profile, int[] layerHeights,
+                                       DetectionStats stats) {
+        Predicate<EntityRef> entityFilter = layerDefinitions.get(layerIndex).entityFilter;
+        int minX = getLastMatchingInDirection(entityFilter, basePosition, Direction.RIGHT.asVector3i(), stats).x;
+        int maxX = getLastMatchingInDirection(entityFilter, basePosition, Direction.LEFT.asVector3i(), stats).x;
+        int minZ = getLastMatchingInDirection(entityFilter, basePosition, Direction.BACKWARD.asVector3i(), stats).z;
+        int maxZ = getLastMatchingInDirection(entityFilter, basePosition, Direction.FORWARD.asVector3i(), stats).z;
 
-        // First check if the size is accepted at all
         Vector2i multiBlockHorizontalSize = new Vector2i(maxX - minX + 1, maxZ - minZ + 1);
         if (!sizeFilter.apply(multiBlockHorizontalSize)) {
             return null;
         }
 
-        int minY = getLastMatchingInDirection(entityFilter, basePosition, Direction.DOWN.asVector3i()).y;
-        int maxY = getLastMatchingInDirection(entityFilter, basePosition, Direction.UP.asVector3i()).y;
-
-        // Then check if this layer height is accepted
-        int layerHeight = maxY - minY + 1;
-        if (layerDefinition.minHeight > layerHeight || layerDefinition.maxHeight < layerHeight) {
-            return null;
-        }
-
-        int[] layerHeights = new int[layerDefinitions.size()];
-        layerHeights[layerIndex] = layerHeight;
-
-        // Go up the stack and match layers
-        int lastLayerYUp = maxY;
-        for (int i = layerIndex + 1; i < layerDefinitions.size(); i++) {
-            LayerDefinition upLayerDefinition = layerDefinitions.get(i);
-            int lastMatchingY = getLastMatchingInDirection(upLayerDefinition.entityFilter,
-                    new Vector3i(basePosition.x(), lastLayerYUp, basePosition.z()), Direction.UP.asVector3i()).y;
-            // Layer height
-            int upLayerHeight = lastMatchingY - lastLayerYUp;
-            if (upLayerDefinition.minHeight > upLayerHeight || upLayerDefinition.maxHeight < upLayerHeight) {
-                return null;
-            }
-            layerHeights[i] = upLayerHeight;
-            lastLayerYUp += upLayerHeight;
-        }
-
-        // Go down the stack and match layers
-        int lastLayerYDown = minY;
-        for (int i = layerIndex - 1; i >= 0; i--) {
-            LayerDefinition downLayerDefinition = layerDefinitions.get(i);
-            int lastMatchingY = getLastMatchingInDirection(downLayerDefinition.entityFilter,
-                    new Vector3i(basePosition.x(), lastLayerYUp, basePosition.z()), Direction.DOWN.asVector3i()).y;
-            // Layer height
-            int downLayerHeight = lastLayerYDown - lastMatchingY;
-            if (downLayerDefinition.minHeight > downLayerHeight || downLayerDefinition.maxHeight < downLayerHeight) {
-                return null;
-            }
-            layerHeights[i] = downLayerHeight;
-            lastLayerYDown -= downLayerHeight;
-        }
-
         // We detected the boundaries of the possible multi-block, now we need to validate that all blocks in the region (for each layer) match
-        int validationY = lastLayerYDown;
+        int validationY = profile.getAssignedMinY();
         for (int i = 0; i < layerHeights.length; i++) {
             if (layerHeights[i] > 0) {
                 BlockRegion layerRegion = new BlockRegion(minX, validationY, minZ).union(maxX, validationY + layerHeights[i] - 1, maxZ);
                 LayerDefinition validateLayerDefinition = layerDefinitions.get(i);
                 for (Vector3ic position : layerRegion) {
-                    if (!validateLayerDefinition.entityFilter.apply(blockEntityRegistry.getBlockEntityAt(position))) {
+                    stats.blockVisited();
+                    if (!BlockIdFilter.matchesAt(validateLayerDefinition.entityFilter, position, worldProvider, blockEntityRegistry)) {
                         return null;
                     }
                 }
@@ -140,20 +122,32 @@ public abstract class LayeredMultiBlockRecipe<T extends MultiBlockDefinition> im
             }
         }
 
-        BlockRegion multiBlockRegion = new BlockRegion(minX, lastLayerYDown, minZ).union(maxX, lastLayerYUp, maxZ);
+        BlockRegion multiBlockRegion = new BlockRegion(minX, profile.getAssignedMinY(), minZ)
+                .union(maxX, profile.getAssignedMaxY(), maxZ);
 
         return createMultiBlockDefinition(multiBlockRegion, layerHeights);
     }
 
     protected abstract T createMultiBlockDefinition(BlockRegionc multiBlockRegion, int[] layerHeights);
 
-    private Vector3i getLastMatchingInDirection(Predicate<EntityRef> entityFilter, Vector3ic location, Vector3ic direction) {
+    private LayerColumnProfile createColumnProfile() {
+        int[] minHeights = new int[layerDefinitions.size()];
+        int[] maxHeights = new int[layerDefinitions.size()];
+        for (int i = 0; i < layerDefinitions.size(); i++) {
+            minHeights[i] = layerDefinitions.get(i).minHeight;
+            maxHeights[i] = layerDefinitions.get(i).maxHeight;
+        }
+        return new LayerColumnProfile(minHeights, maxHeights);
+    }
+
+    private Vector3i getLastMatchingInDirection(Predicate<EntityRef> entityFilter, Vector3ic location, Vector3ic direction,
+                                                DetectionStats stats) {
         Vector3i result = new Vector3i(location);
         Vector3i testedLocation = new Vector3i();
         while (true) {
             result.add(direction, testedLocation);
-            EntityRef blockEntityAt = blockEntityRegistry.getBlockEntityAt(testedLocation);
-            if (!entityFilter.apply(blockEntityAt)) {
+            stats.blockVisited();
+            if (!BlockIdFilter.matchesAt(entityFilter, testedLocation, worldProvider, blockEntityRegistry)) {
                 return result;
             }
             result.set(testedLocation);
@@ -34,4 +34,12 @@ import org.terasology.multiBlock2.MultiBlockDefinition;
  */
 public interface MultiBlockRecipe<T extends MultiBlockDefinition> {
     public T detectFormingMultiBlock(Vector3ic location);
+
+    /**
+     * Same as {@link #detectFormingMultiBlock(Vector3ic)}, counting the blocks looked at into the passed stats. Recipes
+     * that do not keep track of it leave the stats untouched.
+     */
+    default T detectFormingMultiBlock(Vector3ic location, DetectionStats stats) {
+        return detectFormingMultiBlock(location);
+    }
 }
@@ -0,0 +1,246 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.recipe;
+
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.terasology.engine.world.WorldProvider;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.multiBlock2.MultiBlockDefinition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Detects multi-blocks matching a fixed 3D pattern, in any of the four rotations around the vertical axis.
+ *
+ * The pattern is given as layers from the bottom up, each layer as rows along the Z axis, each row as a string with
+ * one character per block along the X axis. Characters are mapped to blocks with the key, a space means any block,
+ * which is not part of the multi-block. For example a 3x2x3 furnace with a port in the front and a vent on top:
+ * <pre>
+ *     new String[][]{
+ *         {"BBB", "BBB", "BPB"},
+ *         {"BBB", "BVB", "BBB"}}
+ * </pre>
+ *
+ * At construction the pattern is compiled to arrays of block ids for each distinct rotation, and an index from each
+ * block id to the cells of the rotations it appears in. Detection looks up the cells matching the placed block, and
+ * compares the world blocks against the array of the rotation, rejecting on the first mismatch.
+ *
+ * The main block of a detected multi-block is the first non-space cell of the pattern in its rotation, the others are
+ * the member blocks.
+ */
+public abstract class ShapedMultiBlockRecipe<T extends MultiBlockDefinition> implements MultiBlockRecipe<T> {
+    private static final short ANY_BLOCK = -1;
+
+    private WorldProvider worldProvider;
+    private List<CompiledPattern> rotations = new ArrayList<>();
+    // Sorted block ids, and for each of them pairs of rotation index and cell index, where the block appears
+    private short[] anchorBlockIds;
+    private int[][] anchorCells;
+
+    protected ShapedMultiBlockRecipe(WorldProvider worldProvider, String[][] pattern, Map<Character, Block> key) {
+        this.worldProvider = worldProvider;
+
+        CompiledPattern compiled = compile(pattern, key);
+        for (int rotation = 0; rotation < 4; rotation++) {
+            boolean duplicate = false;
+            for (CompiledPattern existing : rotations) {
+                duplicate |= existing.isSameShape(compiled);
+            }
+            if (!duplicate) {
+                rotations.add(compiled);
+            }
+            compiled = compiled.rotate();
+        }
+
+        Map<Short, List<Integer>> cellsByBlockId = new TreeMap<>();
+        for (int rotationIndex = 0; rotationIndex < rotations.size(); rotationIndex++) {
+            short[] blockIds = rotations.get(rotationIndex).blockIds;
+            for (int cell = 0; cell < blockIds.length; cell++) {
+                if (blockIds[cell] != ANY_BLOCK) {
+                    List<Integer> cells = cellsByBlockId.computeIfAbsent(blockIds[cell], id -> new ArrayList<>());
+                    cells.add(rotationIndex);
+                    cells.add(cell);
+                }
+            }
+        }
+        anchorBlockIds = new short[cellsByBlockId.size()];
+        anchorCells = new int[cellsByBlockId.size()][];
+        int index = 0;
+        for (Map.Entry<Short, List<Integer>> entry : cellsByBlockId.entrySet()) {
+            anchorBlockIds[index] = entry.getKey();
+            anchorCells[index] = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+            index++;
+        }
+    }
+
+    @Override
+    public T detectFormingMultiBlock(Vector3ic location) {
+        return detectFormingMultiBlock(location, new DetectionStats());
+    }
+
+    @Override
+    public T detectFormingMultiBlock(Vector3ic location, DetectionStats stats) {
+        stats.blockVisited();
+        short placedBlockId = worldProvider.getBlock(location).getId();
+        int anchorIndex = Arrays.binarySearch(anchorBlockIds, placedBlockId);
+        if (anchorIndex < 0) {
+            return null;
+        }
+
+        int[] cells = anchorCells[anchorIndex];
+        for (int i = 0; i < cells.length; i += 2) {
+            CompiledPattern pattern = rotations.get(cells[i]);
+            int cell = cells[i + 1];
+            int originX = location.x() - pattern.getX(cell);
+            int originY = location.y() - pattern.getY(cell);
+            int originZ = location.z() - pattern.getZ(cell);
+            if (matches(pattern, originX, originY, originZ, cell, stats)) {
+                return createMultiBlockDefinition(pattern, originX, originY, originZ);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param region       region of the whole pattern in the world, including the space cells
+     * @param rotation     number of 90 degree rotations of the pattern around the vertical axis, each rotation mapping
+     *                     the pattern cell (x, z) to (sizeZ - 1 - z, x)
+     * @param mainBlock    location of the main block
+     * @param memberBlocks locations of all the other non-space cells of the pattern
+     */
+    protected abstract T createMultiBlockDefinition(BlockRegionc region, int rotation, Vector3i mainBlock,
+                                                    List<Vector3i> memberBlocks);
+
+    private boolean matches(CompiledPattern pattern, int originX, int originY, int originZ, int anchorCell, DetectionStats stats) {
+        short[] blockIds = pattern.blockIds;
+        int cell = 0;
+        for (int y = 0; y < pattern.sizeY; y++) {
+            for (int z = 0; z < pattern.sizeZ; z++) {
+                for (int x = 0; x < pattern.sizeX; x++, cell++) {
+                    short expected = blockIds[cell];
+                    if (expected != ANY_BLOCK && cell != anchorCell) {
+                        stats.blockVisited();
+                        if (worldProvider.getBlock(originX + x, originY + y, originZ + z).getId() != expected) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private T createMultiBlockDefinition(CompiledPattern pattern, int originX, int originY, int originZ) {
+        Vector3i mainBlock = null;
+        List<Vector3i> memberBlocks = new ArrayList<>(pattern.blockCount - 1);
+        for (int cell = 0; cell < pattern.blockIds.length; cell++) {
+            if (pattern.blockIds[cell] != ANY_BLOCK) {
+                Vector3i blockLocation = new Vector3i(originX + pattern.getX(cell), originY + pattern.getY(cell),
+                        originZ + pattern.getZ(cell));
+                if (mainBlock == null) {
+                    mainBlock = blockLocation;
+                } else {
+                    memberBlocks.add(blockLocation);
+                }
+            }
+        }
+        BlockRegion region = new BlockRegion(originX, originY, originZ).setSize(pattern.sizeX, pattern.sizeY, pattern.sizeZ);
+        return createMultiBlockDefinition(region, pattern.rotation, mainBlock, memberBlocks);
+    }
+
+    private static CompiledPattern compile(String[][] pattern, Map<Character, Block> key) {
+        if (pattern.length == 0 || pattern[0].length == 0 || pattern[0][0].isEmpty()) {
+            throw new IllegalArgumentException("Pattern can't be empty");
+        }
+        int sizeY = pattern.length;
+        int sizeZ = pattern[0].length;
+        int sizeX = pattern[0][0].length();
+        short[] blockIds = new short[sizeX * sizeY * sizeZ];
+        int blockCount = 0;
+        int cell = 0;
+        for (String[] layer : pattern) {
+            if (layer.length != sizeZ) {
+                throw new IllegalArgumentException("All layers of the pattern have to have the same number of rows");
+            }
+            for (String row : layer) {
+                if (row.length() != sizeX) {
+                    throw new IllegalArgumentException("All rows of the pattern have to have the same length");
+                }
+                for (int x = 0; x < sizeX; x++, cell++) {
+                    char symbol = row.charAt(x);
+                    if (symbol == ' ') {
+                        blockIds[cell] = ANY_BLOCK;
+                    } else {
+                        Block block = key.get(symbol);
+                        if (block == null) {
+                            throw new IllegalArgumentException("No block defined for pattern symbol: " + symbol);
+                        }
+                        blockIds[cell] = block.getId();
+                        blockCount++;
+                    }
+                }
+            }
+        }
+        if (blockCount == 0) {
+            throw new IllegalArgumentException("Pattern has to contain at least one block");
+        }
+        return new CompiledPattern(0, sizeX, sizeY, sizeZ, blockIds, blockCount);
+    }
+
+    private static final class CompiledPattern {
+        private final int rotation;
+        private final int sizeX;
+        private final int sizeY;
+        private final int sizeZ;
+        // Indexed by (y * sizeZ + z) * sizeX + x
+        private final short[] blockIds;
+        private final int blockCount;
+
+        private CompiledPattern(int rotation, int sizeX, int sizeY, int sizeZ, short[] blockIds, int blockCount) {
+            this.rotation = rotation;
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.sizeZ = sizeZ;
+            this.blockIds = blockIds;
+            this.blockCount = blockCount;
+        }
+
+        private int getX(int cell) {
+            return cell % sizeX;
+        }
+
+        private int getY(int cell) {
+            return cell / (sizeX * sizeZ);
+        }
+
+        private int getZ(int cell) {
+            return (cell / sizeX) % sizeZ;
+        }
+
+        /**
+         * @return the pattern rotated by 90 degrees around the vertical axis, x' = sizeZ - 1 - z, z' = x
+         */
+        private CompiledPattern rotate() {
+            int rotatedSizeX = sizeZ;
+            int rotatedSizeZ = sizeX;
+            short[] rotatedBlockIds = new short[blockIds.length];
+            for (int cell = 0; cell < blockIds.length; cell++) {
+                int rotatedX = sizeZ - 1 - getZ(cell);
+                int rotatedZ = getX(cell);
+                rotatedBlockIds[(getY(cell) * rotatedSizeZ + rotatedZ) * rotatedSizeX + rotatedX] = blockIds[cell];
+            }
+            return new CompiledPattern(rotation + 1, rotatedSizeX, sizeY, rotatedSizeZ, rotatedBlockIds, blockCount);
+        }
+
+        private boolean isSameShape(CompiledPattern other) {
+            return sizeX == other.sizeX && sizeZ == other.sizeZ && Arrays.equals(blockIds, other.blockIds);
+        }
+    }
+}
@@ -16,52 +16,79 @@
 package org.terasology.multiBlock2.recipe;
 
 import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import org.joml.Vector3i;
 import org.joml.Vector3ic;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.math.Direction;
 import org.terasology.engine.world.BlockEntityRegistry;
+import org.terasology.engine.world.WorldProvider;
 import org.terasology.engine.world.block.BlockRegion;
 import org.terasology.engine.world.block.BlockRegionc;
 import org.terasology.multiBlock2.MultiBlockDefinition;
+import org.terasology.multiBlockCommon.BlockIdFilter;
+import org.terasology.multiBlockCommon.CuboidMatcher;
 
 /**
+ * Detects cuboid multi-blocks with a shell of the outside blocks, filled with the inside blocks. Recipes created
+ * without the inside block filter, or with <code>Predicates.alwaysTrue()</code>, do not check the interior at all, and
+ * the detection visits only the shell.
+ *
  * @author Marcin Sciesinski <marcins78@gmail.com>
  */
 public abstract class SurroundMultiBlockRecipe<T extends MultiBlockDefinition> implements MultiBlockRecipe<T> {
+    private WorldProvider worldProvider;
     private BlockEntityRegistry blockEntityRegistry;
     private Predicate<EntityRef> outsideBlock;
     private Predicate<EntityRef> insideBlock;
+    private boolean checkInterior;
     private Predicate<Vector3i> sizeFilter;
 
+    public SurroundMultiBlockRecipe(WorldProvider worldProvider, BlockEntityRegistry blockEntityRegistry, Predicate<EntityRef> outsideBlock,
+                                    Predicate<Vector3i> sizeFilter) {
+        this(worldProvider, blockEntityRegistry, outsideBlock, null, sizeFilter);
+    }
+
     public SurroundMultiBlockRecipe(BlockEntityRegistry blockEntityRegistry, Predicate<EntityRef> outsideBlock,
                                     Predicate<EntityRef> insideBlock, Predicate<Vector3i> sizeFilter) {
+        this(null, blockEntityRegistry, outsideBlock, insideBlock, sizeFilter);
+    }
+
+    public SurroundMultiBlockRecipe(WorldProvider worldProvider, BlockEntityRegistry blockEntityRegistry, Predicate<EntityRef> outsideBlock,
+                                    Predicate<EntityRef> insideBlock, Predicate<Vector3i> sizeFilter) {
+        this.worldProvider = worldProvider;
         this.blockEntityRegistry = blockEntityRegistry;
         this.outsideBlock = outsideBlock;
         this.insideBlock = insideBlock;
+        // An interior accepting any block does not need to be scanned
+        this.checkInterior = insideBlock != null && !Predicates.alwaysTrue().equals(insideBlock);
         this.sizeFilter = sizeFilter;
     }
 
     @Override
     public T detectFormingMultiBlock(Vector3ic location) {
-        EntityRef target = blockEntityRegistry.getBlockEntityAt(location);
+        return detectFormingMultiBlock(location, new DetectionStats());
+    }
 
-        if (!outsideBlock.apply(target)) {
+    @Override
+    public T detectFormingMultiBlock(Vector3ic location, DetectionStats stats) {
+        stats.blockVisited();
+        if (!BlockIdFilter.matchesAt(outsideBlock, location, worldProvider, blockEntityRegistry)) {
             return null;
         }
 
         // Go to minX, minY, minZ
-        int minX = getLastMatchingInDirection( location, Direction.RIGHT.asVector3i()).x;
-        int minY = getLastMatchingInDirection( new Vector3i(minX, location.y(), location.z()), Direction.DOWN.asVector3i()).y;
-        int minZ = getLastMatchingInDirection( new Vector3i(minX, minY, location.z()), Direction.BACKWARD.asVector3i()).z;
+        int minX = getLastMatchingInDirection(location, Direction.RIGHT.asVector3i(), stats).x;
+        int minY = getLastMatchingInDirection(new Vector3i(minX, location.y(), location.z()), Direction.DOWN.asVector3i(), stats).y;
+        int minZ = getLastMatchingInDirection(new Vector3i(minX, minY, location.z()), Direction.BACKWARD.asVector3i(), stats).z;
 
         // Since we might have been in the mid of X wall, we need to find another minX:
-        minX = getLastMatchingInDirection(new Vector3i(minX, minY, minZ), Direction.RIGHT.asVector3i()).x;
+        minX = getLastMatchingInDirection(new Vector3i(minX, minY, minZ), Direction.RIGHT.asVector3i(), stats).x;
 
         // Now lets find maxX, maxY and maxZ
-        int maxX = getLastMatchingInDirection(new Vector3i(minX, minY, minZ), Direction.LEFT.asVector3i()).x;
-        int maxY = getLastMatchingInDirection(new Vector3i(maxX, minY, minZ), Direction.UP.asVector3i()).y;
-        int maxZ = getLastMatchingInDirection(new Vector3i(maxX, maxY, minZ), Direction.FORWARD.asVector3i()).z;
+        int maxX = getLastMatchingInDirection(new Vector3i(minX, minY, minZ), Direction.LEFT.asVector3i(), stats).x;
+        int maxY = getLastMatchingInDirection(new Vector3i(maxX, minY, minZ), Direction.UP.asVector3i(), stats).y;
+        int maxZ = getLastMatchingInDirection(new Vector3i(maxX, maxY, minZ), Direction.FORWARD.asVector3i(), stats).z;
 
         // Now check that all the blocks in the region defined by these boundaries match the criteria
         BlockRegion outsideBlockRegion = new BlockRegion(minX, minY, minZ).union(maxX, maxY, maxZ);
@@ -70,16 +97,20 @@ public abstract class SurroundMultiBlockRecipe<T extends MultiBlockDefinition> i
             return null;
         }
 
-        BlockRegion insideBlockRegion = new BlockRegion(minX + 1, minY + 1, minZ + 1).union(maxX - 1, maxY - 1, maxZ - 1);
-        for (Vector3ic blockLocation : outsideBlockRegion) {
-            EntityRef blockEntity = blockEntityRegistry.getBlockEntityAt(blockLocation);
-            if (insideBlockRegion.contains(blockLocation)) {
-                if (!insideBlock.apply(blockEntity)) {
-                    return null;
-                }
-            } else if (!outsideBlock.apply(blockEntity)) {
-                return null;
-            }
+        Vector3i testedLocation = new Vector3i();
+        if (!CuboidMatcher.matchesShell(minX, minY, minZ, maxX, maxY, maxZ,
+                (x, y, z) -> {
+                    stats.blockVisited();
+                    return BlockIdFilter.matchesAt(outsideBlock, testedLocation.set(x, y, z), worldProvider, blockEntityRegistry);
+                })) {
+            return null;
+        }
+        if (checkInterior && !CuboidMatcher.matchesInterior(minX, minY, minZ, maxX, maxY, maxZ,
+                (x, y, z) -> {
+                    stats.blockVisited();
+                    return BlockIdFilter.matchesAt(insideBlock, testedLocation.set(x, y, z), worldProvider, blockEntityRegistry);
+                })) {
+            return null;
         }
 
         return createMultiBlockDefinition(outsideBlockRegion);
@@ -87,12 +118,12 @@ public abstract class SurroundMultiBlockRecipe<T extends MultiBlockDefinition> i
 
     protected abstract T createMultiBlockDefinition(BlockRegionc region);
 
-    private Vector3i getLastMatchingInDirection(Vector3ic location, Vector3ic direction) {
+    private Vector3i getLastMatchingInDirection(Vector3ic location, Vector3ic direction, DetectionStats stats) {
         Vector3i result = new Vector3i(location);
         while (true) {
             Vector3i testedLocation = result.add(direction, new Vector3i());
-            EntityRef blockEntityAt = blockEntityRegistry.getBlockEntityAt(testedLocation);
-            if (!outsideBlock.apply(blockEntityAt)) {
+            stats.blockVisited();
+            if (!BlockIdFilter.matchesAt(outsideBlock, testedLocation, worldProvider, blockEntityRegistry)) {
                 return result;
             }
             result = testedLocation;
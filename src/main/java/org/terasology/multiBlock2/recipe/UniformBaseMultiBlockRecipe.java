@@ -21,13 +21,20 @@ import org.joml.Vector3ic;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.math.Direction;
 import org.terasology.engine.world.BlockEntityRegistry;
+import org.terasology.engine.world.WorldProvider;
 import org.terasology.engine.world.block.BlockRegion;
 import org.terasology.engine.world.block.BlockRegionc;
 import org.terasology.multiBlock2.MultiBlockDefinition;
+import org.terasology.multiBlockCommon.BlockIdFilter;
 
 import java.util.function.BiPredicate;
 
+/**
+ * Detects cuboid multi-blocks of blocks matching the base predicate, extended from the placed block while the other
+ * predicate accepts the neighbors.
+ */
 public abstract class UniformBaseMultiBlockRecipe<T extends MultiBlockDefinition> implements MultiBlockRecipe<T> {
+    private WorldProvider worldProvider;
     private BlockEntityRegistry blockEntityRegistry;
     private Predicate<EntityRef> baseEntityPredicate;
     private BiPredicate<EntityRef, EntityRef> otherEntitiesPredicate;
@@ -35,6 +42,13 @@ public abstract class UniformBaseMultiBlockRecipe<T extends MultiBlockDefinition
 
     protected UniformBaseMultiBlockRecipe(BlockEntityRegistry blockEntityRegistry, Predicate<EntityRef> baseEntityPredicate,
                                           BiPredicate<EntityRef, EntityRef> otherEntitiesPredicate, Predicate<Vector3i> sizeFilter) {
+        this(null, blockEntityRegistry, baseEntityPredicate, otherEntitiesPredicate, sizeFilter);
+    }
+
+    protected UniformBaseMultiBlockRecipe(WorldProvider worldProvider, BlockEntityRegistry blockEntityRegistry,
+                                          Predicate<EntityRef> baseEntityPredicate,
+                                          BiPredicate<EntityRef, EntityRef> otherEntitiesPredicate, Predicate<Vector3i> sizeFilter) {
+        this.worldProvider = worldProvider;
         this.blockEntityRegistry = blockEntityRegistry;
         this.baseEntityPredicate = baseEntityPredicate;
         this.otherEntitiesPredicate = otherEntitiesPredicate;
@@ -43,18 +57,23 @@ public abstract class UniformBaseMultiBlockRecipe<T extends MultiBlockDefinition
 
     @Override
     public T detectFormingMultiBlock(Vector3ic location) {
-        EntityRef target = blockEntityRegistry.getBlockEntityAt(location);
+        return detectFormingMultiBlock(location, new DetectionStats());
+    }
+
+    @Override
+    public T detectFormingMultiBlock(Vector3ic location, DetectionStats stats) {
+        EntityRef target = getBlockEntityAt(location, stats);
 
         if (!baseEntityPredicate.apply(target)) {
             return null;
         }
 
-        int minX = getLastMatchingInDirection(target, location, Direction.RIGHT.asVector3i()).x;
-        int maxX = getLastMatchingInDirection(target, location, Direction.LEFT.asVector3i()).x;
-        int minY = getLastMatchingInDirection(target, location, Direction.DOWN.asVector3i()).y;
-        int maxY = getLastMatchingInDirection(target, location, Direction.UP.asVector3i()).y;
-        int minZ = getLastMatchingInDirection(target, location, Direction.BACKWARD.asVector3i()).z;
-        int maxZ = getLastMatchingInDirection(target, location, Direction.FORWARD.asVector3i()).z;
+        int minX = getLastMatchingInDirection(target, location, Direction.RIGHT.asVector3i(), stats).x;
+        int maxX = getLastMatchingInDirection(target, location, Direction.LEFT.asVector3i(), stats).x;
+        int minY = getLastMatchingInDirection(target, location, Direction.DOWN.asVector3i(), stats).y;
+        int maxY = getLastMatchingInDirection(target, location, Direction.UP.asVector3i(), stats).y;
+        int minZ = getLastMatchingInDirection(target, location, Direction.BACKWARD.asVector3i(), stats).z;
+        int maxZ = getLastMatchingInDirection(target, location, Direction.FORWARD.asVector3i(), stats).z;
 
         BlockRegion multiBlockRegion = new BlockRegion(minX, minY, minZ).union(maxX, maxY, maxZ);
 
@@ -65,7 +84,8 @@ public abstract class UniformBaseMultiBlockRecipe<T extends MultiBlockDefinition
 
         // Now check that all the blocks in the region defined by these boundaries match the criteria
         for (Vector3ic blockLocation : multiBlockRegion) {
-            if (!baseEntityPredicate.apply(blockEntityRegistry.getBlockEntityAt(blockLocation))) {
+            stats.blockVisited();
+            if (!BlockIdFilter.matchesAt(baseEntityPredicate, blockLocation, worldProvider, blockEntityRegistry)) {
                 return null;
             }
         }
@@ -75,12 +95,18 @@ public abstract class UniformBaseMultiBlockRecipe<T extends MultiBlockDefinition
 
     protected abstract T createMultiBlockDefinition(BlockRegionc multiBlockRegion);
 
-    private Vector3i getLastMatchingInDirection(EntityRef targetEntity, Vector3ic location, Vector3ic direction) {
+    private EntityRef getBlockEntityAt(Vector3ic location, DetectionStats stats) {
+        stats.blockVisited();
+        return blockEntityRegistry.getBlockEntityAt(location);
+    }
+
+    private Vector3i getLastMatchingInDirection(EntityRef targetEntity, Vector3ic location, Vector3ic direction,
+                                                DetectionStats stats) {
         Vector3i result = new Vector3i(location);
         Vector3i testedLocation = new Vector3i();
         while (true) {
             result.add(direction, testedLocation);
-            EntityRef blockEntityAt = blockEntityRegistry.getBlockEntityAt(testedLocation);
+            EntityRef blockEntityAt = getBlockEntityAt(testedLocation, stats);
             if (!otherEntitiesPredicate.test(targetEntity, blockEntityAt)) {
                 return result;
             }
@@ -21,15 +21,27 @@ import org.joml.Vector3ic;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.math.Direction;
 import org.terasology.engine.world.BlockEntityRegistry;
+import org.terasology.engine.world.WorldProvider;
 import org.terasology.engine.world.block.BlockRegion;
 import org.terasology.multiBlock2.MultiBlockDefinition;
+import org.terasology.multiBlockCommon.BlockIdFilter;
 
+/**
+ * Detects cuboid multi-blocks made entirely of blocks matching the filter.
+ */
 public abstract class UniformMultiBlockRecipe<T extends MultiBlockDefinition> implements MultiBlockRecipe<T> {
+    private WorldProvider worldProvider;
     private BlockEntityRegistry blockEntityRegistry;
     private Predicate<EntityRef> blockFilter;
     private Predicate<Vector3i> sizeFilter;
 
     protected UniformMultiBlockRecipe(BlockEntityRegistry blockEntityRegistry, Predicate<EntityRef> blockFilter, Predicate<Vector3i> sizeFilter) {
+        this(null, blockEntityRegistry, blockFilter, sizeFilter);
+    }
+
+    protected UniformMultiBlockRecipe(WorldProvider worldProvider, BlockEntityRegistry blockEntityRegistry, Predicate<EntityRef> blockFilter,
+                                      Predicate<Vector3i> sizeFilter) {
+        this.worldProvider = worldProvider;
         this.blockEntityRegistry = blockEntityRegistry;
         this.blockFilter = blockFilter;
         this.sizeFilter = sizeFilter;
@@ -37,19 +49,23 @@ public abstract class UniformMultiBlockRecipe<T extends MultiBlockDefinition> im
 
     @Override
     public T detectFormingMultiBlock(Vector3ic location) {
-        EntityRef target = blockEntityRegistry.getBlockEntityAt(location);
+        return detectFormingMultiBlock(location, new DetectionStats());
+    }
 
-        if (!blockFilter.apply(target)) {
+    @Override
+    public T detectFormingMultiBlock(Vector3ic location, DetectionStats stats) {
+        stats.blockVisited();
+        if (!BlockIdFilter.matchesAt(blockFilter, location, worldProvider, blockEntityRegistry)) {
             return null;
         }
 
 
-        int minX = getLastMatchingInDirection(location, Direction.RIGHT.asVector3i()).x;
-        int maxX = getLastMatchingInDirection(location, Direction.LEFT.asVector3i()).x;
-        int minY = getLastMatchingInDirection(location, Direction.DOWN.asVector3i()).y;
-        int maxY = getLastMatchingInDirection(location, Direction.UP.asVector3i()).y;
-        int minZ = getLastMatchingInDirection(location, Direction.BACKWARD.asVector3i()).z;
-        int maxZ = getLastMatchingInDirection(location, Direction.FORWARD.asVector3i()).z;
+        int minX = getLastMatchingInDirection(location, Direction.RIGHT.asVector3i(), stats).x;
+        int maxX = getLastMatchingInDirection(location, Direction.LEFT.asVector3i(), stats).x;
+        int minY = getLastMatchingInDirection(location, Direction.DOWN.asVector3i(), stats).y;
+        int maxY = getLastMatchingInDirection(location, Direction.UP.asVector3i(), stats).y;
+        int minZ = getLastMatchingInDirection(location, Direction.BACKWARD.asVector3i(), stats).z;
+        int maxZ = getLastMatchingInDirection(location, Direction.FORWARD.asVector3i(), stats).z;
 
         BlockRegion multiBlockRegion = new BlockRegion(minX, minY, minZ).union(maxX, maxY, maxZ);
 
@@ -60,7 +76,8 @@ public abstract class UniformMultiBlockRecipe<T extends MultiBlockDefinition> im
 
         // Now check that all the blocks in the region defined by these boundaries match the criteria
         for (Vector3ic blockLocation : multiBlockRegion) {
-            if (!blockFilter.apply(blockEntityRegistry.getBlockEntityAt(blockLocation))) {
+            stats.blockVisited();
+            if (!BlockIdFilter.matchesAt(blockFilter, blockLocation, worldProvider, blockEntityRegistry)) {
                 return null;
             }
         }
@@ -70,13 +87,13 @@ public abstract class UniformMultiBlockRecipe<T extends MultiBlockDefinition> im
 
     protected abstract T createMultiBlockDefinition(BlockRegion multiBlockRegion);
 
-    private Vector3i getLastMatchingInDirection(Vector3ic location, Vector3ic direction) {
+    private Vector3i getLastMatchingInDirection(Vector3ic location, Vector3ic direction, DetectionStats stats) {
         Vector3i result = new Vector3i(location);
         Vector3i testedLocation = new Vector3i();
         while (true) {
             result.add(direction, testedLocation);
-            EntityRef blockEntityAt = blockEntityRegistry.getBlockEntityAt(testedLocation);
-            if (!blockFilter.apply(blockEntityAt)) {
+            stats.blockVisited();
+            if (!BlockIdFilter.matchesAt(blockFilter, testedLocation, worldProvider, blockEntityRegistry)) {
                 return result;
             }
             result.set(testedLocation);
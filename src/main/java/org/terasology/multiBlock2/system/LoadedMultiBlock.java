@@ -0,0 +1,181 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.system;
+
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.multiBlock2.InteriorContentSummary;
+import org.terasology.multiBlock2.MultiBlockHandle;
+import org.terasology.multiBlock2.MultiBlockSnapshot;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Record of a loaded multi-block kept by {@link MultiBlockServerSystem}, exposed to the callers as a handle.
+ * For types with lazy entity creation the multi-block entity is only created on the first request.
+ */
+class LoadedMultiBlock implements MultiBlockHandle {
+    private final MultiBlockServerSystem system;
+    private final String type;
+    private EntityRef multiBlockEntity;
+    private final EntityRef mainBlockEntity;
+    private final Vector3i mainBlockLocation;
+    private final BlockRegion region;
+    private final Collection<Vector3i> members;
+    private final boolean fillsRegion;
+    // Sorted indices of the member blocks within the region, null if they fill it. Built once, so that the snapshots
+    // can test the blocks from any thread
+    private final long[] memberIndices;
+    private final MultiBlockSnapshot.Structure structure = new Structure();
+
+    private InteriorContentSummary interiorContentSummary;
+
+    private boolean loaded = true;
+    private boolean formed = true;
+
+    LoadedMultiBlock(MultiBlockServerSystem system, String type, EntityRef multiBlockEntity, EntityRef mainBlockEntity,
+                     Vector3ic mainBlockLocation, BlockRegionc region, Collection<Vector3i> members) {
+        this.system = system;
+        this.type = type;
+        this.multiBlockEntity = multiBlockEntity;
+        this.mainBlockEntity = mainBlockEntity;
+        this.mainBlockLocation = new Vector3i(mainBlockLocation);
+        this.region = new BlockRegion(region);
+        this.members = members;
+        long volume = (long) (region.maxX() - region.minX() + 1) * (region.maxY() - region.minY() + 1) * (region.maxZ() - region.minZ() + 1);
+        this.fillsRegion = members.size() + 1 == volume;
+        this.memberIndices = fillsRegion ? null : getSortedIndices(members);
+    }
+
+    @Override
+    public boolean isValid() {
+        return loaded && formed;
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public boolean isFormed() {
+        return formed;
+    }
+
+    @Override
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public EntityRef getMultiBlockEntity() {
+        if (multiBlockEntity == null) {
+            if (!isValid()) {
+                return EntityRef.NULL;
+            }
+            multiBlockEntity = system.materializeMultiBlockEntity(this);
+        }
+        return multiBlockEntity;
+    }
+
+    boolean hasMultiBlockEntity() {
+        return multiBlockEntity != null;
+    }
+
+    @Override
+    public EntityRef getMainBlockEntity() {
+        return mainBlockEntity;
+    }
+
+    @Override
+    public Vector3ic getMainBlockLocation() {
+        return mainBlockLocation;
+    }
+
+    @Override
+    public BlockRegionc getRegion() {
+        return region;
+    }
+
+    @Override
+    public boolean containsBlock(Vector3ic location) {
+        return containsBlock(location.x(), location.y(), location.z());
+    }
+
+    boolean containsBlock(int x, int y, int z) {
+        if (!region.contains(x, y, z)) {
+            return false;
+        }
+        if (fillsRegion) {
+            return true;
+        }
+        if (mainBlockLocation.x == x && mainBlockLocation.y == y && mainBlockLocation.z == z) {
+            return true;
+        }
+        return Arrays.binarySearch(memberIndices, getIndexInRegion(x, y, z)) >= 0;
+    }
+
+    InteriorContentSummary getInteriorContentSummary() {
+        return interiorContentSummary;
+    }
+
+    void setInteriorContentSummary(InteriorContentSummary interiorContentSummary) {
+        this.interiorContentSummary = interiorContentSummary;
+    }
+
+    MultiBlockSnapshot.Structure getStructure() {
+        return structure;
+    }
+
+    Collection<Vector3i> getMembers() {
+        return members;
+    }
+
+    void markUnloaded() {
+        loaded = false;
+    }
+
+    void markUnformed() {
+        formed = false;
+    }
+
+    private long[] getSortedIndices(Collection<Vector3i> blocks) {
+        long[] result = new long[blocks.size()];
+        int count = 0;
+        for (Vector3i block : blocks) {
+            result[count++] = getIndexInRegion(block.x, block.y, block.z);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private long getIndexInRegion(int x, int y, int z) {
+        return ((long) (y - region.minY()) * region.getSizeZ() + (z - region.minZ())) * region.getSizeX() + (x - region.minX());
+    }
+
+    private final class Structure implements MultiBlockSnapshot.Structure {
+        @Override
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public Vector3ic getMainBlockLocation() {
+            return mainBlockLocation;
+        }
+
+        @Override
+        public BlockRegionc getRegion() {
+            return region;
+        }
+
+        @Override
+        public boolean containsBlock(int x, int y, int z) {
+            return LoadedMultiBlock.this.containsBlock(x, y, z);
+        }
+    }
+}
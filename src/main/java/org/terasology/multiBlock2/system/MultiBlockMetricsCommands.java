@@ -0,0 +1,42 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.system;
+
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterMode;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.logic.console.commandSystem.annotations.Command;
+import org.terasology.engine.logic.console.commandSystem.annotations.CommandParam;
+import org.terasology.engine.logic.permission.PermissionManager;
+import org.terasology.engine.registry.In;
+import org.terasology.multiBlock2.MultiBlockRegistry;
+import org.terasology.multiBlock2.metrics.MultiBlockMetrics;
+
+@RegisterSystem(RegisterMode.AUTHORITY)
+public class MultiBlockMetricsCommands extends BaseComponentSystem {
+    @In
+    private MultiBlockRegistry multiBlockRegistry;
+
+    @Command(shortDescription = "Shows or controls the multi-block metrics",
+            helpText = "Without an action lists the current metrics, actions are: enable, disable, reset",
+            runOnServer = true, requiredPermission = PermissionManager.DEBUG_PERMISSION)
+    public String multiBlockMetrics(@CommandParam(value = "action", required = false) String action) {
+        MultiBlockMetrics metrics = multiBlockRegistry.getMetrics();
+        if (action == null) {
+            return metrics.describe();
+        }
+        switch (action) {
+            case "enable":
+                metrics.setEnabled(true);
+                return "Multi-block metrics enabled";
+            case "disable":
+                metrics.setEnabled(false);
+                return "Multi-block metrics disabled";
+            case "reset":
+                metrics.reset();
+                return "Multi-block metrics reset";
+            default:
+                return "Unknown action: " + action + ", expected one of: enable, disable, reset";
+        }
+    }
+}
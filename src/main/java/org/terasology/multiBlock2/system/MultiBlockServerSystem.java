@@ -18,46 +18,72 @@ import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterMode;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
 import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
+import org.terasology.engine.logic.health.DestroyEvent;
 import org.terasology.engine.logic.location.LocationComponent;
 import org.terasology.engine.registry.In;
 import org.terasology.engine.registry.Share;
 import org.terasology.engine.world.BlockEntityRegistry;
+import org.terasology.engine.world.OnChangedBlock;
 import org.terasology.engine.world.WorldProvider;
 import org.terasology.engine.world.block.Block;
 import org.terasology.engine.world.block.BlockComponent;
 import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.block.BlockRegionc;
 import org.terasology.engine.world.block.entity.placement.PlaceBlocks;
 import org.terasology.engine.world.block.family.BlockFamily;
 import org.terasology.engine.world.chunks.Chunks;
 import org.terasology.engine.world.chunks.event.BeforeChunkUnload;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
 import org.terasology.module.health.events.BeforeDamagedEvent;
+import org.terasology.multiBlock2.InteriorContentSummary;
+import org.terasology.multiBlock2.MultiBlockBlockChangeListener;
 import org.terasology.multiBlock2.MultiBlockDefinition;
+import org.terasology.multiBlock2.MultiBlockHandle;
 import org.terasology.multiBlock2.MultiBlockRegistry;
+import org.terasology.multiBlock2.MultiBlockSnapshot;
+import org.terasology.multiBlock2.MultiBlockSubscription;
 import org.terasology.multiBlock2.block.VisibilityEnabledBlockFamily;
 import org.terasology.multiBlock2.component.MultiBlockCandidateComponent;
 import org.terasology.multiBlock2.component.MultiBlockComponent;
+import org.terasology.multiBlock2.component.MultiBlockHealthComponent;
 import org.terasology.multiBlock2.component.MultiBlockMainComponent;
 import org.terasology.multiBlock2.component.MultiBlockMemberComponent;
 import org.terasology.multiBlock2.event.BeforeMultiBlockUnformed;
 import org.terasology.multiBlock2.event.BeforeMultiBlockUnloaded;
+import org.terasology.multiBlock2.event.BeforeMultiBlocksUnloaded;
 import org.terasology.multiBlock2.event.MultiBlockFormed;
 import org.terasology.multiBlock2.event.MultiBlockLoaded;
+import org.terasology.multiBlock2.event.MultiBlockUnformed;
+import org.terasology.multiBlock2.event.MultiBlocksLoaded;
+import org.terasology.multiBlock2.index.SpatialRegionIndex;
+import org.terasology.multiBlock2.metrics.FlightEvent;
+import org.terasology.multiBlock2.metrics.FlightEventType;
+import org.terasology.multiBlock2.metrics.MultiBlockFlightRecorder;
+import org.terasology.multiBlock2.metrics.MultiBlockMetrics;
+import org.terasology.multiBlock2.recipe.DetectionStats;
 import org.terasology.multiBlock2.recipe.MultiBlockRecipe;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 @RegisterSystem(RegisterMode.AUTHORITY)
 @Share(MultiBlockRegistry.class)
 public class MultiBlockServerSystem extends BaseComponentSystem implements MultiBlockRegistry, UpdateSubscriberSystem {
     private static final Logger logger = LoggerFactory.getLogger(MultiBlockServerSystem.class);
+    // A member of an unformed multi-block keeps its component, so when the main block never gets loaded, we have to
+    // stop waiting for it at some point. The main block of a formed multi-block is restored on its own anyway.
+    private static final int MAX_MAIN_BLOCK_WAIT_UPDATES = 600;
+    // How many blocks are processed between checks of the time budget of amortized forming and unforming
+    private static final int TRANSITION_TIME_CHECK_INTERVAL = 64;
 
     @In
     private BlockEntityRegistry blockEntityRegistry;
@@ -68,11 +94,46 @@ public class MultiBlockServerSystem extends BaseComponentSystem implements Multi
 
     private Map<String, MultiBlockRecipe<?>> multiBlockRecipeMap = new HashMap<>();
 
-    private Map<BlockRegion, EntityRef> loadedMultiBlocks = new HashMap<>();
+    private Map<BlockRegion, LoadedMultiBlock> loadedMultiBlocks = new HashMap<>();
+    // Only reads the state that never changes after the multi-block is formed or loaded, so it is safe on any thread
+    private SpatialRegionIndex.MembershipTest<LoadedMultiBlock> membershipTest = LoadedMultiBlock::containsBlock;
+    private SpatialRegionIndex<LoadedMultiBlock> multiBlockIndex = new SpatialRegionIndex<>(membershipTest);
+    private LoadedMultiBlock[] batchFound = new LoadedMultiBlock[0];
+    // Published at the end of each update for the other threads, which must not touch any of the state above
+    private volatile IndexSnapshot snapshot = new IndexSnapshot(multiBlockIndex.snapshot(membershipTest));
+    // Only the multi-blocks with block change subscriptions are indexed here, by their whole region
+    private Map<LoadedMultiBlock, List<BlockChangeSubscription>> blockChangeSubscriptions = new HashMap<>();
+    private SpatialRegionIndex<LoadedMultiBlock> subscribedMultiBlockIndex = new SpatialRegionIndex<>(null);
+    private BlockRegion changedBlockRegion = new BlockRegion(0, 0, 0);
+
+    private Set<String> lazyEntityTypes = new HashSet<>();
+    private Set<String> batchedLifecycleEventsOnlyTypes = new HashSet<>();
+    private Set<String> interiorContentSummaryTypes = new HashSet<>();
+    private Map<String, Integer> sharedHealthPools = new HashMap<>();
+
+    private List<MultiBlockHandle> multiBlocksLoadedInUpdate = new ArrayList<>();
+
+    private int amortizedMinimumBlockCount = Integer.MAX_VALUE;
+    private long amortizedTimeBudgetNanos;
+    private List<MultiBlockTransition> transitions = new LinkedList<>();
+    private SpatialRegionIndex<MultiBlockTransition> transitionIndex = new SpatialRegionIndex<>(null);
 
     private boolean internallyMutating = false;
+    private boolean placingFormedMultiBlock = false;
 
-    private Set<Vector3i> pendingMultiBlockPartsChecks = new HashSet<>();
+    private Map<Vector3i, Integer> pendingMultiBlockPartsChecks = new HashMap<>();
+    // Filled only while the metrics are enabled, to measure the restore latency
+    private Map<Vector3i, Long> pendingMultiBlockPartsActivationTimes = new HashMap<>();
+
+    private MultiBlockMetrics metrics = new MultiBlockMetrics();
+
+    @Override
+    public void initialise() {
+        metrics.registerGauge("multiBlocks.loaded", loadedMultiBlocks::size);
+        metrics.registerGauge("multiBlocks.indexed", multiBlockIndex::size);
+        metrics.registerGauge("restore.pending", pendingMultiBlockPartsChecks::size);
+        metrics.registerGauge("transitions.active", transitions::size);
+    }
 
     // Horrible workaround for the fact, that system is notified about block entities being loaded via OnActivatedComponent
     // before the chunk they are in is "relevant", we need to keep querying worldProvider, until it was merged to restore
@@ -80,14 +141,15 @@ public class MultiBlockServerSystem extends BaseComponentSystem implements Multi
     // have been loaded.
     @Override
     public void update(float delta) {
-        Iterator<Vector3i> iterator = pendingMultiBlockPartsChecks.iterator();
+        Iterator<Map.Entry<Vector3i, Integer>> iterator = pendingMultiBlockPartsChecks.entrySet().iterator();
         while (iterator.hasNext()) {
-            Vector3i position = iterator.next();
+            Map.Entry<Vector3i, Integer> pendingCheck = iterator.next();
+            Vector3i position = pendingCheck.getKey();
             if (worldProvider.isBlockRelevant(position)) {
                 EntityRef blockEntity = blockEntityRegistry.getBlockEntityAt(position);
                 MultiBlockMainComponent multiBlockMain = blockEntity.getComponent(MultiBlockMainComponent.class);
                 if (multiBlockMain != null) {
-                    processLoadedMultiBlockMain(blockEntity, multiBlockMain, position);
+                    processLoadedMultiBlockMain(blockEntity, multiBlockMain, position, getActivationTime(position));
                 } else {
                     MultiBlockMemberComponent multiBlockMember = blockEntity.getComponent(MultiBlockMemberComponent.class);
                     if (multiBlockMember != null) {
@@ -98,8 +160,16 @@ public class MultiBlockServerSystem extends BaseComponentSystem implements Multi
                             // The entities are not loaded at the same time it seems, so I need to wait for the main one
                             // to be loaded, even if it is already relevant
                             if (multiBlockMain != null) {
-                                processLoadedMultiBlockMain(mainBlockEntity, multiBlockMain, mainBlockLocation);
+                                // Otherwise it is a leftover of an already unformed multi-block
+                                if (multiBlockMember.isMemberOf(multiBlockMain)) {
+                                    processLoadedMultiBlockMain(mainBlockEntity, multiBlockMain, mainBlockLocation,
+                                            getActivationTime(position));
+                                }
                                 iterator.remove();
+                            } else if (pendingCheck.getValue() >= MAX_MAIN_BLOCK_WAIT_UPDATES) {
+                                iterator.remove();
+                            } else {
+                                pendingCheck.setValue(pendingCheck.getValue() + 1);
                             }
                         } else {
                             iterator.remove();
@@ -110,6 +180,33 @@ public class MultiBlockServerSystem extends BaseComponentSystem implements Multi
                 }
             }
         }
+
+        if (!pendingMultiBlockPartsActivationTimes.isEmpty()) {
+            pendingMultiBlockPartsActivationTimes.keySet().retainAll(pendingMultiBlockPartsChecks.keySet());
+        }
+
+        if (!multiBlocksLoadedInUpdate.isEmpty()) {
+            List<MultiBlockHandle> loadedInUpdate = multiBlocksLoadedInUpdate;
+            multiBlocksLoadedInUpdate = new ArrayList<>();
+            worldProvider.getWorldEntity().send(new MultiBlocksLoaded(loadedInUpdate));
+        }
+
+        if (!transitions.isEmpty()) {
+            long deadline = System.nanoTime() + amortizedTimeBudgetNanos;
+            // Handlers of the events sent while advancing might start or finish other transitions
+            List<MultiBlockTransition> transitionsToAdvance = new ArrayList<>(transitions);
+            for (MultiBlockTransition transition : transitionsToAdvance) {
+                if (transitionIndex.contains(transition) && advanceTransition(transition, deadline)) {
+                    completeTransition(transition);
+                }
+                if (System.nanoTime() >= deadline) {
+                    break;
+                }
+            }
+        }
+
+        publishSnapshot();
+        metrics.exportIfDue();
     }
 
     @Override
@@ -118,44 +215,313 @@ public class MultiBlockServerSystem extends BaseComponentSystem implements Multi
     }
 
     @Override
-    public EntityRef getMultiBlockAtLocation(Vector3i location, String type) {
-        for (Map.Entry<BlockRegion, EntityRef> regionEntityRefEntry : loadedMultiBlocks.entrySet()) {
-            if (regionEntityRefEntry.getKey().contains(location)) {
-                EntityRef entity = regionEntityRefEntry.getValue();
-                MultiBlockComponent multiBlock = entity.getComponent(MultiBlockComponent.class);
-                EntityRef mainBlockEntity = multiBlock.getMainBlockEntity();
-                MultiBlockMainComponent mainComponent = mainBlockEntity.getComponent(MultiBlockMainComponent.class);
-                if (mainComponent.getMultiBlockType().equals(type)) {
-                    if (mainBlockEntity.getComponent(BlockComponent.class).getPosition().equals(location)
-                            || mainComponent.getMultiBlockMembers().contains(location)) {
-                        return entity;
-                    }
+    public MultiBlockMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void setLazyMultiBlockEntity(String type, boolean lazy) {
+        if (lazy) {
+            lazyEntityTypes.add(type);
+        } else {
+            lazyEntityTypes.remove(type);
+        }
+    }
+
+    @Override
+    public void setPerMultiBlockLifecycleEvents(String type, boolean enabled) {
+        if (enabled) {
+            batchedLifecycleEventsOnlyTypes.remove(type);
+        } else {
+            batchedLifecycleEventsOnlyTypes.add(type);
+        }
+    }
+
+    @Override
+    public void setInteriorContentSummary(String type, boolean enabled) {
+        if (enabled) {
+            interiorContentSummaryTypes.add(type);
+        } else {
+            interiorContentSummaryTypes.remove(type);
+        }
+    }
+
+    @Override
+    public void setSharedHealthPool(String type, int maxHealth) {
+        if (maxHealth > 0) {
+            sharedHealthPools.put(type, maxHealth);
+        } else {
+            sharedHealthPools.remove(type);
+        }
+    }
+
+    @Override
+    public void setAmortizedForming(int minimumBlockCount, float timeBudgetMs) {
+        amortizedMinimumBlockCount = minimumBlockCount;
+        amortizedTimeBudgetNanos = (long) (timeBudgetMs * 1000000);
+    }
+
+    @Override
+    public boolean placeFormedMultiBlock(MultiBlockDefinition definition, Map<? extends Vector3ic, Block> blocks) {
+        FlightEvent formFlightEvent = MultiBlockFlightRecorder.create(FlightEventType.FORM);
+        formFlightEvent.begin();
+        long formingStart = metrics.startTimer();
+        Vector3i mainLocation = definition.getMainBlock();
+        Collection<Vector3i> memberLocations = definition.getMemberBlocks();
+        Iterable<Vector3i> structureLocations = Iterables.concat(memberLocations, Collections.singleton(mainLocation));
+        BlockRegion region = memberLocations.stream().reduce(new BlockRegion(mainLocation), BlockRegion::union, BlockRegion::union);
+        BlockRegion editedRegion = new BlockRegion(region);
+        for (Vector3ic location : blocks.keySet()) {
+            editedRegion.union(location);
+        }
+        if (!worldProvider.isRegionRelevant(editedRegion) || isAnyTransitionInTheWay(editedRegion)) {
+            return false;
+        }
+        // Loaded multi-blocks are looked up in the index, so no block entities are created for the placed blocks
+        int count = multiBlockIndex.findIntersecting(editedRegion, null);
+        List<LoadedMultiBlock> multiBlocksInTheWay = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LoadedMultiBlock multiBlock = multiBlockIndex.getFound(i);
+            for (Vector3ic location : Iterables.concat(blocks.keySet(), structureLocations)) {
+                if (multiBlock.containsBlock(location)) {
+                    multiBlocksInTheWay.add(multiBlock);
+                    break;
                 }
-                return null;
             }
         }
-        return null;
+        for (LoadedMultiBlock multiBlock : multiBlocksInTheWay) {
+            destroyMultiBlock(multiBlock.getMainBlockEntity());
+        }
+        // Large multi-blocks in the way might have started unforming over several updates
+        if (isAnyTransitionInTheWay(editedRegion)) {
+            return false;
+        }
+
+        Map<Vector3ic, Block> blocksToSet = new HashMap<>(blocks);
+        for (Vector3i location : structureLocations) {
+            Block block = blocksToSet.get(location);
+            Block invisibleBlock = getBlockWithVisibility(block != null ? block : worldProvider.getBlock(location), false);
+            if (invisibleBlock != null) {
+                blocksToSet.put(location, invisibleBlock);
+            }
+        }
+
+        long formationId = createFormationId();
+        internallyMutating = true;
+        placingFormedMultiBlock = true;
+        try {
+            if (!blocksToSet.isEmpty()) {
+                worldProvider.setBlocks(blocksToSet);
+            }
+            for (Vector3i memberLocation : memberLocations) {
+                blockEntityRegistry.getBlockEntityAt(memberLocation).addOrSaveComponent(new MultiBlockMemberComponent(mainLocation, formationId));
+            }
+            // Created here, so the candidate of the main block is not detected either
+            blockEntityRegistry.getBlockEntityAt(mainLocation);
+        } finally {
+            internallyMutating = false;
+            placingFormedMultiBlock = false;
+        }
+
+        finishForming(definition, region, formationId);
+        formFlightEvent.commitIfEnabled(definition.getMultiBlockType(), MultiBlockFlightRecorder.getVolume(region),
+                memberLocations.size() + 1, "placed");
+        metrics.recordTime("place.time", definition.getMultiBlockType(), formingStart);
+        if (metrics.isEnabled()) {
+            metrics.getCounter("multiBlocks.placed", definition.getMultiBlockType()).increment();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isFormingOrUnforming(Vector3ic location) {
+        return transitionIndex.getAt(location, null) != null;
+    }
+
+    @Override
+    public EntityRef getMultiBlockAtLocation(Vector3i location, String type) {
+        LoadedMultiBlock multiBlock = multiBlockIndex.getAt(location, type);
+        return multiBlock != null ? multiBlock.getMultiBlockEntity() : null;
+    }
+
+    @Override
+    public void getMultiBlocksAt(int[] locations, int count, String type, EntityRef[] result) {
+        if (batchFound.length < count) {
+            batchFound = new LoadedMultiBlock[Math.max(count, batchFound.length * 2)];
+        }
+        multiBlockIndex.getAllAt(locations, count, type, batchFound);
+        for (int i = 0; i < count; i++) {
+            LoadedMultiBlock multiBlock = batchFound[i];
+            result[i] = multiBlock != null ? multiBlock.getMultiBlockEntity() : null;
+            batchFound[i] = null;
+        }
+    }
+
+    @Override
+    public MultiBlockHandle getMultiBlockHandle(Vector3ic location, String type) {
+        return multiBlockIndex.getAt(location, type);
+    }
+
+    @Override
+    public List<EntityRef> getMultiBlocksWithinRadius(Vector3ic location, float radius, String type, List<EntityRef> result) {
+        int count = multiBlockIndex.findWithinRadius(location, radius, type);
+        return appendFound(count, result);
+    }
+
+    @Override
+    public List<EntityRef> getMultiBlocksInRegion(BlockRegionc region, String type, List<EntityRef> result) {
+        int count = multiBlockIndex.findIntersecting(region, type);
+        return appendFound(count, result);
+    }
+
+    @Override
+    public List<EntityRef> getNearestMultiBlocks(Vector3ic location, int count, float maxRadius, String type, List<EntityRef> result) {
+        int found = multiBlockIndex.findNearest(location, count, maxRadius, type);
+        return appendFound(found, result);
+    }
+
+    @Override
+    public MultiBlockSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private void publishSnapshot() {
+        SpatialRegionIndex.Snapshot<LoadedMultiBlock> indexSnapshot = multiBlockIndex.snapshot(membershipTest);
+        if (indexSnapshot != snapshot.indexSnapshot) {
+            snapshot = new IndexSnapshot(indexSnapshot);
+        }
+    }
+
+    @Override
+    public InteriorContentSummary getInteriorContentSummary(MultiBlockHandle multiBlock) {
+        if (!(multiBlock instanceof LoadedMultiBlock) || !multiBlock.isValid()) {
+            return null;
+        }
+        return ((LoadedMultiBlock) multiBlock).getInteriorContentSummary();
+    }
+
+    @Override
+    public MultiBlockSubscription subscribeToBlockChanges(MultiBlockHandle multiBlock, MultiBlockBlockChangeListener listener) {
+        if (!(multiBlock instanceof LoadedMultiBlock) || !multiBlock.isValid()) {
+            throw new IllegalArgumentException("Multi-block is no longer loaded or formed");
+        }
+        LoadedMultiBlock loadedMultiBlock = (LoadedMultiBlock) multiBlock;
+        List<BlockChangeSubscription> subscriptions = blockChangeSubscriptions.get(loadedMultiBlock);
+        if (subscriptions == null) {
+            subscriptions = new ArrayList<>(1);
+            blockChangeSubscriptions.put(loadedMultiBlock, subscriptions);
+            subscribedMultiBlockIndex.add(loadedMultiBlock.getRegion(), loadedMultiBlock.getType(), loadedMultiBlock);
+        }
+        BlockChangeSubscription subscription = new BlockChangeSubscription(loadedMultiBlock, listener);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    private void summarizeInteriorIfEnabled(LoadedMultiBlock multiBlock) {
+        if (interiorContentSummaryTypes.contains(multiBlock.getType())) {
+            InteriorContentSummary summary = new InteriorContentSummary(multiBlock.getRegion(), worldProvider);
+            multiBlock.setInteriorContentSummary(summary);
+            if (summary.getVolume() > 0) {
+                subscribeToBlockChanges(multiBlock, summary);
+            }
+        }
+    }
+
+    private void removeBlockChangeSubscription(BlockChangeSubscription subscription) {
+        List<BlockChangeSubscription> subscriptions = blockChangeSubscriptions.get(subscription.multiBlock);
+        if (subscriptions != null && subscriptions.remove(subscription) && subscriptions.isEmpty()) {
+            blockChangeSubscriptions.remove(subscription.multiBlock);
+            subscribedMultiBlockIndex.remove(subscription.multiBlock);
+        }
+    }
+
+    private void removeBlockChangeSubscriptions(LoadedMultiBlock multiBlock) {
+        List<BlockChangeSubscription> subscriptions = blockChangeSubscriptions.remove(multiBlock);
+        if (subscriptions != null) {
+            subscribedMultiBlockIndex.remove(multiBlock);
+            for (BlockChangeSubscription subscription : subscriptions) {
+                subscription.active = false;
+            }
+        }
+    }
+
+    private List<EntityRef> appendFound(int count, List<EntityRef> result) {
+        for (int i = 0; i < count; i++) {
+            result.add(multiBlockIndex.getFound(i).getMultiBlockEntity());
+        }
+        return result;
     }
 
     @ReceiveEvent
     public void onMultiBlockCandidatePlaced(OnAddedComponent event, EntityRef entity, MultiBlockCandidateComponent candidate, BlockComponent block) {
+        if (placingFormedMultiBlock) {
+            return;
+        }
         for (String type : candidate.getType()) {
             MultiBlockRecipe<?> recipe = multiBlockRecipeMap.get(type);
             if (recipe != null) {
-                MultiBlockDefinition definition = recipe.detectFormingMultiBlock(block.getPosition(new Vector3i()));
+                long detectionStart = metrics.startTimer();
+                FlightEvent detectionFlightEvent = MultiBlockFlightRecorder.create(FlightEventType.DETECTION);
+                detectionFlightEvent.begin();
+                DetectionStats detectionStats = new DetectionStats();
+                MultiBlockDefinition definition = recipe.detectFormingMultiBlock(block.getPosition(new Vector3i()), detectionStats);
+                if (detectionFlightEvent.isEnabled()) {
+                    long volume = definition != null ? MultiBlockFlightRecorder.getVolume(getRegion(definition)) : 0;
+                    int blocksVisited = detectionStats.getBlocksVisited() > 0 ? detectionStats.getBlocksVisited() : -1;
+                    detectionFlightEvent.commitIfEnabled(type, volume, blocksVisited,
+                            definition != null ? "detected" : "rejected");
+                }
+                if (metrics.isEnabled()) {
+                    recordDetection(type, detectionStats, definition != null, detectionStart);
+                }
+                if (definition == null || isAnyTransitionInTheWay(definition)) {
+                    continue;
+                }
                 Set<EntityRef> multiBlockMainBlockEntities = getMultiBlockMainBlocksInTheWay(definition);
                 if (areAllMultiBlocksInTheWayRelevant(multiBlockMainBlockEntities)) {
                     // Destroy all multi blocks in the way
                     for (EntityRef multiBlockMainBlockEntity : multiBlockMainBlockEntities) {
                         destroyMultiBlock(multiBlockMainBlockEntity);
                     }
+                    // Large multi-blocks in the way might have started unforming over several updates, forming on top
+                    // of them would make the blocks of the new one visible again
+                    if (isAnyTransitionInTheWay(definition)) {
+                        continue;
+                    }
 
+                    long formingStart = metrics.startTimer();
                     createMultiBlock(definition);
+                    metrics.recordTime("form.time", type, formingStart);
+                    if (metrics.isEnabled()) {
+                        metrics.getHistogram("form.blocks", type).record(definition.getMemberBlocks().size() + 1);
+                    }
                 }
             }
         }
     }
 
+    @ReceiveEvent
+    public void onBlockChanged(OnChangedBlock event, EntityRef blockEntity) {
+        if (subscribedMultiBlockIndex.size() == 0) {
+            return;
+        }
+        Vector3ic location = event.getBlockPosition();
+        int count = subscribedMultiBlockIndex.findIntersecting(changedBlockRegion.set(location, location), null);
+        if (count == 0) {
+            return;
+        }
+        // Listeners might subscribe or cancel, so the matching subscriptions have to be copied first
+        List<BlockChangeSubscription> notified = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            notified.addAll(blockChangeSubscriptions.get(subscribedMultiBlockIndex.getFound(i)));
+        }
+        for (BlockChangeSubscription subscription : notified) {
+            if (subscription.active) {
+                subscription.listener.onBlockChanged(subscription.multiBlock, location, event.getOldType(), event.getNewType());
+            }
+        }
+    }
+
     @ReceiveEvent
     public void onMultiBlockPartRemoved(BeforeRemoveComponent event, EntityRef entity, MultiBlockMainComponent multiBlockMain, BlockComponent block) {
         if (!internallyMutating) {
@@ -169,7 +535,9 @@ public class MultiBlockServerSystem extends BaseComponentSystem implements Multi
             Vector3i mainBlockLocation = multiBlockMember.getMainBlockLocation();
             if (worldProvider.isBlockRelevant(mainBlockLocation)) {
                 EntityRef mainBlockEntity = blockEntityRegistry.getBlockEntityAt(mainBlockLocation);
-                destroyMultiBlock(mainBlockEntity);
+                if (multiBlockMember.isMemberOf(mainBlockEntity.getComponent(MultiBlockMainComponent.class))) {
+                    destroyMultiBlock(mainBlockEntity);
+                }
             } else {
                 logger.error("Part of the MultiBlock is getting removed when it's not fully loaded");
             }
@@ -178,17 +546,47 @@ public class MultiBlockServerSystem extends BaseComponentSystem implements Multi
 
     @ReceiveEvent
     public void beforeChunkUnloaded(BeforeChunkUnload beforeChunkUnload, EntityRef world) {
+        long unloadStart = metrics.startTimer();
+        FlightEvent chunkUnloadFlightEvent = MultiBlockFlightRecorder.create(FlightEventType.CHUNK_UNLOAD);
+        chunkUnloadFlightEvent.begin();
         BlockRegion chunkRegion = getChunkRegion(beforeChunkUnload.getChunkPos());
-        Iterator<Map.Entry<BlockRegion, EntityRef>> iterator = loadedMultiBlocks.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<BlockRegion, EntityRef> multiBlock = iterator.next();
-            if (chunkRegion.intersectsBlockRegion(multiBlock.getKey())) {
-                EntityRef multiBlockEntity = multiBlock.getValue();
-                MultiBlockComponent component = multiBlockEntity.getComponent(MultiBlockComponent.class);
-                multiBlockEntity.send(new BeforeMultiBlockUnloaded(component.getType(), component.getMainBlockEntity()));
-                iterator.remove();
-                multiBlockEntity.destroy();
+        finishTransitionsIntersecting(chunkRegion);
+
+        int count = multiBlockIndex.findIntersecting(chunkRegion, null);
+        if (count == 0) {
+            chunkUnloadFlightEvent.commitIfEnabled(null, 0, 0, "no multi-blocks");
+            metrics.recordTime("chunkUnload.time", unloadStart);
+            return;
+        }
+        // Event handlers might query the index, so the results have to be copied first
+        List<LoadedMultiBlock> unloadedMultiBlocks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            unloadedMultiBlocks.add(multiBlockIndex.getFound(i));
+        }
+        world.send(new BeforeMultiBlocksUnloaded(Collections.unmodifiableList(unloadedMultiBlocks)));
+        long unloadedVolume = 0;
+        int unloadedBlocks = 0;
+        boolean recordedByFlightRecorder = chunkUnloadFlightEvent.isEnabled();
+        for (LoadedMultiBlock multiBlock : unloadedMultiBlocks) {
+            if (recordedByFlightRecorder) {
+                unloadedVolume += MultiBlockFlightRecorder.getVolume(multiBlock.getRegion());
+                unloadedBlocks += multiBlock.getMembers().size() + 1;
+            }
+            if (multiBlock.hasMultiBlockEntity() && !batchedLifecycleEventsOnlyTypes.contains(multiBlock.getType())) {
+                multiBlock.getMultiBlockEntity().send(new BeforeMultiBlockUnloaded(multiBlock.getType(), multiBlock.getMainBlockEntity()));
             }
+            loadedMultiBlocks.remove(multiBlock.getRegion());
+            multiBlockIndex.remove(multiBlock);
+            removeBlockChangeSubscriptions(multiBlock);
+            multiBlock.markUnloaded();
+            if (multiBlock.hasMultiBlockEntity()) {
+                multiBlock.getMultiBlockEntity().destroy();
+            }
+        }
+        chunkUnloadFlightEvent.commitIfEnabled(null, unloadedVolume, unloadedBlocks, "unloaded " + count + " multi-blocks");
+        metrics.recordTime("chunkUnload.time", unloadStart);
+        if (metrics.isEnabled()) {
+            metrics.getCounter("multiBlocks.unloaded").add(count);
         }
     }
 
@@ -214,7 +612,7 @@ public class MultiBlockServerSystem extends BaseComponentSystem implements Multi
     @ReceiveEvent
     public void onMultiBlockBeingLoaded(OnActivatedComponent event, EntityRef entity, MultiBlockMainComponent multiBlockMain, BlockComponent block) {
         if (!internallyMutating) {
-            pendingMultiBlockPartsChecks.add(block.getPosition(new Vector3i()));
+            addPendingMultiBlockPartsCheck(block.getPosition(new Vector3i()));
 //            processLoadedMultiBlockMain(entity, multiBlockMain,  block.getPosition());
         }
     }
@@ -222,7 +620,7 @@ public class MultiBlockServerSystem extends BaseComponentSystem implements Multi
     @ReceiveEvent
     public void onMultiBlockBeingLoaded(OnActivatedComponent event, EntityRef entity, MultiBlockMemberComponent multiBlockMember, BlockComponent block) {
         if (!internallyMutating) {
-            pendingMultiBlockPartsChecks.add(block.getPosition(new Vector3i()));
+            addPendingMultiBlockPartsCheck(block.getPosition(new Vector3i()));
 //            if (worldProvider.isBlockRelevant(mainLocation)) {
 //                EntityRef mainBlockEntity = blockEntityRegistry.getBlockEntityAt(mainLocation);
 //                MultiBlockMainComponent multiBlockMain = mainBlockEntity.getComponent(MultiBlockMainComponent.class);
@@ -245,9 +643,52 @@ public class MultiBlockServerSystem extends BaseComponentSystem implements Multi
         }
     }
 
+    @ReceiveEvent
+    public void onTransitioningMultiBlockBeingDamaged(BeforeDamagedEvent event, EntityRef entity, BlockComponent block) {
+        if (transitionIndex.size() > 0 && transitionIndex.getAt(block.getPosition(new Vector3i()), null) != null) {
+            event.consume();
+        }
+    }
+
+    @ReceiveEvent
+    public void onSharedHealthMultiBlockBeingDamaged(BeforeDamagedEvent event, EntityRef entity, BlockComponent block) {
+        if (sharedHealthPools.isEmpty() || event.isConsumed()) {
+            return;
+        }
+        LoadedMultiBlock multiBlock = multiBlockIndex.getAt(block.getPosition(new Vector3i()), null);
+        if (multiBlock == null) {
+            return;
+        }
+        Integer sharedMaxHealth = sharedHealthPools.get(multiBlock.getType());
+        EntityRef multiBlockEntity = multiBlock.getMultiBlockEntity();
+        if (sharedMaxHealth == null || !multiBlockEntity.exists()) {
+            return;
+        }
+        MultiBlockHealthComponent health = multiBlockEntity.getComponent(MultiBlockHealthComponent.class);
+        if (health == null) {
+            // Formed before the pool was enabled for the type
+            health = new MultiBlockHealthComponent(sharedMaxHealth);
+            multiBlockEntity.addComponent(health);
+        }
+        // The damage goes to the pool only, the block itself is left untouched
+        event.consume();
+        if (health.currentHealth <= 0) {
+            return;
+        }
+        health.currentHealth -= (int) Math.floor(event.getResultValue());
+        multiBlockEntity.saveComponent(health);
+        if (health.currentHealth <= 0) {
+            multiBlock.getMainBlockEntity().send(new DestroyEvent(event.getInstigator(), event.getDirectCause(), event.getDamageType()));
+        }
+    }
+
     @ReceiveEvent
     public void onMultiBlockBlocksReplaced(PlaceBlocks event, EntityRef world) {
         for (Vector3ic vector3i : event.getBlocks().keySet()) {
+            if (transitionIndex.size() > 0 && transitionIndex.getAt(vector3i, null) != null) {
+                event.consume();
+                break;
+            }
             EntityRef blockEntity = blockEntityRegistry.getBlockEntityAt(vector3i);
             if (isEntityPartOfNotFullyLoadedMultiBlock(blockEntity)) {
                 event.consume();
@@ -264,24 +705,74 @@ public class MultiBlockServerSystem extends BaseComponentSystem implements Multi
         MultiBlockMemberComponent multiBlockMember = entity.getComponent(MultiBlockMemberComponent.class);
         if (multiBlockMember != null) {
             Vector3i mainBlockLocation = multiBlockMember.getMainBlockLocation();
-            if (!worldProvider.isBlockRelevant(mainBlockLocation)) {
-                return true;
+            if (worldProvider.isBlockRelevant(mainBlockLocation)) {
+                // Formation id is checked first, so a member left over from an unformed multi-block is not vetoed
+                multiBlockMain = blockEntityRegistry.getBlockEntityAt(mainBlockLocation).getComponent(MultiBlockMainComponent.class);
+                return multiBlockMember.isMemberOf(multiBlockMain) && !worldProvider.isRegionRelevant(multiBlockMain.getAabb());
             }
-            multiBlockMain = blockEntityRegistry.getBlockEntityAt(mainBlockLocation).getComponent(MultiBlockMainComponent.class);
-            return !worldProvider.isRegionRelevant(multiBlockMain.getAabb());
+            // There is no telling whether the member is a leftover of an unformed multi-block until its main block
+            // is loaded, so it is protected either way
+            return true;
         }
         return false;
     }
 
-    private void processLoadedMultiBlockMain(EntityRef mainBlockEntity, MultiBlockMainComponent multiBlockMain, Vector3i position) {
+    private void addPendingMultiBlockPartsCheck(Vector3i position) {
+        if (pendingMultiBlockPartsChecks.putIfAbsent(position, 0) == null && metrics.isEnabled()) {
+            pendingMultiBlockPartsActivationTimes.put(position, System.nanoTime());
+        }
+    }
+
+    private long getActivationTime(Vector3i position) {
+        if (pendingMultiBlockPartsActivationTimes.isEmpty()) {
+            return 0;
+        }
+        Long activationTime = pendingMultiBlockPartsActivationTimes.get(position);
+        return activationTime != null ? activationTime : 0;
+    }
+
+    private void recordDetection(String type, DetectionStats detectionStats, boolean detected, long detectionStart) {
+        metrics.recordTime("detection.time", type, detectionStart);
+        metrics.getCounter(detected ? "detection.detected" : "detection.rejected", type).increment();
+        // Recipes that do not count the blocks leave it at 0, the others look at least at the placed block
+        if (detectionStats.getBlocksVisited() > 0) {
+            metrics.getHistogram("detection.blocks", type).record(detectionStats.getBlocksVisited());
+        }
+    }
+
+    /**
+     * @param activationTime time the first of the blocks of the multi-block has been activated, used only for metrics,
+     *                       0 if unknown
+     */
+    private void processLoadedMultiBlockMain(EntityRef mainBlockEntity, MultiBlockMainComponent multiBlockMain, Vector3i position,
+                                             long activationTime) {
         if (!loadedMultiBlocks.containsKey(multiBlockMain.getAabb())
                 && worldProvider.isRegionRelevant(multiBlockMain.getAabb())) {
-            EntityRef multiBlockEntity = createMultiBlockEntity(mainBlockEntity, position, multiBlockMain.getMultiBlockType());
+            String multiBlockType = multiBlockMain.getMultiBlockType();
+            boolean lazy = lazyEntityTypes.contains(multiBlockType);
+            EntityRef multiBlockEntity = lazy ? null : createMultiBlockEntity(mainBlockEntity, position, multiBlockType);
 
-            loadedMultiBlocks.put(new BlockRegion(multiBlockMain.getAabb()), multiBlockEntity);
-            multiBlockMain.setMultiBlockEntity(multiBlockEntity);
+            LoadedMultiBlock multiBlock = new LoadedMultiBlock(this, multiBlockType, multiBlockEntity,
+                    mainBlockEntity, position, multiBlockMain.getAabb(), multiBlockMain.getMultiBlockMembers());
+            loadedMultiBlocks.put(new BlockRegion(multiBlockMain.getAabb()), multiBlock);
+            multiBlockIndex.add(multiBlockMain.getAabb(), multiBlockType, multiBlock);
+            summarizeInteriorIfEnabled(multiBlock);
+            multiBlockMain.setMultiBlockEntity(lazy ? EntityRef.NULL : multiBlockEntity);
 
-            multiBlockEntity.send(new MultiBlockLoaded(multiBlockMain.getMultiBlockType(), mainBlockEntity));
+            multiBlocksLoadedInUpdate.add(multiBlock);
+            if (!lazy && !batchedLifecycleEventsOnlyTypes.contains(multiBlockType)) {
+                multiBlockEntity.send(new MultiBlockLoaded(multiBlockType, mainBlockEntity));
+            }
+            FlightEvent restoreFlightEvent = MultiBlockFlightRecorder.create(FlightEventType.RESTORE);
+            if (restoreFlightEvent.isEnabled()) {
+                restoreFlightEvent.setSinceActivation(activationTime != 0 ? System.nanoTime() - activationTime : 0);
+                restoreFlightEvent.commitIfEnabled(multiBlockType, MultiBlockFlightRecorder.getVolume(multiBlockMain.getAabb()),
+                        multiBlockMain.getMultiBlockMembers().size() + 1, "restored");
+            }
+            if (metrics.isEnabled()) {
+                metrics.getCounter("multiBlocks.restored", multiBlockType).increment();
+                metrics.recordTime("restore.time", multiBlockType, activationTime);
+            }
         }
     }
 
@@ -293,77 +784,272 @@ public class MultiBlockServerSystem extends BaseComponentSystem implements Multi
     }
 
     private void destroyMultiBlock(EntityRef multiBlockMainBlockEntity) {
+        long unformingStart = metrics.startTimer();
+        FlightEvent unformFlightEvent = MultiBlockFlightRecorder.create(FlightEventType.UNFORM);
+        unformFlightEvent.begin();
         MultiBlockMainComponent mainBlockComponent = multiBlockMainBlockEntity.getComponent(MultiBlockMainComponent.class);
-        EntityRef multiBlockEntity = mainBlockComponent.getMultiBlockEntity();
+        LoadedMultiBlock multiBlock = loadedMultiBlocks.get(mainBlockComponent.getAabb());
+        EntityRef multiBlockEntity;
+        if (multiBlock != null) {
+            // Do not materialize a lazy entity just to notify about it being unformed
+            multiBlockEntity = multiBlock.hasMultiBlockEntity() ? multiBlock.getMultiBlockEntity() : EntityRef.NULL;
+        } else {
+            multiBlockEntity = mainBlockComponent.getMultiBlockEntity();
+        }
         multiBlockEntity.send(new BeforeMultiBlockUnformed(mainBlockComponent.getMultiBlockType()));
 
-        loadedMultiBlocks.remove(mainBlockComponent.getAabb());
+        if (multiBlock != null) {
+            loadedMultiBlocks.remove(mainBlockComponent.getAabb());
+            multiBlockIndex.remove(multiBlock);
+            removeBlockChangeSubscriptions(multiBlock);
+            multiBlock.markUnformed();
+        }
 
+        // The blocks are made visible with a single bulk world edit. Member components are left in place, they no
+        // longer match the formation id of any main block, so no component lifecycle events are sent for the members
+        Vector3i mainBlockPosition = multiBlockMainBlockEntity.getComponent(BlockComponent.class).getPosition(new Vector3i());
+        Collection<Vector3i> memberLocations = mainBlockComponent.getMultiBlockMembers();
+        boolean amortized = memberLocations.size() >= amortizedMinimumBlockCount;
         internallyMutating = true;
         try {
-            for (Vector3ic memberLocation : mainBlockComponent.getMultiBlockMembers()) {
-                setBlockVisibilityIfNeeded(memberLocation, true);
-                EntityRef memberEntity = blockEntityRegistry.getBlockEntityAt(memberLocation);
-                memberEntity.removeComponent(MultiBlockMemberComponent.class);
+            if (!amortized) {
+                setBlocksVisibilityIfNeeded(Iterables.concat(memberLocations, Collections.singleton(mainBlockPosition)), true);
             }
-            Vector3i mainBlockPosition = multiBlockMainBlockEntity.getComponent(BlockComponent.class).getPosition(new Vector3i());
-            setBlockVisibilityIfNeeded(mainBlockPosition, true);
             multiBlockMainBlockEntity.removeComponent(MultiBlockMainComponent.class);
         } finally {
             internallyMutating = false;
         }
 
         multiBlockEntity.destroy();
+
+        MultiBlockTransition transition = MultiBlockTransition.unforming(mainBlockComponent.getMultiBlockType(),
+                mainBlockComponent.getAabb(), mainBlockPosition, memberLocations);
+        if (amortized) {
+            startTransition(transition);
+        } else {
+            finishUnforming(transition);
+        }
+        unformFlightEvent.commitIfEnabled(mainBlockComponent.getMultiBlockType(),
+                MultiBlockFlightRecorder.getVolume(mainBlockComponent.getAabb()), memberLocations.size() + 1,
+                amortized ? "amortized" : "unformed");
+        metrics.recordTime("unform.time", mainBlockComponent.getMultiBlockType(), unformingStart);
+    }
+
+    private void finishUnforming(MultiBlockTransition transition) {
+        EntityRef mainBlockEntity = blockEntityRegistry.getBlockEntityAt(transition.getMainBlockLocation());
+        mainBlockEntity.send(new MultiBlockUnformed(transition.getType(), transition.getRegion(), transition.getMemberBlocks()));
     }
 
 
     private void createMultiBlock(MultiBlockDefinition definition) {
+        FlightEvent formFlightEvent = MultiBlockFlightRecorder.create(FlightEventType.FORM);
+        formFlightEvent.begin();
         Vector3i mainLocation = definition.getMainBlock();
-        String multiBlockType = definition.getMultiBlockType();
 
         Collection<Vector3i> memberLocations = definition.getMemberBlocks();
         BlockRegion region = memberLocations.stream().reduce(new BlockRegion(mainLocation), BlockRegion::union, BlockRegion::union);
 
-        EntityRef mainBlockEntity = blockEntityRegistry.getBlockEntityAt(mainLocation);
+        long formationId = createFormationId();
 
-        EntityRef multiBlockEntity = createMultiBlockEntity(mainBlockEntity, mainLocation, multiBlockType);
+        if (memberLocations.size() >= amortizedMinimumBlockCount) {
+            startTransition(MultiBlockTransition.forming(definition, region, formationId));
+            formFlightEvent.commitIfEnabled(definition.getMultiBlockType(), MultiBlockFlightRecorder.getVolume(region),
+                    memberLocations.size() + 1, "amortized");
+            return;
+        }
 
         internallyMutating = true;
         try {
             setBlockVisibilityIfNeeded(mainLocation, false);
 
-            mainBlockEntity.addComponent(
-                    new MultiBlockMainComponent(new LinkedList<>(memberLocations), region, multiBlockEntity, multiBlockType));
-
             for (Vector3i memberLocation : memberLocations) {
                 setBlockVisibilityIfNeeded(memberLocation, false);
-                blockEntityRegistry.getBlockEntityAt(memberLocation).addComponent(new MultiBlockMemberComponent(mainLocation));
+                // The block might still have a member component left from a previously unformed multi-block
+                blockEntityRegistry.getBlockEntityAt(memberLocation).addOrSaveComponent(new MultiBlockMemberComponent(mainLocation, formationId));
             }
         } finally {
             internallyMutating = false;
         }
 
-        loadedMultiBlocks.put(region, multiBlockEntity);
+        finishForming(definition, region, formationId);
+        formFlightEvent.commitIfEnabled(definition.getMultiBlockType(), MultiBlockFlightRecorder.getVolume(region),
+                memberLocations.size() + 1, "formed");
+    }
+
+    private void finishForming(MultiBlockDefinition definition, BlockRegion region, long formationId) {
+        Vector3i mainLocation = definition.getMainBlock();
+        String multiBlockType = definition.getMultiBlockType();
+        EntityRef mainBlockEntity = blockEntityRegistry.getBlockEntityAt(mainLocation);
+
+        boolean lazy = lazyEntityTypes.contains(multiBlockType);
+        EntityRef multiBlockEntity = lazy ? null : createMultiBlockEntity(mainBlockEntity, mainLocation, multiBlockType);
+
+        internallyMutating = true;
+        try {
+            mainBlockEntity.addComponent(new MultiBlockMainComponent(new LinkedList<>(definition.getMemberBlocks()), region,
+                    lazy ? EntityRef.NULL : multiBlockEntity, multiBlockType, formationId));
+        } finally {
+            internallyMutating = false;
+        }
+
+        LoadedMultiBlock multiBlock = new LoadedMultiBlock(this, multiBlockType, multiBlockEntity, mainBlockEntity, mainLocation,
+                region, mainBlockEntity.getComponent(MultiBlockMainComponent.class).getMultiBlockMembers());
+        loadedMultiBlocks.put(region, multiBlock);
+        multiBlockIndex.add(region, multiBlockType, multiBlock);
+        summarizeInteriorIfEnabled(multiBlock);
+
+        if (!lazy) {
+            multiBlockEntity.send(new MultiBlockFormed<>(multiBlockType, definition));
+        }
+    }
 
-        multiBlockEntity.send(new MultiBlockFormed<>(multiBlockType, definition));
+    private void startTransition(MultiBlockTransition transition) {
+        transitions.add(transition);
+        transitionIndex.add(transition.getRegion(), transition.getType(), transition);
+    }
+
+    /**
+     * Processes the blocks of the transition until the deadline passes, but always at least one block.
+     *
+     * @return <code>true</code> if all the blocks have been processed, and the transition has to be completed
+     */
+    private boolean advanceTransition(MultiBlockTransition transition, long deadline) {
+        boolean forming = transition.isForming();
+        List<Vector3i> processedBlocks = new ArrayList<>();
+        Map<Vector3ic, Block> blocksToSet = new HashMap<>();
+        while (transition.hasRemainingBlocks() && (processedBlocks.isEmpty()
+                || processedBlocks.size() % TRANSITION_TIME_CHECK_INTERVAL != 0 || System.nanoTime() < deadline)) {
+            Vector3i location = transition.nextBlock();
+            processedBlocks.add(location);
+            Block blockToUse = getBlockWithVisibility(location, !forming);
+            if (blockToUse != null) {
+                blocksToSet.put(location, blockToUse);
+            }
+        }
+
+        internallyMutating = true;
+        try {
+            if (!blocksToSet.isEmpty()) {
+                worldProvider.setBlocks(blocksToSet);
+            }
+            if (forming) {
+                Vector3i mainLocation = transition.getMainBlockLocation();
+                for (Vector3i location : processedBlocks) {
+                    if (!location.equals(mainLocation)) {
+                        blockEntityRegistry.getBlockEntityAt(location).addOrSaveComponent(
+                                new MultiBlockMemberComponent(mainLocation, transition.getFormationId()));
+                    }
+                }
+            }
+        } finally {
+            internallyMutating = false;
+        }
+
+        return !transition.hasRemainingBlocks();
+    }
+
+    /**
+     * The transition is removed before the events are sent, so that their handlers can start or finish other
+     * transitions, or this one again, without it being completed twice.
+     */
+    private void completeTransition(MultiBlockTransition transition) {
+        if (!transitionIndex.remove(transition)) {
+            return;
+        }
+        transitions.remove(transition);
+        if (transition.isForming()) {
+            finishForming(transition.getDefinition(), new BlockRegion(transition.getRegion()), transition.getFormationId());
+        } else {
+            finishUnforming(transition);
+        }
+    }
+
+    private void finishTransitionsIntersecting(BlockRegionc region) {
+        if (transitions.isEmpty()) {
+            return;
+        }
+        int count = transitionIndex.findIntersecting(region, null);
+        List<MultiBlockTransition> transitionsToFinish = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            transitionsToFinish.add(transitionIndex.getFound(i));
+        }
+        for (MultiBlockTransition transition : transitionsToFinish) {
+            // Might have been completed by the handlers of the events of the previous one
+            if (transitionIndex.contains(transition)) {
+                advanceTransition(transition, Long.MAX_VALUE);
+                completeTransition(transition);
+            }
+        }
+    }
+
+    private boolean isAnyTransitionInTheWay(MultiBlockDefinition definition) {
+        return !transitions.isEmpty() && isAnyTransitionInTheWay(getRegion(definition));
+    }
+
+    private boolean isAnyTransitionInTheWay(BlockRegionc region) {
+        return !transitions.isEmpty() && transitionIndex.findIntersecting(region, null) > 0;
+    }
+
+    private static BlockRegion getRegion(MultiBlockDefinition definition) {
+        return definition.getMemberBlocks().stream().reduce(new BlockRegion(definition.getMainBlock()), BlockRegion::union, BlockRegion::union);
+    }
+
+    private long createFormationId() {
+        long formationId;
+        do {
+            formationId = ThreadLocalRandom.current().nextLong();
+        } while (formationId == 0);
+        return formationId;
     }
 
     private void setBlockVisibilityIfNeeded(Vector3ic location, boolean visible) {
-        Block currentBlock = worldProvider.getBlock(location);
+        Block blockToUse = getBlockWithVisibility(location, visible);
+        if (blockToUse != null) {
+            worldProvider.setBlock(location, blockToUse);
+        }
+    }
+
+    private void setBlocksVisibilityIfNeeded(Iterable<? extends Vector3ic> locations, boolean visible) {
+        Map<Vector3ic, Block> blocksToSet = new HashMap<>();
+        for (Vector3ic location : locations) {
+            Block blockToUse = getBlockWithVisibility(location, visible);
+            if (blockToUse != null) {
+                blocksToSet.put(location, blockToUse);
+            }
+        }
+        if (!blocksToSet.isEmpty()) {
+            worldProvider.setBlocks(blocksToSet);
+        }
+    }
+
+    private Block getBlockWithVisibility(Vector3ic location, boolean visible) {
+        return getBlockWithVisibility(worldProvider.getBlock(location), visible);
+    }
+
+    private Block getBlockWithVisibility(Block currentBlock, boolean visible) {
         BlockFamily blockFamily = currentBlock.getBlockFamily();
         if (blockFamily instanceof VisibilityEnabledBlockFamily) {
-            Block blockToUse;
             VisibilityEnabledBlockFamily blockFamilyCast = (VisibilityEnabledBlockFamily) blockFamily;
             if (visible) {
-                blockToUse = blockFamilyCast.getVisibleBlock(currentBlock);
+                return blockFamilyCast.getVisibleBlock(currentBlock);
             } else {
-                blockToUse = blockFamilyCast.getInvisibleBlock(currentBlock);
+                return blockFamilyCast.getInvisibleBlock(currentBlock);
             }
-            worldProvider.setBlock(location, blockToUse);
         }
+        return null;
     }
 
-    private EntityRef createMultiBlockEntity(EntityRef mainBlockEntity, Vector3i mainLocation, String multiBlockType) {
+    EntityRef materializeMultiBlockEntity(LoadedMultiBlock multiBlock) {
+        EntityRef mainBlockEntity = multiBlock.getMainBlockEntity();
+        EntityRef multiBlockEntity = createMultiBlockEntity(mainBlockEntity, multiBlock.getMainBlockLocation(), multiBlock.getType());
+        MultiBlockMainComponent multiBlockMain = mainBlockEntity.getComponent(MultiBlockMainComponent.class);
+        if (multiBlockMain != null) {
+            multiBlockMain.setMultiBlockEntity(multiBlockEntity);
+        }
+        return multiBlockEntity;
+    }
+
+    private EntityRef createMultiBlockEntity(EntityRef mainBlockEntity, Vector3ic mainLocation, String multiBlockType) {
         LocationComponent locationComponent = new LocationComponent(new Vector3f(mainLocation));
         MultiBlockComponent multiBlockComponent = new MultiBlockComponent(multiBlockType, mainBlockEntity);
 
@@ -371,6 +1057,10 @@ public class MultiBlockServerSystem extends BaseComponentSystem implements Multi
         entityBuilder.setPersistent(false);
         entityBuilder.addComponent(locationComponent);
         entityBuilder.addComponent(multiBlockComponent);
+        Integer sharedMaxHealth = sharedHealthPools.get(multiBlockType);
+        if (sharedMaxHealth != null) {
+            entityBuilder.addComponent(new MultiBlockHealthComponent(sharedMaxHealth));
+        }
         return entityBuilder.build();
     }
 
@@ -400,10 +1090,8 @@ public class MultiBlockServerSystem extends BaseComponentSystem implements Multi
                     if (worldProvider.isBlockRelevant(mainLocation)) {
                         EntityRef mainBlockEntity = blockEntityRegistry.getBlockEntityAt(mainLocation);
                         multiBlockMain = mainBlockEntity.getComponent(MultiBlockMainComponent.class);
-                        if (multiBlockMain == null) {
-                            logger.error("Found MultiBlock member pointing at not existing main block.");
-                            return null;
-                        } else {
+                        // Otherwise it is a leftover of an already unformed multi-block
+                        if (multiBlockMember.isMemberOf(multiBlockMain)) {
                             result.add(mainBlockEntity);
                         }
                     } else {
@@ -415,4 +1103,47 @@ public class MultiBlockServerSystem extends BaseComponentSystem implements Multi
         }
         return result;
     }
+
+    private final class BlockChangeSubscription implements MultiBlockSubscription {
+        private final LoadedMultiBlock multiBlock;
+        private final MultiBlockBlockChangeListener listener;
+        private boolean active = true;
+
+        private BlockChangeSubscription(LoadedMultiBlock multiBlock, MultiBlockBlockChangeListener listener) {
+            this.multiBlock = multiBlock;
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+
+        @Override
+        public void cancel() {
+            if (active) {
+                active = false;
+                removeBlockChangeSubscription(this);
+            }
+        }
+    }
+
+    private static final class IndexSnapshot implements MultiBlockSnapshot {
+        private final SpatialRegionIndex.Snapshot<LoadedMultiBlock> indexSnapshot;
+
+        private IndexSnapshot(SpatialRegionIndex.Snapshot<LoadedMultiBlock> indexSnapshot) {
+            this.indexSnapshot = indexSnapshot;
+        }
+
+        @Override
+        public Structure getAt(int x, int y, int z, String type) {
+            LoadedMultiBlock multiBlock = indexSnapshot.getAt(x, y, z, type);
+            return multiBlock != null ? multiBlock.getStructure() : null;
+        }
+
+        @Override
+        public int size() {
+            return indexSnapshot.size();
+        }
+    }
 }
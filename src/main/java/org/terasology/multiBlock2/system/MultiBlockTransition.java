@@ -0,0 +1,84 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.system;
+
+import com.google.common.collect.Iterables;
+import org.joml.Vector3i;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.multiBlock2.MultiBlockDefinition;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * A multi-block that is being formed or unformed over several updates by {@link MultiBlockServerSystem}.
+ */
+class MultiBlockTransition {
+    private final boolean forming;
+    private final String type;
+    private final BlockRegion region;
+    private final Vector3i mainBlockLocation;
+    private final Collection<Vector3i> memberBlocks;
+    private final long formationId;
+    private final MultiBlockDefinition definition;
+    private final Iterator<Vector3i> remainingBlocks;
+
+    private MultiBlockTransition(boolean forming, String type, BlockRegionc region, Vector3i mainBlockLocation,
+                                 Collection<Vector3i> memberBlocks, long formationId, MultiBlockDefinition definition) {
+        this.forming = forming;
+        this.type = type;
+        this.region = new BlockRegion(region);
+        this.mainBlockLocation = mainBlockLocation;
+        this.memberBlocks = memberBlocks;
+        this.formationId = formationId;
+        this.definition = definition;
+        this.remainingBlocks = Iterables.concat(Collections.singleton(mainBlockLocation), memberBlocks).iterator();
+    }
+
+    static MultiBlockTransition forming(MultiBlockDefinition definition, BlockRegionc region, long formationId) {
+        return new MultiBlockTransition(true, definition.getMultiBlockType(), region, definition.getMainBlock(),
+                definition.getMemberBlocks(), formationId, definition);
+    }
+
+    static MultiBlockTransition unforming(String type, BlockRegionc region, Vector3i mainBlockLocation, Collection<Vector3i> memberBlocks) {
+        return new MultiBlockTransition(false, type, region, mainBlockLocation, memberBlocks, 0, null);
+    }
+
+    boolean isForming() {
+        return forming;
+    }
+
+    String getType() {
+        return type;
+    }
+
+    BlockRegionc getRegion() {
+        return region;
+    }
+
+    Vector3i getMainBlockLocation() {
+        return mainBlockLocation;
+    }
+
+    Collection<Vector3i> getMemberBlocks() {
+        return memberBlocks;
+    }
+
+    long getFormationId() {
+        return formationId;
+    }
+
+    MultiBlockDefinition getDefinition() {
+        return definition;
+    }
+
+    boolean hasRemainingBlocks() {
+        return remainingBlocks.hasNext();
+    }
+
+    Vector3i nextBlock() {
+        return remainingBlocks.next();
+    }
+}
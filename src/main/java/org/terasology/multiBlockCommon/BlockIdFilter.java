@@ -0,0 +1,230 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlockCommon;
+
+import com.google.common.base.Predicate;
+import org.joml.Vector3ic;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.registry.CoreRegistry;
+import org.terasology.engine.world.BlockEntityRegistry;
+import org.terasology.engine.world.WorldProvider;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockComponent;
+import org.terasology.engine.world.block.BlockManager;
+import org.terasology.engine.world.block.family.BlockFamily;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+
+/**
+ * Filter of blocks by their numeric ids, resolved from block URIs, block family URIs and block family categories.
+ * Testing a block is a single bit lookup. Filters can be combined with {@link #and(BlockIdFilter)},
+ * {@link #or(BlockIdFilter)} and {@link #not()}.
+ *
+ * Filters created with {@link #resolve(BlockManager, Collection, Collection, Collection)} are resolved right away
+ * with the given block manager. Filters created with the <code>of*</code> methods can be created before the blocks
+ * are registered, they are resolved with the block manager of the game when they are first used. As block families
+ * are registered on demand during the game, {@link BlockIdFilterSystem} resolves all the filters again once a new
+ * family shows up, so the blocks are never looked up while testing them.
+ *
+ * The filter is also a <code>Predicate&lt;EntityRef&gt;</code>, so it can be used in place of the entity filters in
+ * all the recipes. All the recipes test blocks through
+ * {@link #matchesAt(Predicate, Vector3ic, WorldProvider, BlockEntityRegistry)}, which looks at the block in the world
+ * instead of loading the block entity, as the block entity of every tested location would otherwise be created (and
+ * kept) just to read the block it belongs to.
+ */
+public class BlockIdFilter implements Predicate<EntityRef> {
+    private static final int BLOCK_ID_COUNT = 1 << 16;
+
+    // Filters resolved from the block manager, to resolve again when new families are registered
+    private static final Set<BlockIdFilter> RESOLVED_FILTERS = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private final Function<BlockManager, BitSet> resolver;
+    private final BlockManager boundBlockManager;
+    // null until an unbound filter is first used
+    private volatile BitSet blockIds;
+
+    public BlockIdFilter(BitSet blockIds) {
+        this.resolver = null;
+        this.boundBlockManager = null;
+        this.blockIds = blockIds;
+    }
+
+    private BlockIdFilter(Function<BlockManager, BitSet> resolver) {
+        this(null, resolver);
+    }
+
+    private BlockIdFilter(BlockManager boundBlockManager, Function<BlockManager, BitSet> resolver) {
+        this.resolver = resolver;
+        this.boundBlockManager = boundBlockManager;
+        if (boundBlockManager != null) {
+            resolveWith(boundBlockManager);
+        }
+    }
+
+    public static BlockIdFilter resolve(BlockManager blockManager, Collection<String> blockUris, Collection<String> familyUris,
+                                        Collection<String> categories) {
+        return new BlockIdFilter(blockManager, manager -> resolveBlockIds(manager, blockUris, familyUris, categories));
+    }
+
+    public static BlockIdFilter ofBlocks(String... blockUris) {
+        return new BlockIdFilter(blockManager -> resolveBlockIds(blockManager, Arrays.asList(blockUris),
+                Collections.emptyList(), Collections.emptyList()));
+    }
+
+    public static BlockIdFilter ofFamilies(String... familyUris) {
+        return new BlockIdFilter(blockManager -> resolveBlockIds(blockManager, Collections.emptyList(),
+                Arrays.asList(familyUris), Collections.emptyList()));
+    }
+
+    public static BlockIdFilter ofCategories(String... categories) {
+        return new BlockIdFilter(blockManager -> resolveBlockIds(blockManager, Collections.emptyList(),
+                Collections.emptyList(), Arrays.asList(categories)));
+    }
+
+    /**
+     * Resolves all the filters resolved with the block manager so far again, and the filters not bound to any block
+     * manager with this one. Called when new block families have been registered, or the block manager has changed.
+     */
+    public static void resolveAll(BlockManager blockManager) {
+        List<BlockIdFilter> filters;
+        synchronized (RESOLVED_FILTERS) {
+            filters = new ArrayList<>(RESOLVED_FILTERS);
+        }
+        for (BlockIdFilter filter : filters) {
+            if (filter.boundBlockManager == null || filter.boundBlockManager == blockManager) {
+                filter.resolveWith(blockManager);
+            }
+        }
+    }
+
+    /**
+     * Tests the block at the location with the filter. Block id filters are tested against the block in the world,
+     * if the world provider is given, other filters against the block entity.
+     */
+    public static boolean matchesAt(Predicate<EntityRef> filter, Vector3ic location, WorldProvider worldProvider,
+                                    BlockEntityRegistry blockEntityRegistry) {
+        if (worldProvider != null && filter instanceof BlockIdFilter) {
+            return ((BlockIdFilter) filter).matches(worldProvider.getBlock(location));
+        }
+        return filter.apply(blockEntityRegistry.getBlockEntityAt(location));
+    }
+
+    public BlockIdFilter and(BlockIdFilter other) {
+        return new BlockIdFilter(boundBlockManager, blockManager -> {
+            BitSet result = computeBlockIds(blockManager);
+            result.and(other.computeBlockIds(blockManager));
+            return result;
+        });
+    }
+
+    public BlockIdFilter or(BlockIdFilter other) {
+        return new BlockIdFilter(boundBlockManager, blockManager -> {
+            BitSet result = computeBlockIds(blockManager);
+            result.or(other.computeBlockIds(blockManager));
+            return result;
+        });
+    }
+
+    public BlockIdFilter not() {
+        return new BlockIdFilter(boundBlockManager, blockManager -> {
+            BitSet result = computeBlockIds(blockManager);
+            result.flip(0, BLOCK_ID_COUNT);
+            return result;
+        });
+    }
+
+    @Override
+    public boolean apply(EntityRef entity) {
+        BlockComponent component = entity.getComponent(BlockComponent.class);
+        return component != null && matches(component.getBlock());
+    }
+
+    public boolean matches(Block block) {
+        return block != null && matches(block.getId());
+    }
+
+    public boolean matches(short blockId) {
+        return getBlockIds().get(getIndex(blockId));
+    }
+
+    public boolean isEmpty() {
+        return getBlockIds().isEmpty();
+    }
+
+    private BitSet getBlockIds() {
+        BitSet result = blockIds;
+        if (result == null) {
+            result = resolveWith(CoreRegistry.get(BlockManager.class));
+        }
+        return result;
+    }
+
+    private BitSet resolveWith(BlockManager blockManager) {
+        BitSet result = resolver.apply(blockManager);
+        if (blockIds == null) {
+            synchronized (RESOLVED_FILTERS) {
+                RESOLVED_FILTERS.add(this);
+            }
+        }
+        blockIds = result;
+        return result;
+    }
+
+    /**
+     * @return new set of the ids matching the filter with the block manager, resolved from the sources of the filter
+     * rather than from the ids resolved last time, which might not be up to date yet
+     */
+    private BitSet computeBlockIds(BlockManager blockManager) {
+        if (resolver == null) {
+            return (BitSet) blockIds.clone();
+        }
+        return resolver.apply(blockManager);
+    }
+
+    private static BitSet resolveBlockIds(BlockManager blockManager, Collection<String> blockUris, Collection<String> familyUris,
+                                          Collection<String> categories) {
+        BitSet blockIds = new BitSet();
+        for (String blockUri : blockUris) {
+            Block block = blockManager.getBlock(blockUri);
+            if (block != null) {
+                blockIds.set(getIndex(block.getId()));
+            }
+        }
+        for (String familyUri : familyUris) {
+            BlockFamily family = blockManager.getBlockFamily(familyUri);
+            if (family != null) {
+                addFamily(blockIds, family);
+            }
+        }
+        if (!categories.isEmpty()) {
+            for (BlockFamily family : blockManager.listRegisteredBlockFamilies()) {
+                for (String category : categories) {
+                    if (family.hasCategory(category)) {
+                        addFamily(blockIds, family);
+                        break;
+                    }
+                }
+            }
+        }
+        return blockIds;
+    }
+
+    private static void addFamily(BitSet blockIds, BlockFamily family) {
+        for (Block block : family.getBlocks()) {
+            blockIds.set(getIndex(block.getId()));
+        }
+    }
+
+    private static int getIndex(short blockId) {
+        // Block ids are unsigned
+        return blockId & 0xFFFF;
+    }
+}
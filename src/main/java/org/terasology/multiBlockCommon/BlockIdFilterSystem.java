@@ -0,0 +1,37 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlockCommon;
+
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.world.block.BlockManager;
+
+/**
+ * Resolves the block id filters again when new block families have been registered. Families are only ever added, so
+ * a change of their count, checked once per update, tells that the filters might be missing some blocks.
+ */
+@RegisterSystem
+public class BlockIdFilterSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
+    @In
+    private BlockManager blockManager;
+
+    private int familyCount;
+
+    @Override
+    public void initialise() {
+        // The filters resolved in a previous game refer to the blocks of its block manager
+        familyCount = blockManager.getBlockFamilyCount();
+        BlockIdFilter.resolveAll(blockManager);
+    }
+
+    @Override
+    public void update(float delta) {
+        int currentFamilyCount = blockManager.getBlockFamilyCount();
+        if (currentFamilyCount != familyCount) {
+            familyCount = currentFamilyCount;
+            BlockIdFilter.resolveAll(blockManager);
+        }
+    }
+}
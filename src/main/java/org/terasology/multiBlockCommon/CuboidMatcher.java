@@ -0,0 +1,56 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlockCommon;
+
+/**
+ * Tests the blocks of a cuboid region, shared by all the recipes of cuboid multi-blocks with a shell. Each method
+ * stops at the first block that does not match.
+ */
+public final class CuboidMatcher {
+    private CuboidMatcher() {
+    }
+
+    /**
+     * Visits only the six faces of the region, the rows inside of it are crossed from minX straight to maxX.
+     */
+    public static boolean matchesShell(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, BlockTest test) {
+        for (int y = minY; y <= maxY; y++) {
+            boolean capLayer = y == minY || y == maxY;
+            for (int z = minZ; z <= maxZ; z++) {
+                boolean edgeRow = capLayer || z == minZ || z == maxZ;
+                int step = edgeRow ? 1 : Math.max(1, maxX - minX);
+                for (int x = minX; x <= maxX; x += step) {
+                    if (!test.matches(x, y, z)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Visits the blocks of the region that are not part of its shell.
+     */
+    public static boolean matchesInterior(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, BlockTest test) {
+        return matchesAll(minX + 1, minY + 1, minZ + 1, maxX - 1, maxY - 1, maxZ - 1, test);
+    }
+
+    public static boolean matchesAll(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, BlockTest test) {
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    if (!test.matches(x, y, z)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @FunctionalInterface
+    public interface BlockTest {
+        boolean matches(int x, int y, int z);
+    }
+}
@@ -0,0 +1,174 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlockCommon;
+
+import java.util.Arrays;
+
+/**
+ * Classification of the column of blocks above and below the activated block of a layered multi-block against all the
+ * layer filters. The column is scanned once per detection, and each candidate assignment of the activated block to a
+ * layer is then resolved from the cached profile, without visiting the blocks again.
+ *
+ * Layers are stacked from the bottom up in the order they were defined, each layer taking as many consecutive blocks
+ * matching its filter as there are, and then checked against its height limits. Holds the state of a single detection,
+ * so a new one is created for each.
+ */
+public final class LayerColumnProfile {
+    public static final int MAX_LAYER_COUNT = Long.SIZE;
+
+    private final int[] minHeights;
+    private final int[] maxHeights;
+    // No run of a layer longer than this can be accepted, so the scan never needs to go further in either direction
+    private final int scanLimit;
+
+    private int baseY;
+    private long baseMask;
+    // Masks of the layers matching each block above and below the base, closest first
+    private long[] masksUp = new long[16];
+    private long[] masksDown = new long[16];
+    private int countUp;
+    private int countDown;
+
+    private int assignedMinY;
+    private int assignedMaxY;
+
+    public LayerColumnProfile(int[] minHeights, int[] maxHeights) {
+        if (minHeights.length != maxHeights.length || minHeights.length > MAX_LAYER_COUNT) {
+            throw new IllegalArgumentException("Invalid layer heights, at most " + MAX_LAYER_COUNT + " layers are supported");
+        }
+        this.minHeights = minHeights.clone();
+        this.maxHeights = maxHeights.clone();
+        long totalHeight = 0;
+        for (int maxHeight : maxHeights) {
+            totalHeight += maxHeight;
+        }
+        this.scanLimit = (int) Math.min(Integer.MAX_VALUE - 1, totalHeight) + 1;
+    }
+
+    public int getLayerCount() {
+        return minHeights.length;
+    }
+
+    /**
+     * Classifies the block at the location and the column above and below it, up to the first block matching none of
+     * the layers.
+     *
+     * @return mask of the layers matching the block at the location
+     */
+    public long scan(int x, int y, int z, LayerMatcher matcher) {
+        baseY = y;
+        baseMask = classify(matcher, x, y, z);
+        countUp = 0;
+        countDown = 0;
+        if (baseMask == 0) {
+            return 0;
+        }
+        while (countUp < scanLimit) {
+            long mask = classify(matcher, x, y + countUp + 1, z);
+            if (mask == 0) {
+                break;
+            }
+            masksUp = append(masksUp, countUp++, mask);
+        }
+        while (countDown < scanLimit) {
+            long mask = classify(matcher, x, y - countDown - 1, z);
+            if (mask == 0) {
+                break;
+            }
+            masksDown = append(masksDown, countDown++, mask);
+        }
+        return baseMask;
+    }
+
+    /**
+     * Assigns the scanned block to the layer, and the blocks above and below it to the other layers.
+     *
+     * @param layerHeights filled with the height of each layer, if the assignment is valid
+     * @return <code>true</code> if all the layers fit within their height limits
+     */
+    public boolean assignLayers(int baseLayer, int[] layerHeights) {
+        long baseBit = 1L << baseLayer;
+        if ((baseMask & baseBit) == 0) {
+            return false;
+        }
+        int usedUp = countRun(masksUp, countUp, 0, baseBit);
+        int usedDown = countRun(masksDown, countDown, 0, baseBit);
+        int baseHeight = usedUp + usedDown + 1;
+        if (!isHeightAccepted(baseLayer, baseHeight)) {
+            return false;
+        }
+        Arrays.fill(layerHeights, 0);
+        layerHeights[baseLayer] = baseHeight;
+
+        for (int layer = baseLayer + 1; layer < minHeights.length; layer++) {
+            int height = countRun(masksUp, countUp, usedUp, 1L << layer);
+            if (!isHeightAccepted(layer, height)) {
+                return false;
+            }
+            layerHeights[layer] = height;
+            usedUp += height;
+        }
+        for (int layer = baseLayer - 1; layer >= 0; layer--) {
+            int height = countRun(masksDown, countDown, usedDown, 1L << layer);
+            if (!isHeightAccepted(layer, height)) {
+                return false;
+            }
+            layerHeights[layer] = height;
+            usedDown += height;
+        }
+
+        assignedMinY = baseY - usedDown;
+        assignedMaxY = baseY + usedUp;
+        return true;
+    }
+
+    /**
+     * @return lowest y of the multi-block of the last valid assignment
+     */
+    public int getAssignedMinY() {
+        return assignedMinY;
+    }
+
+    /**
+     * @return highest y of the multi-block of the last valid assignment
+     */
+    public int getAssignedMaxY() {
+        return assignedMaxY;
+    }
+
+    private boolean isHeightAccepted(int layer, int height) {
+        return height >= minHeights[layer] && height <= maxHeights[layer];
+    }
+
+    private long classify(LayerMatcher matcher, int x, int y, int z) {
+        long mask = 0;
+        for (int layer = 0; layer < minHeights.length; layer++) {
+            if (matcher.matches(layer, x, y, z)) {
+                mask |= 1L << layer;
+            }
+        }
+        return mask;
+    }
+
+    private static int countRun(long[] masks, int count, int from, long layerBit) {
+        int run = 0;
+        while (from + run < count && (masks[from + run] & layerBit) != 0) {
+            run++;
+        }
+        return run;
+    }
+
+    private static long[] append(long[] masks, int index, long mask) {
+        long[] result = index < masks.length ? masks : Arrays.copyOf(masks, masks.length * 2);
+        result[index] = mask;
+        return result;
+    }
+
+    /**
+     * Tests a block against the filter of a layer.
+     */
+    @FunctionalInterface
+    public interface LayerMatcher {
+        boolean matches(int layer, int x, int y, int z);
+    }
+}
@@ -0,0 +1,134 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.logic.common.ActivateEvent;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.multiBlock.recipe.MultiBlockFormItemRecipe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MultiBlockFormRecipeRegistryImplTest {
+    private MultiBlockFormRecipeRegistryImpl registry;
+
+    @BeforeEach
+    public void setup() {
+        registry = new MultiBlockFormRecipeRegistryImpl();
+    }
+
+    @Test
+    public void higherPrioritiesComeFirst() {
+        TestRecipe low = new TestRecipe();
+        TestRecipe high = new TestRecipe();
+        TestRecipe defaultPriority = new TestRecipe();
+        TestRecipe negative = new TestRecipe();
+
+        registry.addMultiBlockFormItemRecipe(low, 1);
+        registry.addMultiBlockFormItemRecipe(negative, -5);
+        registry.addMultiBlockFormItemRecipe(defaultPriority);
+        registry.addMultiBlockFormItemRecipe(high, 10);
+
+        assertEquals(Arrays.asList(high, low, defaultPriority, negative),
+                new ArrayList<>(registry.getMultiBlockFormItemRecipes()));
+    }
+
+    @Test
+    public void equalPrioritiesKeepRegistrationOrder() {
+        TestRecipe first = new TestRecipe();
+        TestRecipe second = new TestRecipe();
+        TestRecipe third = new TestRecipe();
+        TestRecipe higher = new TestRecipe();
+
+        registry.addMultiBlockFormItemRecipe(first, 3);
+        registry.addMultiBlockFormItemRecipe(second, 3);
+        registry.addMultiBlockFormItemRecipe(higher, 4);
+        registry.addMultiBlockFormItemRecipe(third, 3);
+
+        assertEquals(Arrays.asList(higher, first, second, third),
+                new ArrayList<>(registry.getMultiBlockFormItemRecipes()));
+    }
+
+    @Test
+    public void recipeIsRegisteredOnlyOnce() {
+        TestRecipe recipe = new TestRecipe();
+        TestRecipe other = new TestRecipe();
+
+        registry.addMultiBlockFormItemRecipe(recipe, 0);
+        registry.addMultiBlockFormItemRecipe(other, 1);
+        // The second registration is ignored, along with its priority
+        registry.addMultiBlockFormItemRecipe(recipe, 2);
+
+        assertEquals(Arrays.asList(other, recipe), new ArrayList<>(registry.getMultiBlockFormItemRecipes()));
+    }
+
+    @Test
+    public void itemWithoutPrefabGetsOnlyRecipesAcceptingAnyItem() {
+        TestRecipe anyItem = new TestRecipe();
+        TestRecipe wrenchOnly = new TestRecipe(new ResourceUrn("Test:wrench"));
+        TestRecipe anyItemFirst = new TestRecipe();
+
+        registry.addMultiBlockFormItemRecipe(anyItem);
+        registry.addMultiBlockFormItemRecipe(wrenchOnly, 5);
+        registry.addMultiBlockFormItemRecipe(anyItemFirst, 5);
+
+        assertEquals(Arrays.asList(anyItemFirst, anyItem), registry.getMultiBlockFormItemRecipes(EntityRef.NULL));
+    }
+
+    @Test
+    public void addingRecipeUpdatesLookedUpRecipes() {
+        TestRecipe existing = new TestRecipe();
+        TestRecipe added = new TestRecipe();
+        registry.addMultiBlockFormItemRecipe(existing);
+        List<MultiBlockFormItemRecipe> before = registry.getMultiBlockFormItemRecipes(EntityRef.NULL);
+
+        assertSame(before, registry.getMultiBlockFormItemRecipes(EntityRef.NULL));
+
+        registry.addMultiBlockFormItemRecipe(added, 1);
+
+        assertEquals(Collections.singletonList(existing), before);
+        assertEquals(Arrays.asList(added, existing), registry.getMultiBlockFormItemRecipes(EntityRef.NULL));
+    }
+
+    @Test
+    public void recipesCannotBeModifiedThroughLookups() {
+        registry.addMultiBlockFormItemRecipe(new TestRecipe());
+
+        assertThrows(UnsupportedOperationException.class, () -> registry.getMultiBlockFormItemRecipes().clear());
+        assertThrows(UnsupportedOperationException.class,
+                () -> registry.getMultiBlockFormItemRecipes(EntityRef.NULL).add(new TestRecipe()));
+    }
+
+    private static final class TestRecipe implements MultiBlockFormItemRecipe {
+        private final Collection<ResourceUrn> activatorPrefabs;
+
+        private TestRecipe(ResourceUrn... activatorPrefabs) {
+            this.activatorPrefabs = Arrays.asList(activatorPrefabs);
+        }
+
+        @Override
+        public boolean isActivator(EntityRef item) {
+            return true;
+        }
+
+        @Override
+        public Collection<ResourceUrn> getActivatorPrefabs() {
+            return activatorPrefabs;
+        }
+
+        @Override
+        public boolean processActivation(ActivateEvent event) {
+            return false;
+        }
+    }
+}
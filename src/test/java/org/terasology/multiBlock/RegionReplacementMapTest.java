@@ -0,0 +1,147 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock;
+
+import org.joml.Vector3i;
+import org.junit.jupiter.api.Test;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.block.BlockUri;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RegionReplacementMapTest {
+    private static final BlockRegion REGION = new BlockRegion(-1, 4, 10).union(1, 6, 11);
+
+    private final Block stone = createBlock("Test:stone");
+    private final Block glass = createBlock("Test:glass");
+
+    @Test
+    public void uniformReplacementMatchesFullMap() {
+        Map<Vector3i, Block> expected = new HashMap<>();
+        for (Vector3i location : getLocations()) {
+            expected.put(location, stone);
+        }
+
+        Map<Vector3i, Block> map = BlockReplacement.uniform(stone).asMap(REGION);
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map);
+        assertEquals(expected, new HashMap<>(map));
+    }
+
+    @Test
+    public void skipsLocationsLeftAsTheyAre() {
+        // The middle layer is kept, and so is the layer above the last one
+        Map<Vector3i, Block> map = BlockReplacement.layered(REGION.minY(), new int[]{1, 1}, new Block[]{stone, null})
+                .asMap(REGION);
+
+        assertEquals(REGION.getSizeX() * REGION.getSizeZ(), map.size());
+        for (Map.Entry<Vector3i, Block> entry : map.entrySet()) {
+            assertEquals(REGION.minY(), entry.getKey().y);
+            assertSame(stone, entry.getValue());
+        }
+        assertSame(stone, map.get(new Vector3i(0, 4, 10)));
+        assertNull(map.get(new Vector3i(0, 5, 10)));
+        assertFalse(map.containsKey(new Vector3i(0, 6, 10)));
+    }
+
+    @Test
+    public void getIgnoresLocationsOutsideOfRegion() {
+        Map<Vector3i, Block> map = BlockReplacement.uniform(stone).asMap(REGION);
+
+        assertTrue(map.containsKey(new Vector3i(1, 6, 11)));
+        assertNull(map.get(new Vector3i(2, 6, 11)));
+        assertNull(map.get(new Vector3i(-1, 3, 10)));
+        assertFalse(map.containsKey(new Vector3i(0, 5, 12)));
+        assertNull(map.get("0, 5, 10"));
+    }
+
+    @Test
+    public void iteratesByLayerWithNewKeys() {
+        Map<Vector3i, Block> map = ((BlockReplacement) (x, y, z) -> y == 5 ? glass : stone).asMap(REGION);
+
+        List<Vector3i> keys = new ArrayList<>();
+        for (Map.Entry<Vector3i, Block> entry : map.entrySet()) {
+            assertSame(entry.getKey().y == 5 ? glass : stone, entry.getValue());
+            keys.add(entry.getKey());
+        }
+        List<Vector3i> secondKeys = new ArrayList<>(map.keySet());
+
+        assertEquals(getLocations(), keys);
+        assertEquals(keys, secondKeys);
+        assertNotSame(keys.get(0), secondKeys.get(0));
+    }
+
+    @Test
+    public void iteratorEndsWithNoSuchElement() {
+        Map<Vector3i, Block> map = ((BlockReplacement) (x, y, z) -> x == 0 && y == 4 && z == 10 ? glass : null)
+                .asMap(REGION);
+        Iterator<Map.Entry<Vector3i, Block>> iterator = map.entrySet().iterator();
+
+        assertTrue(iterator.hasNext());
+        assertEquals(new Vector3i(0, 4, 10), iterator.next().getKey());
+        assertFalse(iterator.hasNext());
+        assertThrows(NoSuchElementException.class, iterator::next);
+    }
+
+    @Test
+    public void emptyReplacementGivesEmptyMap() {
+        Map<Vector3i, Block> map = ((BlockReplacement) (x, y, z) -> null).asMap(REGION);
+
+        assertTrue(map.isEmpty());
+        assertFalse(map.entrySet().iterator().hasNext());
+    }
+
+    @Test
+    public void listedReplacementKeepsItsMap() {
+        Map<Vector3i, Block> blocks = new HashMap<>();
+        blocks.put(new Vector3i(0, 5, 10), glass);
+
+        BlockReplacement replacement = BlockReplacement.of(blocks);
+
+        assertSame(blocks, replacement.asMap(REGION));
+        assertSame(glass, replacement.getBlock(0, 5, 10));
+        assertNull(replacement.getBlock(0, 4, 10));
+    }
+
+    @Test
+    public void layeredRejectsLayersWithoutBlock() {
+        assertThrows(IllegalArgumentException.class,
+                () -> BlockReplacement.layered(0, new int[]{1, 2}, new Block[]{stone}));
+    }
+
+    private static Block createBlock(String uri) {
+        Block block = new Block();
+        block.setUri(new BlockUri(uri));
+        return block;
+    }
+
+    /**
+     * @return all the locations of the region, in the order the map iterates them
+     */
+    private static List<Vector3i> getLocations() {
+        List<Vector3i> locations = new ArrayList<>();
+        for (int y = REGION.minY(); y <= REGION.maxY(); y++) {
+            for (int z = REGION.minZ(); z <= REGION.maxZ(); z++) {
+                for (int x = REGION.minX(); x <= REGION.maxX(); x++) {
+                    locations.add(new Vector3i(x, y, z));
+                }
+            }
+        }
+        return locations;
+    }
+}
@@ -0,0 +1,109 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.index;
+
+import org.joml.Vector3i;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PersistentCellMapTest {
+    private static final int VERSION_COUNT = 50;
+    private static final int CHANGES_PER_VERSION = 40;
+    private static final int CELL_RANGE = 20;
+
+    @Test
+    public void emptyMapHasNoCells() {
+        PersistentCellMap<String> map = PersistentCellMap.empty();
+
+        assertEquals(0, map.size());
+        assertNull(map.get(0, 0, 0));
+    }
+
+    @Test
+    public void putAndRemoveCells() {
+        PersistentCellMap.Builder<String> builder = PersistentCellMap.<String>empty().toBuilder();
+        builder.put(1, 2, 3, "a");
+        builder.put(-1, -2, -3, "b");
+        builder.put(1, 2, 3, "c");
+        builder.put(-1, -2, -3, null);
+        builder.put(5, 5, 5, null);
+        PersistentCellMap<String> map = builder.build();
+
+        assertEquals(1, map.size());
+        assertEquals("c", map.get(1, 2, 3));
+        assertNull(map.get(-1, -2, -3));
+        assertNull(map.get(5, 5, 5));
+    }
+
+    @Test
+    public void removingAllCellsGivesEmptyMap() {
+        PersistentCellMap.Builder<String> builder = PersistentCellMap.<String>empty().toBuilder();
+        builder.put(1, 2, 3, "a");
+        PersistentCellMap<String> map = builder.build();
+
+        PersistentCellMap.Builder<String> removal = map.toBuilder();
+        removal.put(1, 2, 3, null);
+
+        assertSame(PersistentCellMap.empty(), removal.build());
+        assertEquals("a", map.get(1, 2, 3));
+    }
+
+    @Test
+    public void builderCannotBeUsedAfterBuilding() {
+        PersistentCellMap.Builder<String> builder = PersistentCellMap.<String>empty().toBuilder();
+        builder.build();
+
+        assertThrows(IllegalStateException.class, () -> builder.put(0, 0, 0, "a"));
+    }
+
+    @Test
+    public void versionsMatchReferenceMapsAndNeverChange() {
+        Random random = new Random(42);
+        Map<Vector3i, String> reference = new HashMap<>();
+        List<PersistentCellMap<String>> versions = new ArrayList<>();
+        List<Map<Vector3i, String>> references = new ArrayList<>();
+        PersistentCellMap<String> map = PersistentCellMap.empty();
+        for (int version = 0; version < VERSION_COUNT; version++) {
+            PersistentCellMap.Builder<String> builder = map.toBuilder();
+            for (int i = 0; i < CHANGES_PER_VERSION; i++) {
+                Vector3i cell = new Vector3i(random.nextInt(CELL_RANGE) - CELL_RANGE / 2,
+                        random.nextInt(CELL_RANGE) - CELL_RANGE / 2, random.nextInt(CELL_RANGE) - CELL_RANGE / 2);
+                String value = random.nextInt(4) == 0 ? null : version + ":" + i;
+                builder.put(cell.x, cell.y, cell.z, value);
+                if (value != null) {
+                    reference.put(cell, value);
+                } else {
+                    reference.remove(cell);
+                }
+            }
+            map = builder.build();
+            versions.add(map);
+            references.add(new HashMap<>(reference));
+        }
+
+        for (int version = 0; version < VERSION_COUNT; version++) {
+            assertMatches(references.get(version), versions.get(version));
+        }
+    }
+
+    private static void assertMatches(Map<Vector3i, String> expected, PersistentCellMap<String> map) {
+        assertEquals(expected.size(), map.size());
+        for (int x = -CELL_RANGE / 2; x < CELL_RANGE / 2; x++) {
+            for (int y = -CELL_RANGE / 2; y < CELL_RANGE / 2; y++) {
+                for (int z = -CELL_RANGE / 2; z < CELL_RANGE / 2; z++) {
+                    assertEquals(expected.get(new Vector3i(x, y, z)), map.get(x, y, z));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.index;
+
+import org.joml.Vector3i;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.chunks.Chunks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpatialRegionIndexTest {
+    private static final String TYPE = "Test:type";
+    private static final String OTHER_TYPE = "Test:other";
+    // More cells than the first few rings around the origin hold, so that nearest queries walk the rings
+    private static final int DISTANT_VALUE_COUNT = 300;
+
+    private SpatialRegionIndex<String> index;
+
+    @BeforeEach
+    public void setup() {
+        index = new SpatialRegionIndex<>(null);
+    }
+
+    @Test
+    public void getAtFindsValueInEveryCellOfItsRegion() {
+        BlockRegion region = new BlockRegion(Chunks.SIZE_X - 2, 0, -2).union(Chunks.SIZE_X + 2, 2, 2);
+        index.add(region, TYPE, "a");
+
+        for (int x = region.minX(); x <= region.maxX(); x++) {
+            assertEquals("a", index.getAt(x, 0, -2, TYPE));
+            assertEquals("a", index.getAt(x, 2, 2, null));
+        }
+        assertNull(index.getAt(region.minX() - 1, 0, 0, TYPE));
+        assertNull(index.getAt(region.maxX() + 1, 0, 0, TYPE));
+        assertNull(index.getAt(0, 0, 0, OTHER_TYPE));
+    }
+
+    @Test
+    public void removeClearsValueFromAllItsCells() {
+        index.add(new BlockRegion(-1, -1, -1).union(1, 1, 1), TYPE, "a");
+
+        assertTrue(index.remove("a"));
+
+        assertFalse(index.contains("a"));
+        assertEquals(0, index.size());
+        assertNull(index.getAt(-1, -1, -1, null));
+        assertNull(index.getAt(1, 1, 1, null));
+        assertFalse(index.remove("a"));
+    }
+
+    @Test
+    public void findIntersectingReturnsValueSpanningManyCellsOnce() {
+        index.add(new BlockRegion(0, 0, 0).union(3 * Chunks.SIZE_X, 0, 0), TYPE, "long");
+        index.add(new BlockRegion(10, 0, 0), TYPE, "near");
+        index.add(new BlockRegion(10, 0, 0), OTHER_TYPE, "other");
+
+        int count = index.findIntersecting(new BlockRegion(0, 0, 0).union(3 * Chunks.SIZE_X, 0, 0), TYPE);
+
+        assertEquals(Arrays.asList("long", "near"), getFound(count));
+    }
+
+    @Test
+    public void findWithinRadiusReturnsValuesClosestFirst() {
+        index.add(new BlockRegion(20, 0, 0), TYPE, "far");
+        index.add(new BlockRegion(-5, 0, 0), TYPE, "near");
+        index.add(new BlockRegion(0, 0, 10), TYPE, "middle");
+        index.add(new BlockRegion(0, 0, 21), TYPE, "outside");
+
+        int count = index.findWithinRadius(new Vector3i(), 20, TYPE);
+
+        assertEquals(Arrays.asList("near", "middle", "far"), getFound(count));
+    }
+
+    @Test
+    public void findNearestPrefersCloserValueInNeighbouringCell() {
+        addDistantValues();
+        // At the edge of the cell, so the value across the cell boundary is closer than the one in the same cell
+        Vector3i location = new Vector3i(Chunks.SIZE_X - 1, 0, 0);
+        index.add(new BlockRegion(0, 0, 0), TYPE, "sameCell");
+        index.add(new BlockRegion(Chunks.SIZE_X + 1, 0, 0), TYPE, "neighbouringCell");
+
+        int count = index.findNearest(location, 1, -1, TYPE);
+
+        assertEquals(Arrays.asList("neighbouringCell"), getFound(count));
+    }
+
+    @Test
+    public void findNearestReturnsRequestedNumberOfValuesClosestFirst() {
+        addDistantValues();
+        index.add(new BlockRegion(2 * Chunks.SIZE_X, 0, 0), TYPE, "secondRing");
+        index.add(new BlockRegion(0, 0, -Chunks.SIZE_Z), TYPE, "firstRing");
+        index.add(new BlockRegion(1, 0, 0), TYPE, "sameCell");
+
+        int count = index.findNearest(new Vector3i(), 2, -1, TYPE);
+
+        assertEquals(Arrays.asList("sameCell", "firstRing"), getFound(count));
+    }
+
+    @Test
+    public void findNearestFindsValueBeyondEmptyRings() {
+        index.add(new BlockRegion(10 * Chunks.SIZE_X, 0, 0), TYPE, "distant");
+
+        int count = index.findNearest(new Vector3i(), 1, -1, TYPE);
+
+        assertEquals(Arrays.asList("distant"), getFound(count));
+    }
+
+    @Test
+    public void findNearestIgnoresValuesBeyondMaxRadius() {
+        addDistantValues();
+        index.add(new BlockRegion(3 * Chunks.SIZE_X, 0, 0), TYPE, "outside");
+        index.add(new BlockRegion(0, 0, 8), TYPE, "inside");
+
+        int count = index.findNearest(new Vector3i(), 5, 2 * Chunks.SIZE_X, TYPE);
+
+        assertEquals(Arrays.asList("inside"), getFound(count));
+    }
+
+    @Test
+    public void findNearestFiltersByType() {
+        addDistantValues();
+        index.add(new BlockRegion(1, 0, 0), OTHER_TYPE, "other");
+        index.add(new BlockRegion(Chunks.SIZE_X, 0, 0), TYPE, "typed");
+
+        int count = index.findNearest(new Vector3i(), 1, -1, TYPE);
+
+        assertEquals(Arrays.asList("typed"), getFound(count));
+    }
+
+    @Test
+    public void getAllAtMatchesPointLookups() {
+        // Cells this far apart share the truncated cell key of the batch sort, and have to be told apart anyway
+        int aliasedX = Chunks.SIZE_X << 14;
+        index.add(new BlockRegion(-3, -3, -3).union(3, 3, 3), TYPE, "origin");
+        index.add(new BlockRegion(aliasedX - 3, -3, -3).union(aliasedX + 3, 3, 3), TYPE, "aliased");
+        index.add(new BlockRegion(-Chunks.SIZE_X, 0, 0), OTHER_TYPE, "other");
+        List<Vector3i> locations = new ArrayList<>();
+        for (int i = -4; i <= 4; i++) {
+            locations.add(new Vector3i(i, i, -i));
+            locations.add(new Vector3i(aliasedX + i, -i, i));
+            locations.add(new Vector3i(-Chunks.SIZE_X, 0, i));
+        }
+        int[] packed = new int[3 * locations.size()];
+        for (int i = 0; i < locations.size(); i++) {
+            packed[3 * i] = locations.get(i).x;
+            packed[3 * i + 1] = locations.get(i).y;
+            packed[3 * i + 2] = locations.get(i).z;
+        }
+
+        for (String type : Arrays.asList(TYPE, null)) {
+            String[] result = new String[locations.size()];
+            index.getAllAt(packed, locations.size(), type, result);
+            for (int i = 0; i < locations.size(); i++) {
+                assertEquals(index.getAt(locations.get(i), type), result[i], "Location " + locations.get(i));
+            }
+            assertEquals("origin", result[3 * 4]);
+            assertEquals("aliased", result[3 * 4 + 1]);
+            assertEquals(type == null ? "other" : null, result[3 * 4 + 2]);
+        }
+    }
+
+    @Test
+    public void getAllAtRejectsTooManyLocations() {
+        assertThrows(IllegalArgumentException.class,
+                () -> index.getAllAt(new int[0], SpatialRegionIndex.MAX_BATCH_SIZE + 1, null, new String[0]));
+    }
+
+    @Test
+    public void snapshotKeepsStateAtTheTimeItWasTaken() {
+        index.add(new BlockRegion(0, 0, 0), TYPE, "kept");
+        index.add(new BlockRegion(Chunks.SIZE_X, 0, 0), TYPE, "removed");
+        SpatialRegionIndex.Snapshot<String> first = index.snapshot(null);
+
+        index.remove("removed");
+        index.add(new BlockRegion(-Chunks.SIZE_X, 0, 0), TYPE, "added");
+        SpatialRegionIndex.Snapshot<String> second = index.snapshot(null);
+
+        assertEquals(2, first.size());
+        assertEquals("kept", first.getAt(0, 0, 0, TYPE));
+        assertEquals("removed", first.getAt(Chunks.SIZE_X, 0, 0, TYPE));
+        assertNull(first.getAt(-Chunks.SIZE_X, 0, 0, TYPE));
+        assertEquals(2, second.size());
+        assertEquals("kept", second.getAt(0, 0, 0, TYPE));
+        assertNull(second.getAt(Chunks.SIZE_X, 0, 0, TYPE));
+        assertEquals("added", second.getAt(-Chunks.SIZE_X, 0, 0, null));
+    }
+
+    @Test
+    public void snapshotIsReusedUntilIndexChanges() {
+        SpatialRegionIndex.MembershipTest<String> membershipTest = (value, x, y, z) -> true;
+        index.add(new BlockRegion(0, 0, 0), TYPE, "a");
+        SpatialRegionIndex.Snapshot<String> first = index.snapshot(membershipTest);
+
+        assertSame(first, index.snapshot(membershipTest));
+        index.add(new BlockRegion(1, 0, 0), TYPE, "b");
+        assertNotSame(first, index.snapshot(membershipTest));
+    }
+
+    @Test
+    public void snapshotUsesItsMembershipTest() {
+        index.add(new BlockRegion(0, 0, 0).union(1, 0, 0), TYPE, "a");
+        index.snapshot((value, x, y, z) -> true);
+
+        SpatialRegionIndex.Snapshot<String> snapshot = index.snapshot((value, x, y, z) -> x == 0);
+
+        assertEquals("a", snapshot.getAt(0, 0, 0, TYPE));
+        assertNull(snapshot.getAt(1, 0, 0, TYPE));
+    }
+
+    @Test
+    public void snapshotMatchesIndexAfterManyChanges() {
+        for (int i = 0; i < DISTANT_VALUE_COUNT; i++) {
+            index.add(new BlockRegion(i * Chunks.SIZE_X, 0, -i * Chunks.SIZE_Z), TYPE, "value" + i);
+        }
+        index.snapshot(null);
+        for (int i = 0; i < DISTANT_VALUE_COUNT; i += 3) {
+            index.remove("value" + i);
+        }
+        SpatialRegionIndex.Snapshot<String> snapshot = index.snapshot(null);
+
+        assertEquals(index.size(), snapshot.size());
+        for (int i = 0; i < DISTANT_VALUE_COUNT; i++) {
+            assertEquals(index.getAt(i * Chunks.SIZE_X, 0, -i * Chunks.SIZE_Z, TYPE),
+                    snapshot.getAt(i * Chunks.SIZE_X, 0, -i * Chunks.SIZE_Z, TYPE));
+        }
+    }
+
+    private void addDistantValues() {
+        for (int i = 0; i < DISTANT_VALUE_COUNT; i++) {
+            index.add(new BlockRegion((100 + i) * Chunks.SIZE_X, 0, 0), OTHER_TYPE, "distant" + i);
+        }
+    }
+
+    private List<String> getFound(int count) {
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(index.getFound(i));
+        }
+        return result;
+    }
+}
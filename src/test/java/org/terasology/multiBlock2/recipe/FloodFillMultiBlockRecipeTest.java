@@ -0,0 +1,148 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.recipe;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import org.joml.Vector3i;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.multiBlock2.DefaultMultiBlockDefinition;
+import org.terasology.multiBlock2.testUtil.InMemoryWorld;
+import org.terasology.multiBlockCommon.BlockIdFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FloodFillMultiBlockRecipeTest {
+    private static final String TYPE = "Test:pipeline";
+
+    private InMemoryWorld world;
+    private Block pipe;
+    private Block stone;
+    private BlockIdFilter pipeFilter;
+
+    @BeforeEach
+    public void setup() {
+        world = new InMemoryWorld(new Vector3i(), 32, 16, 32);
+        pipe = world.createBlockType("Test:pipe");
+        stone = world.createBlockType("Test:stone");
+        BitSet pipeIds = new BitSet();
+        pipeIds.set(pipe.getId());
+        pipeFilter = new BlockIdFilter(pipeIds);
+    }
+
+    @Test
+    public void detectsConnectedBlocksWithLowestMainBlock() {
+        FloodFillMultiBlockRecipe recipe = createRecipe(Predicates.alwaysTrue(), 10, new Vector3i(5, 5, 5));
+        world.setBlock(10, 5, 10, pipe);
+        world.setBlock(10, 4, 10, pipe);
+        world.setBlock(11, 4, 10, pipe);
+        world.setBlock(11, 4, 11, pipe);
+        world.setBlock(11, 3, 11, pipe);
+        // Touches the structure only by an edge, and next to it is a block not matching the filter
+        world.setBlock(12, 5, 11, pipe);
+        world.setBlock(12, 4, 11, stone);
+
+        DefaultMultiBlockDefinition definition = recipe.detectFormingMultiBlock(new Vector3i(10, 5, 10));
+
+        assertNotNull(definition);
+        assertEquals(TYPE, definition.getMultiBlockType());
+        assertEquals(new Vector3i(11, 3, 11), definition.getMainBlock());
+        assertEquals(Arrays.asList(new Vector3i(10, 4, 10), new Vector3i(11, 4, 10), new Vector3i(11, 4, 11),
+                new Vector3i(10, 5, 10)), new ArrayList<>(definition.getMemberBlocks()));
+    }
+
+    @Test
+    public void mainBlockDoesNotDependOnPlacedBlock() {
+        FloodFillMultiBlockRecipe recipe = createRecipe(Predicates.alwaysTrue(), 10, new Vector3i(5, 5, 5));
+        world.fill(new BlockRegion(10, 5, 10).union(13, 5, 10), pipe);
+
+        for (int x = 10; x <= 13; x++) {
+            DefaultMultiBlockDefinition definition = recipe.detectFormingMultiBlock(new Vector3i(x, 5, 10));
+
+            assertNotNull(definition, "Placed at " + x);
+            assertEquals(new Vector3i(10, 5, 10), definition.getMainBlock());
+            assertEquals(3, definition.getMemberBlocks().size());
+        }
+    }
+
+    @Test
+    public void rejectsPlacedBlockNotMatchingFilter() {
+        FloodFillMultiBlockRecipe recipe = createRecipe(Predicates.alwaysTrue(), 10, new Vector3i(5, 5, 5));
+        world.setBlock(10, 5, 10, stone);
+        world.setBlock(11, 5, 10, pipe);
+
+        assertNull(recipe.detectFormingMultiBlock(new Vector3i(10, 5, 10)));
+    }
+
+    @Test
+    public void rejectsMoreThanMaxBlockCount() {
+        world.fill(new BlockRegion(10, 5, 10).union(14, 5, 10), pipe);
+
+        assertNull(createRecipe(Predicates.alwaysTrue(), 4, new Vector3i(10, 10, 10))
+                .detectFormingMultiBlock(new Vector3i(12, 5, 10)));
+        assertNotNull(createRecipe(Predicates.alwaysTrue(), 5, new Vector3i(10, 10, 10))
+                .detectFormingMultiBlock(new Vector3i(12, 5, 10)));
+    }
+
+    @Test
+    public void rejectsStructureLargerThanMaxSize() {
+        FloodFillMultiBlockRecipe recipe = createRecipe(Predicates.alwaysTrue(), 100, new Vector3i(3, 3, 3));
+        world.fill(new BlockRegion(10, 5, 10).union(12, 5, 10), pipe);
+
+        assertNotNull(recipe.detectFormingMultiBlock(new Vector3i(10, 5, 10)));
+
+        world.setBlock(13, 5, 10, pipe);
+
+        // From the end the extra block is outside of the search box, from the middle it is inside but too far
+        assertNull(recipe.detectFormingMultiBlock(new Vector3i(10, 5, 10)));
+        assertNull(recipe.detectFormingMultiBlock(new Vector3i(11, 5, 10)));
+        assertNull(recipe.detectFormingMultiBlock(new Vector3i(13, 5, 10)));
+    }
+
+    @Test
+    public void rejectsSizeNotAcceptedBySizeFilter() {
+        FloodFillMultiBlockRecipe recipe = createRecipe(size -> size.y >= 2, 100, new Vector3i(5, 5, 5));
+        world.fill(new BlockRegion(10, 5, 10).union(12, 5, 10), pipe);
+
+        assertNull(recipe.detectFormingMultiBlock(new Vector3i(10, 5, 10)));
+
+        world.setBlock(10, 6, 10, pipe);
+
+        assertNotNull(recipe.detectFormingMultiBlock(new Vector3i(10, 5, 10)));
+    }
+
+    @Test
+    public void rejectedDetectionDoesNotAffectNextOne() {
+        FloodFillMultiBlockRecipe recipe = createRecipe(Predicates.alwaysTrue(), 4, new Vector3i(4, 4, 4));
+        world.fill(new BlockRegion(10, 5, 10).union(15, 5, 10), pipe);
+        world.fill(new BlockRegion(10, 5, 20).union(12, 5, 20), pipe);
+
+        assertNull(recipe.detectFormingMultiBlock(new Vector3i(12, 5, 10)));
+        DefaultMultiBlockDefinition definition = recipe.detectFormingMultiBlock(new Vector3i(12, 5, 20));
+
+        assertNotNull(definition);
+        assertEquals(new Vector3i(10, 5, 20), definition.getMainBlock());
+        assertEquals(2, definition.getMemberBlocks().size());
+    }
+
+    @Test
+    public void rejectsInvalidBounds() {
+        assertThrows(IllegalArgumentException.class, () -> createRecipe(Predicates.alwaysTrue(), 0, new Vector3i(5, 5, 5)));
+        assertThrows(IllegalArgumentException.class, () -> createRecipe(Predicates.alwaysTrue(), 10, new Vector3i(5, 0, 5)));
+    }
+
+    private FloodFillMultiBlockRecipe createRecipe(Predicate<Vector3i> sizeFilter, int maxBlockCount, Vector3i maxSize) {
+        return new FloodFillMultiBlockRecipe(TYPE, world.getWorldProvider(), world.getBlockEntityRegistry(), pipeFilter,
+                sizeFilter, maxBlockCount, maxSize);
+    }
+}
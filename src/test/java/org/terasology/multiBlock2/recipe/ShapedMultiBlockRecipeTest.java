@@ -0,0 +1,234 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.recipe;
+
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.multiBlock2.MultiBlockDefinition;
+import org.terasology.multiBlock2.testUtil.InMemoryWorld;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ShapedMultiBlockRecipeTest {
+    // Asymmetric, so each of the four rotations is different
+    private static final String[][] PATTERN = {{"AB ", "  C"}};
+    private static final Vector3ic ORIGIN = new Vector3i(5, 1, 5);
+
+    private InMemoryWorld world;
+    private Block blockA;
+    private Block blockB;
+    private Block blockC;
+    private Map<Character, Block> key;
+
+    @BeforeEach
+    public void setup() {
+        world = new InMemoryWorld(new Vector3i(), 16, 4, 16);
+        blockA = world.createBlockType("Test:a");
+        blockB = world.createBlockType("Test:b");
+        blockC = world.createBlockType("Test:c");
+        key = new HashMap<>();
+        key.put('A', blockA);
+        key.put('B', blockB);
+        key.put('C', blockC);
+    }
+
+    @Test
+    public void detectsPatternFromAnyOfItsBlocks() {
+        TestRecipe recipe = new TestRecipe(PATTERN);
+        place(0, 0, 0, blockA);
+        place(1, 0, 0, blockB);
+        place(2, 0, 1, blockC);
+
+        for (Vector3i placed : Arrays.asList(at(0, 0, 0), at(1, 0, 0), at(2, 0, 1))) {
+            DetectedShape shape = recipe.detectFormingMultiBlock(placed);
+
+            assertNotNull(shape, "Placed at " + placed);
+            assertEquals(0, shape.rotation);
+            assertEquals(new BlockRegion(ORIGIN).setSize(3, 1, 2), shape.region);
+            assertEquals(at(0, 0, 0), shape.getMainBlock());
+            assertEquals(Arrays.asList(at(1, 0, 0), at(2, 0, 1)), shape.getMemberBlocks());
+        }
+    }
+
+    @Test
+    public void detectsRotatedPattern() {
+        TestRecipe recipe = new TestRecipe(PATTERN);
+        // Rotated once, each cell (x, z) moves to (sizeZ - 1 - z, x)
+        place(1, 0, 0, blockA);
+        place(1, 0, 1, blockB);
+        place(0, 0, 2, blockC);
+
+        DetectedShape shape = recipe.detectFormingMultiBlock(at(0, 0, 2));
+
+        assertNotNull(shape);
+        assertEquals(1, shape.rotation);
+        assertEquals(new BlockRegion(ORIGIN).setSize(2, 1, 3), shape.region);
+        assertEquals(at(1, 0, 0), shape.getMainBlock());
+        assertEquals(Arrays.asList(at(1, 0, 1), at(0, 0, 2)), shape.getMemberBlocks());
+    }
+
+    @Test
+    public void mainBlockIsFirstCellOfRotatedPattern() {
+        TestRecipe recipe = new TestRecipe(PATTERN);
+        // Rotated twice, the pattern is mirrored along both axes and starts with C
+        place(2, 0, 1, blockA);
+        place(1, 0, 1, blockB);
+        place(0, 0, 0, blockC);
+
+        DetectedShape shape = recipe.detectFormingMultiBlock(at(2, 0, 1));
+
+        assertNotNull(shape);
+        assertEquals(2, shape.rotation);
+        assertEquals(at(0, 0, 0), shape.getMainBlock());
+        assertEquals(Arrays.asList(at(1, 0, 1), at(2, 0, 1)), shape.getMemberBlocks());
+    }
+
+    @Test
+    public void rejectsIncompletePattern() {
+        TestRecipe recipe = new TestRecipe(PATTERN);
+        place(0, 0, 0, blockA);
+        place(1, 0, 0, blockB);
+        place(2, 0, 0, blockC);
+
+        assertNull(recipe.detectFormingMultiBlock(at(0, 0, 0)));
+    }
+
+    @Test
+    public void rejectsBlockNotInPattern() {
+        TestRecipe recipe = new TestRecipe(PATTERN);
+        Block other = world.createBlockType("Test:other");
+        place(0, 0, 0, other);
+
+        assertNull(recipe.detectFormingMultiBlock(at(0, 0, 0)));
+    }
+
+    @Test
+    public void spaceCellsAcceptAnyBlock() {
+        TestRecipe recipe = new TestRecipe(PATTERN);
+        Block other = world.createBlockType("Test:other");
+        place(0, 0, 0, blockA);
+        place(1, 0, 0, blockB);
+        place(2, 0, 1, blockC);
+        place(2, 0, 0, other);
+        place(0, 0, 1, blockA);
+
+        DetectedShape shape = recipe.detectFormingMultiBlock(at(1, 0, 0));
+
+        assertNotNull(shape);
+        assertEquals(2, shape.getMemberBlocks().size());
+    }
+
+    @Test
+    public void triesEveryCellOfPlacedBlock() {
+        TestRecipe recipe = new TestRecipe(new String[][]{{"AAA", "B  "}});
+        place(0, 0, 0, blockA);
+        place(1, 0, 0, blockA);
+        place(2, 0, 0, blockA);
+        place(0, 0, 1, blockB);
+
+        for (int x = 0; x < 3; x++) {
+            DetectedShape shape = recipe.detectFormingMultiBlock(at(x, 0, 0));
+
+            assertNotNull(shape, "Placed at " + x);
+            assertEquals(at(0, 0, 0), shape.getMainBlock());
+        }
+    }
+
+    @Test
+    public void detectsLayersFromBottomUp() {
+        TestRecipe recipe = new TestRecipe(new String[][]{{"A"}, {"B"}, {"C"}});
+        place(0, 0, 0, blockA);
+        place(0, 1, 0, blockB);
+        place(0, 2, 0, blockC);
+
+        DetectedShape shape = recipe.detectFormingMultiBlock(at(0, 2, 0));
+
+        assertNotNull(shape);
+        assertEquals(at(0, 0, 0), shape.getMainBlock());
+        assertEquals(Arrays.asList(at(0, 1, 0), at(0, 2, 0)), shape.getMemberBlocks());
+    }
+
+    @Test
+    public void countsComparedBlocks() {
+        TestRecipe recipe = new TestRecipe(PATTERN);
+        place(0, 0, 0, blockA);
+        place(1, 0, 0, blockB);
+        place(2, 0, 1, blockC);
+        DetectionStats stats = new DetectionStats();
+
+        recipe.detectFormingMultiBlock(at(0, 0, 0), stats);
+
+        assertEquals(3, stats.getBlocksVisited());
+    }
+
+    @Test
+    public void rejectsInvalidPatterns() {
+        assertThrows(IllegalArgumentException.class, () -> new TestRecipe(new String[0][]));
+        assertThrows(IllegalArgumentException.class, () -> new TestRecipe(new String[][]{{"   "}}));
+        assertThrows(IllegalArgumentException.class, () -> new TestRecipe(new String[][]{{"AX"}}));
+        assertThrows(IllegalArgumentException.class, () -> new TestRecipe(new String[][]{{"AB", "A"}}));
+        assertThrows(IllegalArgumentException.class, () -> new TestRecipe(new String[][]{{"AB", "AB"}, {"AB"}}));
+    }
+
+    private void place(int x, int y, int z, Block block) {
+        world.setBlock(ORIGIN.x() + x, ORIGIN.y() + y, ORIGIN.z() + z, block);
+    }
+
+    private static Vector3i at(int x, int y, int z) {
+        return new Vector3i(ORIGIN).add(x, y, z);
+    }
+
+    private final class TestRecipe extends ShapedMultiBlockRecipe<DetectedShape> {
+        private TestRecipe(String[][] pattern) {
+            super(world.getWorldProvider(), pattern, key);
+        }
+
+        @Override
+        protected DetectedShape createMultiBlockDefinition(BlockRegionc region, int rotation, Vector3i mainBlock,
+                                                           List<Vector3i> memberBlocks) {
+            return new DetectedShape(new BlockRegion(region), rotation, mainBlock, memberBlocks);
+        }
+    }
+
+    private static final class DetectedShape implements MultiBlockDefinition {
+        private final BlockRegion region;
+        private final int rotation;
+        private final Vector3i mainBlock;
+        private final List<Vector3i> memberBlocks;
+
+        private DetectedShape(BlockRegion region, int rotation, Vector3i mainBlock, List<Vector3i> memberBlocks) {
+            this.region = region;
+            this.rotation = rotation;
+            this.mainBlock = mainBlock;
+            this.memberBlocks = memberBlocks;
+        }
+
+        @Override
+        public String getMultiBlockType() {
+            return "Test:shape";
+        }
+
+        @Override
+        public Vector3i getMainBlock() {
+            return mainBlock;
+        }
+
+        @Override
+        public List<Vector3i> getMemberBlocks() {
+            return memberBlocks;
+        }
+    }
+}
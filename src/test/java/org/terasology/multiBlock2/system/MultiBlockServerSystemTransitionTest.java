@@ -0,0 +1,171 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.system;
+
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.BeforeRemoveComponent;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.OnAddedComponent;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.world.BlockEntityRegistry;
+import org.terasology.engine.world.WorldProvider;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockComponent;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.engine.world.chunks.Chunks;
+import org.terasology.engine.world.chunks.event.BeforeChunkUnload;
+import org.terasology.multiBlock2.DefaultMultiBlockDefinition;
+import org.terasology.multiBlock2.MultiBlockDefinition;
+import org.terasology.multiBlock2.component.MultiBlockCandidateComponent;
+import org.terasology.multiBlock2.component.MultiBlockMainComponent;
+import org.terasology.multiBlock2.event.MultiBlockUnformed;
+import org.terasology.multiBlock2.recipe.UniformMultiBlockRecipe;
+import org.terasology.multiBlock2.testUtil.InMemoryWorld;
+import org.terasology.multiBlockCommon.BlockIdFilter;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class MultiBlockServerSystemTransitionTest {
+    private static final String TYPE = "Test:cube";
+    private static final int SIZE = 4;
+    private static final int MAX_UPDATES = 100;
+
+    private InMemoryWorld world;
+    private MultiBlockServerSystem system;
+    private BlockRegion first;
+    private BlockRegion second;
+    private List<BlockRegionc> unformed;
+    private Consumer<BlockRegionc> onUnformed;
+
+    @BeforeEach
+    public void setup() throws IllegalAccessException {
+        world = new InMemoryWorld(new Vector3i(), 2 * Chunks.SIZE_X, SIZE + 2, SIZE + 2, true);
+        Block stone = world.createBlockType("Test:stone");
+        unformed = new ArrayList<>();
+        onUnformed = region -> { };
+        world.setEventHandler((entity, event) -> {
+            if (event instanceof MultiBlockUnformed) {
+                BlockRegionc region = ((MultiBlockUnformed) event).getRegion();
+                unformed.add(region);
+                onUnformed.accept(region);
+            }
+        });
+
+        system = new MultiBlockServerSystem();
+        injectWorld(system);
+        system.initialise();
+        BitSet stoneIds = new BitSet();
+        stoneIds.set(stone.getId());
+        system.registerMultiBlockType(TYPE, new CubeRecipe(world, new BlockIdFilter(stoneIds)));
+        system.setLazyMultiBlockEntity(TYPE, true);
+        // Every cube is unformed over several updates, and a whole cube fits in the time budget of one
+        system.setAmortizedForming(SIZE, 1000);
+
+        // In two different chunks
+        first = new BlockRegion(1, 1, 1).setSize(SIZE, SIZE, SIZE);
+        second = new BlockRegion(Chunks.SIZE_X + 1, 1, 1).setSize(SIZE, SIZE, SIZE);
+        form(first, stone);
+        form(second, stone);
+    }
+
+    @Test
+    public void transitionStartedFromUnformedHandlerIsAdvanced() {
+        onUnformed = region -> {
+            if (region.equals(first)) {
+                destroy(second);
+            }
+        };
+        destroy(first);
+        updateUntilNoTransitions();
+
+        assertEquals(List.of(first, second), unformed);
+        assertNull(getMainBlockEntity(second).getComponent(MultiBlockMainComponent.class));
+    }
+
+    @Test
+    public void transitionFinishedFromUnformedHandlerIsCompletedOnce() {
+        destroy(first);
+        destroy(second);
+        onUnformed = region -> {
+            if (region.equals(first)) {
+                world.setChunkRelevant(new Vector3i(1, 0, 0), false);
+                system.beforeChunkUnloaded(new BeforeChunkUnload(new Vector3i(1, 0, 0)), world.getWorldEntity());
+            }
+        };
+        updateUntilNoTransitions();
+
+        assertEquals(List.of(first, second), unformed);
+    }
+
+    private void form(BlockRegionc region, Block block) {
+        world.fill(region, block);
+        EntityRef placedEntity = world.getBlockEntityAt(region.maxX(), region.maxY(), region.maxZ());
+        MultiBlockCandidateComponent candidate = new MultiBlockCandidateComponent();
+        candidate.type = Collections.singleton(TYPE);
+        placedEntity.addComponent(candidate);
+        system.onMultiBlockCandidatePlaced(OnAddedComponent.newInstance(), placedEntity, candidate,
+                placedEntity.getComponent(BlockComponent.class));
+        updateUntilNoTransitions();
+    }
+
+    private void destroy(BlockRegionc region) {
+        EntityRef mainBlockEntity = getMainBlockEntity(region);
+        system.onMultiBlockPartRemoved(BeforeRemoveComponent.newInstance(), mainBlockEntity,
+                mainBlockEntity.getComponent(MultiBlockMainComponent.class), mainBlockEntity.getComponent(BlockComponent.class));
+    }
+
+    private EntityRef getMainBlockEntity(BlockRegionc region) {
+        return world.getBlockEntityAt(region.minX(), region.minY(), region.minZ());
+    }
+
+    private void updateUntilNoTransitions() {
+        for (int i = 0; i < MAX_UPDATES && system.getMetrics().getGauges().get("transitions.active").getAsLong() > 0; i++) {
+            system.update(0.016f);
+        }
+        assertEquals(0, system.getMetrics().getGauges().get("transitions.active").getAsLong());
+    }
+
+    private void injectWorld(MultiBlockServerSystem target) throws IllegalAccessException {
+        for (Field field : MultiBlockServerSystem.class.getDeclaredFields()) {
+            if (field.isAnnotationPresent(In.class)) {
+                field.setAccessible(true);
+                if (field.getType() == BlockEntityRegistry.class) {
+                    field.set(target, world.getBlockEntityRegistry());
+                } else if (field.getType() == WorldProvider.class) {
+                    field.set(target, world.getWorldProvider());
+                }
+            }
+        }
+    }
+
+    private static final class CubeRecipe extends UniformMultiBlockRecipe<MultiBlockDefinition> {
+        private CubeRecipe(InMemoryWorld world, BlockIdFilter blockFilter) {
+            super(world.getWorldProvider(), world.getBlockEntityRegistry(), blockFilter,
+                    size -> size.x == SIZE && size.y == SIZE && size.z == SIZE);
+        }
+
+        @Override
+        protected MultiBlockDefinition createMultiBlockDefinition(BlockRegion multiBlockRegion) {
+            Vector3i mainBlock = new Vector3i(multiBlockRegion.minX(), multiBlockRegion.minY(), multiBlockRegion.minZ());
+            List<Vector3i> members = new ArrayList<>();
+            for (Vector3ic location : multiBlockRegion) {
+                if (!mainBlock.equals(location)) {
+                    members.add(new Vector3i(location));
+                }
+            }
+            return new DefaultMultiBlockDefinition(TYPE, mainBlock, members);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.testUtil;
+
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.prefab.Prefab;
+import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.gestalt.entitysystem.event.Event;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Entity of {@link InMemoryWorld}, keeping its components in a map. Adding and removing components does not send any
+ * lifecycle events, and events sent to the entity are only passed to the event handler of the world, if it has one.
+ */
+public class InMemoryEntityRef extends EntityRef {
+    private final long id;
+    private final BiConsumer<EntityRef, Event> eventHandler;
+    private final Map<Class<?>, Component> components = new HashMap<>();
+    private boolean exists = true;
+    private boolean persistent = true;
+    private boolean alwaysRelevant;
+    private EntityRef owner = EntityRef.NULL;
+
+    InMemoryEntityRef(long id, BiConsumer<EntityRef, Event> eventHandler) {
+        this.id = id;
+        this.eventHandler = eventHandler;
+    }
+
+    @Override
+    public EntityRef copy() {
+        return this;
+    }
+
+    @Override
+    public boolean exists() {
+        return exists;
+    }
+
+    @Override
+    public boolean isActive() {
+        return exists;
+    }
+
+    @Override
+    public void destroy() {
+        exists = false;
+        components.clear();
+    }
+
+    @Override
+    public <T extends Event> T send(T event) {
+        if (exists) {
+            eventHandler.accept(this, event);
+        }
+        return event;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    @Override
+    public void setPersistent(boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    @Override
+    public boolean isAlwaysRelevant() {
+        return alwaysRelevant;
+    }
+
+    @Override
+    public void setAlwaysRelevant(boolean alwaysRelevant) {
+        this.alwaysRelevant = alwaysRelevant;
+    }
+
+    @Override
+    public EntityRef getOwner() {
+        return owner;
+    }
+
+    @Override
+    public void setOwner(EntityRef owner) {
+        this.owner = owner;
+    }
+
+    @Override
+    public Prefab getParentPrefab() {
+        return null;
+    }
+
+    @Override
+    public String toFullDescription() {
+        return toString() + " " + components.keySet();
+    }
+
+    @Override
+    public boolean hasComponent(Class<? extends Component> component) {
+        return components.containsKey(component);
+    }
+
+    @Override
+    public <T extends Component> T getComponent(Class<T> componentClass) {
+        return componentClass.cast(components.get(componentClass));
+    }
+
+    @Override
+    public <T extends Component> T addComponent(T component) {
+        if (exists) {
+            components.put(component.getClass(), component);
+        }
+        return component;
+    }
+
+    @Override
+    public void removeComponent(Class<? extends Component> componentClass) {
+        components.remove(componentClass);
+    }
+
+    @Override
+    public void saveComponent(Component component) {
+        if (exists) {
+            components.put(component.getClass(), component);
+        }
+    }
+
+    @Override
+    public Iterable<Component> iterateComponents() {
+        return new ArrayList<>(components.values());
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryEntityRef{id = " + id + "}";
+    }
+}
@@ -0,0 +1,328 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlock2.testUtil;
+
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.world.BlockEntityRegistry;
+import org.terasology.engine.world.WorldProvider;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockComponent;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.engine.world.block.BlockUri;
+import org.terasology.engine.world.chunks.Chunks;
+import org.terasology.gestalt.entitysystem.event.Event;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Stand-in for the engine world, that keeps blocks of a bounded area in a flat array and can be filled with
+ * synthetic layouts. Exposes the world as {@link BlockEntityRegistry} and {@link WorldProvider}, implemented with
+ * dynamic proxies that support only the methods used by the multi-block recipes and systems.
+ *
+ * By default all blocks of the same type share a single block entity, so that benchmarks measure the recipes and not
+ * the entities. With block entities per position enabled, every position gets its own {@link InMemoryEntityRef}, but
+ * no lifecycle events are sent - the caller is expected to invoke the handlers of the tested system in place of the
+ * engine. Chunks can be marked as not relevant to simulate them being unloaded.
+ */
+public class InMemoryWorld {
+    private final Vector3i origin;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final Block[] blocks;
+
+    private final Block air;
+    private final List<Block> blockTypes = new ArrayList<>();
+    private final List<EntityRef> blockTypeEntities = new ArrayList<>();
+
+    private final boolean blockEntityPerPosition;
+    private final Map<Vector3i, EntityRef> blockEntitiesByPosition = new HashMap<>();
+    private long nextEntityId = 1;
+    private BiConsumer<EntityRef, Event> eventHandler = (entity, event) -> { };
+    private final EntityRef worldEntity;
+
+    private final Set<Vector3i> irrelevantChunks = new HashSet<>();
+
+    private final BlockEntityRegistry blockEntityRegistry;
+    private final WorldProvider worldProvider;
+
+    public InMemoryWorld(Vector3ic origin, int sizeX, int sizeY, int sizeZ) {
+        this(origin, sizeX, sizeY, sizeZ, false);
+    }
+
+    public InMemoryWorld(Vector3ic origin, int sizeX, int sizeY, int sizeZ, boolean blockEntityPerPosition) {
+        this.blockEntityPerPosition = blockEntityPerPosition;
+        this.origin = new Vector3i(origin);
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.blocks = new Block[sizeX * sizeY * sizeZ];
+        this.worldEntity = createEntity();
+        this.air = createBlockType("engine:air");
+        this.blockEntityRegistry = (BlockEntityRegistry) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{BlockEntityRegistry.class}, new BlockEntityRegistryHandler());
+        this.worldProvider = (WorldProvider) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{WorldProvider.class}, new WorldProviderHandler());
+    }
+
+    /**
+     * Creates a new block type, with a block id equal to the number of block types created before.
+     */
+    public Block createBlockType(String uri) {
+        Block block = new Block();
+        block.setUri(new BlockUri(uri));
+        block.setId((short) blockTypes.size());
+        blockTypes.add(block);
+        EntityRef blockTypeEntity = createEntity();
+        blockTypeEntity.addComponent(new BlockComponent(block, new Vector3i()));
+        blockTypeEntities.add(blockTypeEntity);
+        return block;
+    }
+
+    /**
+     * Creates an entity that is not bound to any block.
+     */
+    public EntityRef createEntity() {
+        return new InMemoryEntityRef(nextEntityId++, this::dispatchEvent);
+    }
+
+    /**
+     * Sets the handler of all the events sent to the entities of this world, including the world entity.
+     */
+    public void setEventHandler(BiConsumer<EntityRef, Event> eventHandler) {
+        this.eventHandler = eventHandler;
+    }
+
+    public Block getAir() {
+        return air;
+    }
+
+    public Block getBlock(int x, int y, int z) {
+        int index = getIndex(x, y, z);
+        if (index < 0) {
+            return air;
+        }
+        Block block = blocks[index];
+        return block != null ? block : air;
+    }
+
+    public Block setBlock(int x, int y, int z, Block block) {
+        int index = getIndex(x, y, z);
+        if (index < 0) {
+            throw new IllegalArgumentException("Position outside of the world: " + x + ", " + y + ", " + z);
+        }
+        Block oldBlock = getBlock(x, y, z);
+        blocks[index] = block;
+        if (blockEntityPerPosition && oldBlock != block) {
+            EntityRef blockEntity = blockEntitiesByPosition.get(new Vector3i(x, y, z));
+            if (blockEntity != null) {
+                blockEntity.saveComponent(new BlockComponent(block, new Vector3i(x, y, z)));
+            }
+        }
+        return oldBlock;
+    }
+
+    public void fill(BlockRegionc region, Block block) {
+        for (int x = region.minX(); x <= region.maxX(); x++) {
+            for (int y = region.minY(); y <= region.maxY(); y++) {
+                for (int z = region.minZ(); z <= region.maxZ(); z++) {
+                    setBlock(x, y, z, block);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the region with the shell block, and everything inside it with the interior block.
+     */
+    public void fillHollow(BlockRegionc region, Block shell, Block interior) {
+        fill(region, shell);
+        for (int x = region.minX() + 1; x < region.maxX(); x++) {
+            for (int y = region.minY() + 1; y < region.maxY(); y++) {
+                for (int z = region.minZ() + 1; z < region.maxZ(); z++) {
+                    setBlock(x, y, z, interior);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(blocks, null);
+    }
+
+    public EntityRef getBlockEntity(Block block) {
+        return blockTypeEntities.get(block.getId());
+    }
+
+    public EntityRef getBlockEntityAt(int x, int y, int z) {
+        if (!blockEntityPerPosition) {
+            return getBlockEntity(getBlock(x, y, z));
+        }
+        Vector3i position = new Vector3i(x, y, z);
+        EntityRef blockEntity = blockEntitiesByPosition.get(position);
+        if (blockEntity == null) {
+            blockEntity = createEntity();
+            blockEntity.addComponent(new BlockComponent(getBlock(x, y, z), position));
+            blockEntitiesByPosition.put(position, blockEntity);
+        }
+        return blockEntity;
+    }
+
+    public int getBlockEntityCount() {
+        return blockEntitiesByPosition.size();
+    }
+
+    public EntityRef getWorldEntity() {
+        return worldEntity;
+    }
+
+    public void setChunkRelevant(Vector3ic chunkPosition, boolean relevant) {
+        if (relevant) {
+            irrelevantChunks.remove(chunkPosition);
+        } else {
+            irrelevantChunks.add(new Vector3i(chunkPosition));
+        }
+    }
+
+    public boolean isBlockRelevant(int x, int y, int z) {
+        return irrelevantChunks.isEmpty()
+                || !irrelevantChunks.contains(new Vector3i(x >> Chunks.POWER_X, y >> Chunks.POWER_Y, z >> Chunks.POWER_Z));
+    }
+
+    public boolean isRegionRelevant(BlockRegionc region) {
+        if (irrelevantChunks.isEmpty()) {
+            return true;
+        }
+        for (int x = region.minX() >> Chunks.POWER_X; x <= region.maxX() >> Chunks.POWER_X; x++) {
+            for (int y = region.minY() >> Chunks.POWER_Y; y <= region.maxY() >> Chunks.POWER_Y; y++) {
+                for (int z = region.minZ() >> Chunks.POWER_Z; z <= region.maxZ() >> Chunks.POWER_Z; z++) {
+                    if (irrelevantChunks.contains(new Vector3i(x, y, z))) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    public BlockEntityRegistry getBlockEntityRegistry() {
+        return blockEntityRegistry;
+    }
+
+    public WorldProvider getWorldProvider() {
+        return worldProvider;
+    }
+
+    private void dispatchEvent(EntityRef entity, Event event) {
+        eventHandler.accept(entity, event);
+    }
+
+    private int getIndex(int x, int y, int z) {
+        int localX = x - origin.x;
+        int localY = y - origin.y;
+        int localZ = z - origin.z;
+        if (localX < 0 || localY < 0 || localZ < 0 || localX >= sizeX || localY >= sizeY || localZ >= sizeZ) {
+            return -1;
+        }
+        return (localY * sizeZ + localZ) * sizeX + localX;
+    }
+
+    private Block getBlock(Object[] args) {
+        Vector3ic position = getPosition(args);
+        return getBlock(position.x(), position.y(), position.z());
+    }
+
+    private static Vector3ic getPosition(Object[] args) {
+        if (args.length == 3) {
+            return new Vector3i(((Number) args[0]).intValue(), ((Number) args[1]).intValue(), ((Number) args[2]).intValue());
+        }
+        return (Vector3ic) args[0];
+    }
+
+    private static Object unsupported(Method method) {
+        throw new UnsupportedOperationException(method.getDeclaringClass().getSimpleName() + "." + method.getName()
+                + " is not supported by the in-memory world");
+    }
+
+    private static Object handleObjectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "InMemoryWorld proxy of " + proxy.getClass().getInterfaces()[0].getSimpleName();
+            default:
+                return unsupported(method);
+        }
+    }
+
+    private final class BlockEntityRegistryHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getDeclaringClass() == Object.class) {
+                return handleObjectMethod(proxy, method, args);
+            }
+            switch (method.getName()) {
+                case "getBlockEntityAt":
+                case "getExistingBlockEntityAt":
+                case "getEntityAt":
+                case "getExistingEntityAt": {
+                    Vector3ic position = getPosition(args);
+                    return getBlockEntityAt(position.x(), position.y(), position.z());
+                }
+                case "hasPermanentBlockEntity":
+                    return false;
+                default:
+                    return unsupported(method);
+            }
+        }
+    }
+
+    private final class WorldProviderHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getDeclaringClass() == Object.class) {
+                return handleObjectMethod(proxy, method, args);
+            }
+            switch (method.getName()) {
+                case "getBlock":
+                    return getBlock(args);
+                case "setBlock": {
+                    Vector3ic position = (Vector3ic) args[0];
+                    return setBlock(position.x(), position.y(), position.z(), (Block) args[1]);
+                }
+                case "setBlocks": {
+                    Map<Vector3ic, Block> oldBlocks = new HashMap<>();
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) args[0]).entrySet()) {
+                        Vector3ic position = (Vector3ic) entry.getKey();
+                        oldBlocks.put(position, setBlock(position.x(), position.y(), position.z(), (Block) entry.getValue()));
+                    }
+                    return oldBlocks;
+                }
+                case "isBlockRelevant": {
+                    Vector3ic position = getPosition(args);
+                    return isBlockRelevant(position.x(), position.y(), position.z());
+                }
+                case "isRegionRelevant":
+                    return isRegionRelevant((BlockRegionc) args[0]);
+                case "getWorldEntity":
+                    return worldEntity;
+                default:
+                    return unsupported(method);
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.multiBlockCommon;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LayerColumnProfileTest {
+    // Symbols of the layers from the bottom up, a '*' in the column matches all of them
+    private static final String LAYERS = "BWT";
+
+    @Test
+    public void scanReturnsMaskOfLayersMatchingBlock() {
+        LayerColumnProfile profile = new LayerColumnProfile(new int[]{1, 1, 1}, new int[]{1, 3, 1});
+        LayerColumnProfile.LayerMatcher matcher = column("BWW*T");
+
+        assertEquals(0b001, profile.scan(0, 0, 0, matcher));
+        assertEquals(0b010, profile.scan(0, 2, 0, matcher));
+        assertEquals(0b111, profile.scan(0, 3, 0, matcher));
+        assertEquals(0b100, profile.scan(0, 4, 0, matcher));
+        assertEquals(0, profile.scan(0, 5, 0, matcher));
+    }
+
+    @Test
+    public void assignsLayersAroundScannedBlock() {
+        LayerColumnProfile profile = new LayerColumnProfile(new int[]{1, 1, 1}, new int[]{1, 3, 1});
+        int[] heights = new int[3];
+
+        profile.scan(0, 2, 0, column("BWWT"));
+
+        assertFalse(profile.assignLayers(0, heights));
+        assertFalse(profile.assignLayers(2, heights));
+        assertTrue(profile.assignLayers(1, heights));
+        assertArrayEquals(new int[]{1, 2, 1}, heights);
+        assertEquals(0, profile.getAssignedMinY());
+        assertEquals(3, profile.getAssignedMaxY());
+    }
+
+    @Test
+    public void rejectsLayersOutsideOfHeightLimits() {
+        int[] heights = new int[3];
+
+        LayerColumnProfile tooLow = new LayerColumnProfile(new int[]{1, 3, 1}, new int[]{1, 3, 1});
+        tooLow.scan(0, 1, 0, column("BWWT"));
+        assertFalse(tooLow.assignLayers(1, heights));
+
+        LayerColumnProfile tooHigh = new LayerColumnProfile(new int[]{1, 1, 1}, new int[]{1, 1, 1});
+        tooHigh.scan(0, 1, 0, column("BWWT"));
+        assertFalse(tooHigh.assignLayers(1, heights));
+
+        LayerColumnProfile missingTop = new LayerColumnProfile(new int[]{1, 1, 1}, new int[]{1, 2, 1});
+        missingTop.scan(0, 1, 0, column("BWW"));
+        assertFalse(missingTop.assignLayers(1, heights));
+    }
+
+    @Test
+    public void blockMatchingManyLayersIsAssignedToEachInTurn() {
+        LayerColumnProfile profile = new LayerColumnProfile(new int[]{1, 1, 1}, new int[]{1, 2, 2});
+        int[] heights = new int[3];
+
+        assertEquals(0b111, profile.scan(0, 2, 0, column("B**T")));
+
+        // As the top layer the block below it would join the top layer too, making it too high
+        assertFalse(profile.assignLayers(2, heights));
+        // As the bottom layer it would take both blocks below it
+        assertFalse(profile.assignLayers(0, heights));
+        assertTrue(profile.assignLayers(1, heights));
+        assertArrayEquals(new int[]{1, 2, 1}, heights);
+        assertEquals(0, profile.getAssignedMinY());
+        assertEquals(3, profile.getAssignedMaxY());
+    }
+
+    @Test
+    public void scanStopsBeyondTotalMaxHeight() {
+        LayerColumnProfile profile = new LayerColumnProfile(new int[]{1, 1, 1}, new int[]{1, 1, 1});
+        int[] scannedRange = {Integer.MAX_VALUE, Integer.MIN_VALUE};
+
+        profile.scan(0, 50, 0, (layer, x, y, z) -> {
+            scannedRange[0] = Math.min(scannedRange[0], y);
+            scannedRange[1] = Math.max(scannedRange[1], y);
+            return true;
+        });
+
+        assertArrayEquals(new int[]{46, 54}, scannedRange);
+    }
+
+    @Test
+    public void scanKeepsColumnsLongerThanInitialCapacity() {
+        LayerColumnProfile profile = new LayerColumnProfile(new int[]{1}, new int[]{100});
+        char[] symbols = new char[40];
+        Arrays.fill(symbols, 'B');
+        int[] heights = new int[1];
+
+        profile.scan(0, 0, 0, column(new String(symbols)));
+
+        assertTrue(profile.assignLayers(0, heights));
+        assertEquals(40, heights[0]);
+        assertEquals(39, profile.getAssignedMaxY());
+    }
+
+    @Test
+    public void supportsMaxLayerCount() {
+        int[] minHeights = new int[LayerColumnProfile.MAX_LAYER_COUNT];
+        int[] maxHeights = new int[LayerColumnProfile.MAX_LAYER_COUNT];
+        Arrays.fill(minHeights, 1);
+        Arrays.fill(maxHeights, 1);
+        LayerColumnProfile profile = new LayerColumnProfile(minHeights, maxHeights);
+        int[] heights = new int[LayerColumnProfile.MAX_LAYER_COUNT];
+        int topLayer = LayerColumnProfile.MAX_LAYER_COUNT - 1;
+
+        // Each layer is a single block at the height of its index
+        long mask = profile.scan(0, topLayer, 0, (layer, x, y, z) -> layer == y);
+
+        assertEquals(1L << topLayer, mask);
+        assertTrue(profile.assignLayers(topLayer, heights));
+        assertArrayEquals(maxHeights, heights);
+        assertEquals(0, profile.getAssignedMinY());
+        assertEquals(topLayer, profile.getAssignedMaxY());
+    }
+
+    @Test
+    public void rejectsInvalidLayerHeights() {
+        assertThrows(IllegalArgumentException.class, () -> new LayerColumnProfile(new int[2], new int[3]));
+        int[] tooMany = new int[LayerColumnProfile.MAX_LAYER_COUNT + 1];
+        assertThrows(IllegalArgumentException.class, () -> new LayerColumnProfile(tooMany, tooMany));
+    }
+
+    /**
+     * @param symbols layer symbols of the blocks of the column from y = 0 up, all other blocks match no layer
+     */
+    private static LayerColumnProfile.LayerMatcher column(String symbols) {
+        return (layer, x, y, z) -> y >= 0 && y < symbols.length()
+                && (symbols.charAt(y) == '*' || symbols.charAt(y) == LAYERS.charAt(layer));
+    }
+}